@@ -0,0 +1,174 @@
+package io.battlesnake.starter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytes allocated by each /move of one {@link Snake.Handler}, per phase of {@link Snake.Handler#move} and for the
+ * whole request including parsing, read from the JVM's per-thread allocation counter. A GC pause can then be traced
+ * back to the phase that filled the heap.
+ *
+ * Every move is held to the budget of its board size, see {@link #budget(int, int)}. Moves over budget are
+ * counted, and the tests fail on them; the first move a thread makes on a new board size sets up its working
+ * memory and is over budget by design. Only the request thread is metered: the candidate moves that the move pool
+ * evaluates on other threads are not counted. Reading the counter costs a few tens of nanoseconds per phase, so
+ * metering is off unless switched on with {@code -DALLOCATION_METER=true}.
+ */
+public final class AllocationMeter {
+    public static final int RESET = 0;
+    public static final int BOOK = 1;
+    public static final int ENDGAME = 2;
+    public static final int SURVIVAL = 3;
+    public static final int SEARCH = 4;
+    public static final int STALL = 5;
+    public static final int FALLBACK = 6;
+    public static final String[] PHASES = { "reset", "book", "endgame", "survival", "search", "stall", "fallback" };
+
+    /**
+     * Bytes a move may allocate, by the largest board it covers in cells. Boards searched with plain A* allocate
+     * next to nothing once warm; the large boards build their cluster graph on the first move of each game.
+     */
+    private static final int[][] BUDGETS = {
+            { 19 * 19, 2 * 1024 },
+            { 25 * 25, 64 * 1024 },
+            { Integer.MAX_VALUE, 256 * 1024 },
+    };
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /* per thread: where the current phase started, then the bytes of each phase of the current move */
+    private final ThreadLocal<long[]> current = ThreadLocal.withInitial(() -> new long[PHASES.length + 1]);
+
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder moveBytes = new LongAdder();
+    private final LongAccumulator maxMoveBytes = new LongAccumulator(Math::max, 0);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAccumulator maxRequestBytes = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] phaseBytes = new LongAdder[PHASES.length];
+    private final LongAccumulator[] maxPhaseBytes = new LongAccumulator[PHASES.length];
+
+    public AllocationMeter() {
+        for (int p = 0; p < PHASES.length; p++) {
+            phaseBytes[p] = new LongAdder();
+            maxPhaseBytes[p] = new LongAccumulator(Math::max, 0);
+        }
+    }
+
+    /** @return whether this JVM counts the bytes each thread allocates */
+    public static boolean supported() {
+        return THREADS != null;
+    }
+
+    /** @return the bytes the current thread allocated so far, or 0 when the JVM does not count them */
+    public static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** @return the bytes a move on a board of this size may allocate */
+    public static long budget(int width, int height) {
+        int cells = width * height;
+        for (int[] budget : BUDGETS) {
+            if (cells <= budget[0]) {
+                return budget[1];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /** Starts metering a move on the current thread; the first phase is {@link #RESET}. */
+    void begin() {
+        long[] phases = current.get();
+        Arrays.fill(phases, 0);
+        phases[PHASES.length] = allocatedBytes();
+    }
+
+    /** Charges what the current thread allocated since the last call to the phase that just ended. */
+    void phase(int phase) {
+        long[] phases = current.get();
+        long now = allocatedBytes();
+        phases[phase] += now - phases[PHASES.length];
+        phases[PHASES.length] = now;
+    }
+
+    /**
+     * Ends the move on the current thread, after the phase it ended in was charged.
+     *
+     * @return the bytes the move allocated
+     */
+    long end(int width, int height) {
+        long[] phases = current.get();
+        long total = 0;
+        for (int p = 0; p < PHASES.length; p++) {
+            total += phases[p];
+            phaseBytes[p].add(phases[p]);
+            maxPhaseBytes[p].accumulate(phases[p]);
+        }
+        moves.increment();
+        moveBytes.add(total);
+        maxMoveBytes.accumulate(total);
+        if (total > budget(width, height)) {
+            overBudget.increment();
+        }
+        return total;
+    }
+
+    /** Adds a whole /move request, from the raw body to the response. */
+    void request(long bytes) {
+        requests.increment();
+        requestBytes.add(bytes);
+        maxRequestBytes.accumulate(bytes);
+    }
+
+    /** @return the number of moves that allocated more than the budget of their board size */
+    public long overBudget() {
+        return overBudget.sum();
+    }
+
+    /** @return the most bytes one move allocated */
+    public long maxMoveBytes() {
+        return maxMoveBytes.get();
+    }
+
+    /**
+     * @return the mean and worst bytes per move, per phase and per request, and the moves over budget, in a fixed
+     * order
+     */
+    public Map<String, Object> snapshot() {
+        long moveCount = moves.sum();
+        long requestCount = requests.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("moves", moveCount);
+        snapshot.put("overBudget", overBudget.sum());
+        snapshot.put("moveMeanBytes", moveCount == 0 ? 0 : moveBytes.sum() / moveCount);
+        snapshot.put("moveMaxBytes", maxMoveBytes.get());
+        snapshot.put("requestMeanBytes", requestCount == 0 ? 0 : requestBytes.sum() / requestCount);
+        snapshot.put("requestMaxBytes", maxRequestBytes.get());
+        for (int p = 0; p < PHASES.length; p++) {
+            snapshot.put(PHASES[p] + "MeanBytes", moveCount == 0 ? 0 : phaseBytes[p].sum() / moveCount);
+            snapshot.put(PHASES[p] + "MaxBytes", maxPhaseBytes[p].get());
+        }
+        return snapshot;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+        if (!counting.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        if (!counting.isThreadAllocatedMemoryEnabled()) {
+            counting.setThreadAllocatedMemoryEnabled(true);
+        }
+        return counting;
+    }
+}
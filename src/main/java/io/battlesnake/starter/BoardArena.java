@@ -0,0 +1,121 @@
+package io.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.battlesnake.starter.book.PositionHash;
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.DangerMap;
+import io.battlesnake.starter.engine.HamiltonianCycle;
+import io.battlesnake.starter.search.EndgameSolver;
+import io.battlesnake.starter.search.LongestPath;
+import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.NavigationGrid;
+
+/**
+ * Working memory for {@link Snake.Handler#move(JsonNode)}: the grid cells, the {@link Board}, the danger map,
+ * the {@link MoveEvaluator} and the trap solvers for one board size.
+ *
+ * An arena is allocated the first time a thread sees a board size and is reset in place on every later turn, so
+ * a steady-state move allocates next to nothing. Arenas are confined to their thread; each thread keeps the few
+ * sizes it used most recently.
+ */
+final class BoardArena {
+    private static final int CACHED_SIZES = 4;
+    /** the largest pocket the endgame solver takes on, and how many states it may visit per move */
+    private static final int ENDGAME_CELLS = 40;
+    private static final long ENDGAME_NODES = 20000;
+    /**
+     * how long the stalling search may run once we are trapped; the time limit is the handler's, see
+     * {@link Snake.Handler#setStallNanos(long)}
+     */
+    private static final long STALL_NODES = 20000;
+    static final long STALL_NANOS = 3000000;
+    private static final ThreadLocal<BoardArena[]> ARENAS = ThreadLocal.withInitial(() -> new BoardArena[CACHED_SIZES]);
+
+    final int width;
+    final int height;
+    final Board board;
+    final DangerMap danger;
+    final PositionHash positionHash = new PositionHash();
+
+    final GridCell[][] cells;
+    final NavigationGrid<GridCell> grid;
+    final MoveEvaluator evaluator;
+    /** the survival tour for this board size, or null for a board too narrow to have one */
+    final HamiltonianCycle cycle;
+    final EndgameSolver endgame = new EndgameSolver(ENDGAME_CELLS, EndgameSolver.MAX_CELLS, ENDGAME_NODES);
+    final LongestPath stall;
+
+    /* scratch for picking a random safe move */
+    final int[] moves = new int[4];
+
+    /* the phases of the current move, see Snake.Handler#move: the last one that ended and, when timed, how long
+       each took */
+    int lastPhase;
+    boolean timed;
+    long phaseStarted;
+    final long[] phaseNanos = new long[AllocationMeter.PHASES.length];
+
+    private BoardArena(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.board = new Board(width, height);
+        this.danger = new DangerMap(width, height);
+        this.cells = new GridCell[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                cells[x][y] = new GridCell(x, y, true);
+            }
+        }
+        this.grid = new NavigationGrid<GridCell>(cells, false);
+        grid.setCosts(danger.costs());
+        this.evaluator = new MoveEvaluator(this);
+        this.cycle = HamiltonianCycle.forBoard(width, height);
+        this.stall = new LongestPath(width * height, STALL_NODES, STALL_NANOS);
+    }
+
+    /** @return this thread's arena for the board size, most recently used sizes first */
+    static BoardArena forBoard(int width, int height) {
+        BoardArena[] arenas = ARENAS.get();
+        int found = CACHED_SIZES - 1;
+        for (int i = 0; i < CACHED_SIZES; i++) {
+            if (arenas[i] != null && arenas[i].width == width && arenas[i].height == height) {
+                found = i;
+                break;
+            }
+        }
+        BoardArena arena = arenas[found];
+        if (arena == null || arena.width != width || arena.height != height) {
+            arena = new BoardArena(width, height);
+        }
+        System.arraycopy(arenas, 0, arenas, 1, found);
+        arenas[0] = arena;
+        return arena;
+    }
+
+    /**
+     * Loads a /move request into the board and rebuilds walkability and the danger costs in place. A cell is open
+     * if it is free or only holds a tail that leaves this turn. A tail stacked after eating stays this turn, but
+     * is still opened unless it is right next to our head, so it remains a target for the paths to the tails.
+     */
+    void reset(JsonNode moveRequest) {
+        board.load(moveRequest);
+        int head = board.head(0);
+        for (int x = 0; x < width; x++) {
+            GridCell[] column = cells[x];
+            for (int y = 0; y < height; y++) {
+                int cell = board.index(x, y);
+                int turns = board.turnsUntilFree(cell);
+                boolean open = turns <= 1;
+                if (turns == 2 && board.tail(board.owner(cell)) == cell) {
+                    open = Math.abs(x - board.x(head)) + Math.abs(y - board.y(head)) != 1;
+                }
+                column[y].setWalkable(open);
+            }
+        }
+        danger.compute(board);
+    }
+
+    GridCell cell(int index) {
+        return cells[board.x(index)][board.y(index)];
+    }
+}
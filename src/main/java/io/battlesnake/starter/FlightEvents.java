@@ -0,0 +1,38 @@
+package io.battlesnake.starter;
+
+/**
+ * The gate to the flight recorder events of the handler, {@link RequestEvent} and {@link MoveEvent}, and of the
+ * path finders, {@code org.xguzm.pathfinding.SearchEvent}.
+ *
+ * The events extend {@code jdk.jfr.Event}, which JVMs without the flight recorder lack, so they are only touched
+ * once this class found the API. An event object is only created while a recording has its type enabled, so with
+ * no recording running a move costs a flag check per event type and allocates nothing. Record with the bundled
+ * settings, {@code -XX:StartFlightRecording=settings=src/main/resources/battlesnake.jfc,filename=snake.jfr}; they add
+ * the GC, safepoint and compilation events that explain a slow turn.
+ */
+final class FlightEvents {
+    static final boolean AVAILABLE = org.xguzm.pathfinding.Util.FLIGHT_RECORDER;
+
+    private FlightEvents() {
+    }
+
+    /** @return a started event for a request, or null when no recording wants one */
+    static RequestEvent request() {
+        if (!AVAILABLE || !RequestEvent.enabled()) {
+            return null;
+        }
+        RequestEvent event = new RequestEvent();
+        event.begin();
+        return event;
+    }
+
+    /** @return a started event for a move, or null when no recording wants one */
+    static MoveEvent move() {
+        if (!AVAILABLE || !MoveEvent.enabled()) {
+            return null;
+        }
+        MoveEvent event = new MoveEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,35 @@
+package io.battlesnake.starter;
+
+import io.battlesnake.starter.search.OpponentModel;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link OpponentModel} of each game in progress, shared by a {@link Snake.Handler} and its {@link Ponderer}.
+ *
+ * Models of at most {@link #MAX_GAMES} games are kept; the least recently used is dropped first, so games whose
+ * /end never arrived do not pile up. Safe to use from several threads, but each model must be locked while in use.
+ */
+public final class GameModels {
+    static final int MAX_GAMES = 64;
+
+    private final Map<String, OpponentModel> models = Collections.synchronizedMap(
+            new LinkedHashMap<String, OpponentModel>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, OpponentModel> eldest) {
+                    return size() > MAX_GAMES;
+                }
+            });
+
+    /** @return the game's model, created empty on first use */
+    public OpponentModel get(String gameId) {
+        return models.computeIfAbsent(gameId, id -> new OpponentModel());
+    }
+
+    /** @return the model of a finished game, which is no longer kept */
+    public OpponentModel remove(String gameId) {
+        return models.remove(gameId);
+    }
+}
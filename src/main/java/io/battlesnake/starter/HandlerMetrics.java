@@ -0,0 +1,66 @@
+package io.battlesnake.starter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters and /move latency of one {@link Snake.Handler}, so strategies mounted side by side in the
+ * same JVM can be compared. Updates are lock-free and safe from any request thread.
+ */
+public final class HandlerMetrics {
+    private final LongAdder starts = new LongAdder();
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder ends = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder moveNanos = new LongAdder();
+    private final LongAccumulator maxMoveNanos = new LongAccumulator(Math::max, 0);
+
+    void start() {
+        starts.increment();
+    }
+
+    void ping() {
+        pings.increment();
+    }
+
+    void move(long nanos) {
+        moves.increment();
+        moveNanos.add(nanos);
+        maxMoveNanos.accumulate(nanos);
+    }
+
+    void end() {
+        ends.increment();
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    public long moves() {
+        return moves.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return the counters and the mean and worst /move time in microseconds, in a fixed order
+     */
+    public Map<String, Object> snapshot() {
+        long moveCount = moves.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("start", starts.sum());
+        snapshot.put("ping", pings.sum());
+        snapshot.put("move", moveCount);
+        snapshot.put("end", ends.sum());
+        snapshot.put("errors", errors.sum());
+        snapshot.put("moveMeanMicros", moveCount == 0 ? 0 : moveNanos.sum() / moveCount / 1000);
+        snapshot.put("moveMaxMicros", maxMoveNanos.get() / 1000);
+        return snapshot;
+    }
+}
@@ -0,0 +1,93 @@
+package io.battlesnake.starter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the handlers with the JDK's built-in HTTP server instead of Spark, selected with {@code -DTRANSPORT=jdk}.
+ *
+ * The snake only has a few tiny JSON routes, so there is no servlet layer and no router: each route is a context
+ * of its own, and the request body stream goes straight to the JSON parser without being copied into a String.
+ * Responses always carry a Content-Length, so connections are kept alive between requests.
+ */
+final class HttpTransport {
+    private static final String[] ROUTES = { "/start", "/ping", "/move", "/end" };
+    private static final byte[] DOCUMENTATION = Snake.DOCUMENTATION.getBytes(StandardCharsets.UTF_8);
+
+    private HttpTransport() {
+    }
+
+    /**
+     * Binds the port and starts serving every handler under its prefix.
+     *
+     * @param threads the number of request threads
+     */
+    static HttpServer start(int port, List<Snake.Handler> handlers, int threads) throws IOException {
+        // the server writes the headers and the body separately, which Nagle's algorithm holds back for a
+        // delayed ACK, about 40 ms per request; this has to be set before the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        // the root context also receives every path no other context claims, which only get a 404
+        server.createContext("/", exchange -> {
+            drain(exchange.getRequestBody());
+            if ("GET".equals(exchange.getRequestMethod()) && "/".equals(exchange.getRequestURI().getPath())) {
+                send(exchange, 200, "text/html", DOCUMENTATION);
+            } else {
+                send(exchange, 404, "text/plain", new byte[0]);
+            }
+        });
+        for (Snake.Handler handler : handlers) {
+            for (String route : ROUTES) {
+                server.createContext(handler.prefix() + route, exchange -> route(handler, exchange));
+            }
+            server.createContext(handler.prefix() + "/metrics", exchange -> {
+                drain(exchange.getRequestBody());
+                send(exchange, 200, "application/json", Snake.JSON_MAPPER.writeValueAsBytes(handler.metrics()));
+            });
+        }
+        server.setExecutor(Executors.newFixedThreadPool(threads, runnable -> new Thread(runnable, "http")));
+        server.start();
+        return server;
+    }
+
+    private static void route(Snake.Handler handler, HttpExchange exchange) throws IOException {
+        InputStream body = exchange.getRequestBody();
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            drain(body);
+            send(exchange, 405, "text/plain", new byte[0]);
+            return;
+        }
+        Map<String, String> response = handler.process(exchange.getRequestURI().getPath(), body);
+        drain(body);
+        if (response == null) {
+            send(exchange, 500, "text/plain", new byte[0]);
+        } else {
+            send(exchange, 200, "application/json", Snake.JSON_MAPPER.writeValueAsBytes(response));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        // a length of -1 tells the server there is no body
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /** The connection can only be reused once the whole request has been read, which closing the body does. */
+    private static void drain(InputStream body) throws IOException {
+        body.close();
+    }
+}
@@ -0,0 +1,187 @@
+package io.battlesnake.starter;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xguzm.pathfinding.finders.AStarFinder;
+import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.NavigationGrid;
+import org.xguzm.pathfinding.grid.finders.GridFinderOptions;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Scores each of our four first moves on its own, possibly in parallel, and picks one.
+ *
+ * A move is scored by the cost of stepping onto its cell plus the cheapest path from there to our tail and to the
+ * target food. Each direction has a worker with its own copy of the grid cells and its own finder, because A*
+ * keeps its search state on the cells. The workers only read the arena, and the results are combined in
+ * {@link Direction} order, so the choice does not depend on which worker finishes first.
+ */
+final class MoveEvaluator {
+    private static final Logger LOG = LoggerFactory.getLogger(MoveEvaluator.class);
+    private static final float UNREACHABLE = Float.POSITIVE_INFINITY;
+
+    private final BoardArena arena;
+    private final Worker[] workers = new Worker[Direction.COUNT];
+
+    MoveEvaluator(BoardArena arena) {
+        this.arena = arena;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            workers[d] = new Worker();
+        }
+    }
+
+    /**
+     * Picks the move for the board loaded in the arena: the cheapest move towards the food among the moves that
+     * keep a path to our tail, else the cheapest move towards the tail.
+     *
+     * @param food the target food cell, or -1
+     * @param pool runs all directions but the first, which the caller evaluates itself; null evaluates all four
+     * on the calling thread
+     * @return the {@link Direction}, or -1 if no move keeps a path to our tail
+     */
+    int bestMove(int food, Executor pool) {
+        Board board = arena.board;
+        int head = board.head(0);
+        int tail = board.tail(0);
+        for (int d = 0; d < Direction.COUNT; d++) {
+            workers[d].prepare(board.neighbor(head, d), tail, food);
+        }
+
+        if (pool == null) {
+            for (Worker worker : workers) {
+                worker.run();
+            }
+        } else {
+            CountDownLatch done = new CountDownLatch(Direction.COUNT - 1);
+            for (int d = 1; d < Direction.COUNT; d++) {
+                workers[d].done = done;
+                pool.execute(workers[d]);
+            }
+            workers[0].run();
+            awaitUninterruptibly(done);
+        }
+
+        int best = -1;
+        float bestScore = UNREACHABLE;
+        boolean foodReachable = false;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            Worker worker = workers[d];
+            if (worker.tailCost == UNREACHABLE) {
+                continue;
+            }
+            boolean towardsFood = worker.foodCost != UNREACHABLE;
+            float score = worker.stepCost + (towardsFood ? worker.foodCost : worker.tailCost);
+            if ((towardsFood && !foodReachable) || (towardsFood == foodReachable && score < bestScore)) {
+                best = d;
+                bestScore = score;
+                foodReachable = towardsFood;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return whether our tail can still be reached after the move, checked on the calling thread the same way
+     * {@link #bestMove(int, Executor)} checks every move
+     */
+    boolean keepsTail(int direction) {
+        Board board = arena.board;
+        Worker worker = workers[direction];
+        worker.prepare(board.neighbor(board.head(0), direction), board.tail(0), -1);
+        worker.run();
+        return worker.tailCost != UNREACHABLE;
+    }
+
+    /** The workers still read the arena, so the caller must not move on before they are done. */
+    private static void awaitUninterruptibly(CountDownLatch done) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final GridCell[][] cells;
+        private final NavigationGrid<GridCell> grid;
+        private final AStarFinder<GridCell> finder;
+
+        private int start;
+        private int tail;
+        private int food;
+        CountDownLatch done;
+
+        float stepCost;
+        float tailCost;
+        float foodCost;
+
+        Worker() {
+            cells = new GridCell[arena.width][arena.height];
+            for (int x = 0; x < arena.width; x++) {
+                for (int y = 0; y < arena.height; y++) {
+                    cells[x][y] = new GridCell(x, y, true);
+                }
+            }
+            grid = new NavigationGrid<GridCell>(cells, false);
+            grid.setCosts(arena.danger.costs());
+            GridFinderOptions opt = new GridFinderOptions();
+            opt.allowDiagonal = false;
+            finder = new AStarFinder<GridCell>(GridCell.class, opt);
+        }
+
+        void prepare(int start, int tail, int food) {
+            this.start = start;
+            this.tail = tail;
+            this.food = food;
+            this.done = null;
+            tailCost = UNREACHABLE;
+            foodCost = UNREACHABLE;
+        }
+
+        @Override
+        public void run() {
+            try {
+                evaluate();
+            } catch (RuntimeException e) {
+                LOG.warn("Move evaluation failed", e);
+                tailCost = UNREACHABLE;
+            } finally {
+                CountDownLatch latch = done;
+                if (latch != null) {
+                    latch.countDown();
+                }
+            }
+        }
+
+        private void evaluate() {
+            if (start < 0 || !arena.cell(start).isWalkable()) {
+                return;
+            }
+            for (int x = 0; x < arena.width; x++) {
+                GridCell[] from = arena.cells[x];
+                GridCell[] to = cells[x];
+                for (int y = 0; y < arena.height; y++) {
+                    to[y].setWalkable(from[y].isWalkable());
+                }
+            }
+            Board board = arena.board;
+            GridCell startCell = cells[board.x(start)][board.y(start)];
+            stepCost = 1 + arena.danger.cost(start);
+            tailCost = finder.findCost(startCell, cells[board.x(tail)][board.y(tail)], grid);
+            if (food >= 0 && tailCost != UNREACHABLE) {
+                foodCost = finder.findCost(startCell, cells[board.x(food)][board.y(food)], grid);
+            }
+        }
+    }
+}
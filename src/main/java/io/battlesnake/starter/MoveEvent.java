@@ -0,0 +1,124 @@
+package io.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event for one {@link Snake.Handler#move(JsonNode)}: the board, which phase picked the move,
+ * how long each phase took and how many states the trap searches visited. The A* searches of the move are
+ * recorded as {@code pathfinding.Search} events on the same thread, nested in this one.
+ *
+ * Only touched through {@link FlightEvents}, see there.
+ */
+@Name("battlesnake.Move")
+@Label("Move")
+@Category("Battlesnake")
+@Description("One /move decision of a handler")
+@StackTrace(false)
+final class MoveEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(MoveEvent.class);
+
+    @Label("Game Id")
+    String gameId;
+
+    @Label("Turn")
+    int turn;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Snakes")
+    @Description("Snakes alive on the board")
+    int snakes;
+
+    @Label("Decided By")
+    @Description("The phase that picked the move")
+    String decidedBy;
+
+    @Label("Move")
+    String move;
+
+    @Label("Endgame Nodes")
+    @Description("States the endgame solver visited")
+    long endgameNodes;
+
+    @Label("Stall Nodes")
+    @Description("States the stalling search visited")
+    long stallNodes;
+
+    @Label("Reset")
+    @Timespan(Timespan.NANOSECONDS)
+    long reset;
+
+    @Label("Book")
+    @Timespan(Timespan.NANOSECONDS)
+    long book;
+
+    @Label("Endgame")
+    @Timespan(Timespan.NANOSECONDS)
+    long endgame;
+
+    @Label("Survival")
+    @Timespan(Timespan.NANOSECONDS)
+    long survival;
+
+    @Label("Search")
+    @Timespan(Timespan.NANOSECONDS)
+    long search;
+
+    @Label("Stall")
+    @Timespan(Timespan.NANOSECONDS)
+    long stall;
+
+    @Label("Fallback")
+    @Timespan(Timespan.NANOSECONDS)
+    long fallback;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Fills in the move the arena just decided and commits the event.
+     */
+    void finish(JsonNode moveRequest, BoardArena arena, int direction) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        Board board = arena.board;
+        JsonNode game = moveRequest.get("game");
+        JsonNode id = game == null ? null : game.get("id");
+        JsonNode turnNode = moveRequest.get("turn");
+        gameId = id == null ? null : id.textValue();
+        turn = turnNode == null ? -1 : turnNode.intValue();
+        width = arena.width;
+        height = arena.height;
+        snakes = board.aliveCount();
+        decidedBy = AllocationMeter.PHASES[arena.lastPhase];
+        move = Direction.name(direction);
+        endgameNodes = arena.lastPhase >= AllocationMeter.ENDGAME ? arena.endgame.nodes() : 0;
+        stallNodes = arena.lastPhase >= AllocationMeter.STALL ? arena.stall.nodes() : 0;
+        long[] nanos = arena.phaseNanos;
+        reset = nanos[AllocationMeter.RESET];
+        book = nanos[AllocationMeter.BOOK];
+        endgame = nanos[AllocationMeter.ENDGAME];
+        survival = nanos[AllocationMeter.SURVIVAL];
+        search = nanos[AllocationMeter.SEARCH];
+        stall = nanos[AllocationMeter.STALL];
+        fallback = nanos[AllocationMeter.FALLBACK];
+        commit();
+    }
+}
@@ -0,0 +1,275 @@
+package io.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import io.battlesnake.starter.engine.Rules;
+import io.battlesnake.starter.search.OpponentModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Uses the idle time between our /move response and the engine's next request to answer the next turn early.
+ *
+ * After a move is answered, {@link #ponder(JsonNode, String)} advances the board with our chosen move and each
+ * of the most likely joint replies of the opponents, and computes the answer for every predicted board on a
+ * background thread. When the next request arrives, {@link #take(JsonNode)} returns a finished answer if one of
+ * the predictions matches the real board exactly, and cancels whatever pondering is still running for the game.
+ *
+ * A live request never waits for ponder work: predictions that are not finished yet count as a miss, and the
+ * mover should share no queue or lock with live requests, as {@link Snake.Handler#ponderMove(JsonNode)} does.
+ *
+ * The opponents' replies are ranked by an {@link OpponentModel} per game, which learns from every board pondered
+ * on. The models live in {@link GameModels}, which the handler can share to start them off from earlier games.
+ */
+public class Ponderer {
+    private static final Logger LOG = LoggerFactory.getLogger(Ponderer.class);
+
+    private final Function<JsonNode, Map<String, String>> mover;
+    private final int maxPredictions;
+    private final ExecutorService executor;
+    private final Map<String, Pondering> games = new ConcurrentHashMap<>();
+    private final GameModels models;
+
+    private final Rules rules = new Rules(0, 0, false);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param mover computes the answer for a /move request, normally {@code Handler::ponderMove}
+     * @param maxPredictions how many predicted boards to answer per turn
+     */
+    public Ponderer(Function<JsonNode, Map<String, String>> mover, int maxPredictions) {
+        this(mover, maxPredictions, newExecutor());
+    }
+
+    /**
+     * @param executor runs the pondering, and may be shared with other ponderers, see {@link #newExecutor()}
+     */
+    public Ponderer(Function<JsonNode, Map<String, String>> mover, int maxPredictions, ExecutorService executor) {
+        this(mover, new GameModels(), maxPredictions, executor);
+    }
+
+    /**
+     * @param models the opponent models to learn into and rank replies with, shared with the handler
+     */
+    public Ponderer(Function<JsonNode, Map<String, String>> mover, GameModels models, int maxPredictions,
+                    ExecutorService executor) {
+        this.mover = mover;
+        this.models = models;
+        this.maxPredictions = maxPredictions;
+        this.executor = executor;
+    }
+
+    /**
+     * @return a single low-priority daemon thread, so pondering never competes with live requests
+     */
+    public static ExecutorService newExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ponder");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * Starts pondering the turn after the given request, assuming we play ourMove. Replaces any pondering still
+     * running for the same game.
+     */
+    public void ponder(JsonNode moveRequest, String ourMove) {
+        String gameId = gameId(moveRequest);
+        int direction = Direction.parse(ourMove);
+        if (gameId == null || direction < 0) {
+            return;
+        }
+        Pondering pondering = new Pondering();
+        pondering.task = executor.submit(() -> run(pondering, moveRequest, direction, gameId));
+        Pondering previous = games.put(gameId, pondering);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Stops pondering for the game of this request and returns the pondered answer if the request matches one of
+     * the finished predictions.
+     *
+     * @return the answer, or null on a miss
+     */
+    public Map<String, String> take(JsonNode moveRequest) {
+        String gameId = gameId(moveRequest);
+        Pondering pondering = gameId == null ? null : games.remove(gameId);
+        if (pondering == null) {
+            return null;
+        }
+        pondering.cancel();
+        Board actual = Board.fromJson(moveRequest);
+        long hash = actual.stateHash();
+        synchronized (pondering.ready) {
+            for (Prediction prediction : pondering.ready) {
+                if (prediction.hash == hash && prediction.board.sameState(actual)) {
+                    hits.incrementAndGet();
+                    return prediction.response;
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Forgets the game, for /end. */
+    public void forget(JsonNode request) {
+        String gameId = gameId(request);
+        Pondering pondering = gameId == null ? null : games.remove(gameId);
+        if (pondering != null) {
+            pondering.cancel();
+        }
+        if (gameId != null) {
+            models.remove(gameId);
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Pondering pondering, JsonNode moveRequest, int ourMove, String gameId) {
+        try {
+            Board board = Board.fromJson(moveRequest);
+            OpponentModel model = models.get(gameId);
+            List<int[]> replies;
+            synchronized (model) {
+                model.observe(board);
+                replies = likelyReplies(board, ourMove, model);
+            }
+            for (int[] moves : replies) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                Board predicted = board.copy();
+                rules.makeMove(predicted, moves);
+                if (!predicted.isAlive(0)) {
+                    continue;
+                }
+                Map<String, String> response = mover.apply(predicted.toJson(gameId));
+                if (response != null) {
+                    synchronized (pondering.ready) {
+                        pondering.ready.add(new Prediction(predicted, response));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Pondering failed for game " + gameId, e);
+        }
+    }
+
+    /**
+     * Ranks the opponents' safe moves with the model and returns the most likely joint moves, at most
+     * {@link #maxPredictions} of them.
+     */
+    List<int[]> likelyReplies(Board board, int ourMove, OpponentModel model) {
+        int snakes = board.snakeCount();
+        int[] options = new int[snakes * Direction.COUNT];
+        float[] probabilities = new float[snakes * Direction.COUNT];
+        float[] distribution = new float[Direction.COUNT];
+        int[] counts = new int[snakes];
+        for (int s = 1; s < snakes; s++) {
+            if (!board.isAlive(s)) {
+                counts[s] = 1;
+                probabilities[s * Direction.COUNT] = 1;
+                continue;
+            }
+            counts[s] = model.rank(board, s, options, s * Direction.COUNT, distribution);
+            for (int i = 0; i < counts[s]; i++) {
+                probabilities[s * Direction.COUNT + i] = distribution[options[s * Direction.COUNT + i]];
+            }
+        }
+
+        List<int[]> joint = new ArrayList<>();
+        List<Float> likelihoods = new ArrayList<>();
+        int[] index = new int[snakes];
+        while (true) {
+            int[] moves = new int[snakes];
+            float likelihood = 1;
+            moves[0] = ourMove;
+            for (int s = 1; s < snakes; s++) {
+                moves[s] = options[s * Direction.COUNT + index[s]];
+                likelihood *= probabilities[s * Direction.COUNT + index[s]];
+            }
+            joint.add(moves);
+            likelihoods.add(likelihood);
+            int s = 1;
+            while (s < snakes && ++index[s] == counts[s]) {
+                index[s] = 0;
+                s++;
+            }
+            if (s >= snakes) {
+                break;
+            }
+        }
+
+        Integer[] order = new Integer[joint.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(likelihoods.get(b), likelihoods.get(a)));
+        List<int[]> best = new ArrayList<>();
+        for (int i = 0; i < order.length && best.size() < maxPredictions; i++) {
+            best.add(joint.get(order[i]));
+        }
+        return best;
+    }
+
+    private static String gameId(JsonNode request) {
+        JsonNode game = request.get("game");
+        JsonNode id = game == null ? null : game.get("id");
+        return id == null ? null : id.textValue();
+    }
+
+    private static final class Pondering {
+        final List<Prediction> ready = new ArrayList<>();
+        volatile Future<?> task;
+
+        void cancel() {
+            Future<?> running = task;
+            if (running != null) {
+                running.cancel(true);
+            }
+        }
+    }
+
+    private static final class Prediction {
+        final Board board;
+        final long hash;
+        final Map<String, String> response;
+
+        Prediction(Board board, Map<String, String> response) {
+            this.board = board;
+            this.hash = board.stateHash();
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for one request through {@link Snake.Handler#process(String, java.io.InputStream)}, from
+ * the raw body to the response, parsing and logging included. Its {@code battlesnake.Move} event, if any, is
+ * nested in it on the same thread.
+ *
+ * Only touched through {@link FlightEvents}, see there.
+ */
+@Name("battlesnake.Request")
+@Label("Request")
+@Category("Battlesnake")
+@Description("One request to a handler")
+@StackTrace(false)
+final class RequestEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(RequestEvent.class);
+
+    @Label("URI")
+    String uri;
+
+    @Label("Game Id")
+    String gameId;
+
+    @Label("Turn")
+    int turn;
+
+    @Label("Failed")
+    boolean failed;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Fills in the request and commits the event.
+     *
+     * @param request the parsed body, or null if it could not be parsed
+     */
+    void finish(String uri, JsonNode request, boolean failed) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        JsonNode game = request == null ? null : request.get("game");
+        JsonNode id = game == null ? null : game.get("id");
+        JsonNode turnNode = request == null ? null : request.get("turn");
+        this.uri = uri;
+        this.gameId = id == null ? null : id.textValue();
+        this.turn = turnNode == null ? -1 : turnNode.intValue();
+        this.failed = failed;
+        commit();
+    }
+}
@@ -7,14 +7,23 @@ import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Random;
-import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static spark.Spark.port;
 import static spark.Spark.post;
@@ -22,8 +31,18 @@ import static spark.Spark.get;
 
 import org.xguzm.pathfinding.grid.NavigationGrid;
 import org.xguzm.pathfinding.grid.GridCell;
-import org.xguzm.pathfinding.finders.AStarFinder;
 import org.xguzm.pathfinding.grid.finders.GridFinderOptions;
+import org.xguzm.pathfinding.grid.finders.HierarchicalGridFinder;
+
+import io.battlesnake.starter.book.OpeningBook;
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.DangerMap;
+import io.battlesnake.starter.engine.Direction;
+import io.battlesnake.starter.engine.HamiltonianCycle;
+import io.battlesnake.starter.engine.NeighborhoodTable;
+import io.battlesnake.starter.search.OpponentModel;
+import io.battlesnake.starter.search.OpponentProfile;
+import io.battlesnake.starter.search.OpponentStore;
 
 /**
  * Snake server that deals with requests from the snake engine.
@@ -31,9 +50,11 @@ import org.xguzm.pathfinding.grid.finders.GridFinderOptions;
  * It follows the spec here: https://github.com/battlesnakeio/docs/tree/master/apis/snake
  */
 public class Snake {
-    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    static final ObjectMapper JSON_MAPPER = new ObjectMapper();
     private static final Handler HANDLER = new Handler();
     private static final Logger LOG = LoggerFactory.getLogger(Snake.class);
+    static final String DOCUMENTATION = "Battlesnake documentation can be found at "
+            + "<a href=\"https://docs.battlesnake.io\">https://docs.battlesnake.io</a>.";
 
     /**
      * Main entry point.
@@ -48,13 +69,128 @@ public class Snake {
             LOG.info("Using default port: {}", port);
             port = "8080";
         }
+        int moveThreads = Integer.getInteger("MOVE_THREADS",
+                Math.min(Direction.COUNT, Runtime.getRuntime().availableProcessors()));
+        Executor movePool = null;
+        if (moveThreads > 1) {
+            movePool = Executors.newFixedThreadPool(moveThreads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "move-eval");
+                thread.setDaemon(true);
+                return thread;
+            });
+            LOG.info("Evaluating moves on {} threads", moveThreads);
+        }
+        // every strategy shares the move pool, the ponder thread, the loaded books and stores and the per-thread
+        // arenas
+        String strategies = System.getProperty("STRATEGIES", "").trim();
+        Map<Path, OpeningBook> books = new HashMap<>();
+        Map<Path, OpponentStore> stores = new HashMap<>();
+        ExecutorService ponderExecutor = Ponderer.newExecutor();
+        List<Handler> handlers = new ArrayList<>();
+        if (strategies.isEmpty()) {
+            configure(HANDLER, null, movePool, books, stores, ponderExecutor);
+            handlers.add(HANDLER);
+        } else {
+            for (String name : strategies.split(",")) {
+                Handler handler = new Handler("/" + name.trim());
+                configure(handler, name.trim(), movePool, books, stores, ponderExecutor);
+                handlers.add(handler);
+            }
+        }
+
+        // Spark binds the port with the first route, so nothing is served before warm-up is over
+        long warmUpMillis = Long.getLong("WARMUP_MILLIS", 10000);
+        if (warmUpMillis > 0) {
+            try {
+                WarmUp.bundled(JSON_MAPPER).run(handlers, warmUpMillis);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Warm-up failed, serving cold", e);
+            }
+        }
+
+        if ("jdk".equals(System.getProperty("TRANSPORT"))) {
+            int httpThreads = Integer.getInteger("HTTP_THREADS", Math.max(4, Runtime.getRuntime().availableProcessors()));
+            try {
+                HttpTransport.start(Integer.parseInt(port), handlers, httpThreads);
+                LOG.info("Serving with the JDK HTTP server on {} threads", httpThreads);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not bind port " + port, e);
+            }
+            return;
+        }
         port(Integer.parseInt(port));
-        get("/", (req, res) -> "Battlesnake documentation can be found at " + 
-            "<a href=\"https://docs.battlesnake.io\">https://docs.battlesnake.io</a>.");
-        post("/start", HANDLER::process, JSON_MAPPER::writeValueAsString);
-        post("/ping", HANDLER::process, JSON_MAPPER::writeValueAsString);
-        post("/move", HANDLER::process, JSON_MAPPER::writeValueAsString);
-        post("/end", HANDLER::process, JSON_MAPPER::writeValueAsString);
+        get("/", (req, res) -> DOCUMENTATION);
+        for (Handler handler : handlers) {
+            mount(handler);
+        }
+    }
+
+    /**
+     * Applies the configuration of one strategy. A property named {@code <strategy>.<KEY>} overrides the global
+     * {@code KEY}, so {@code -Dv2.PONDER=true} ponders for /v2 only.
+     */
+    private static void configure(Handler handler, String strategy, Executor movePool, Map<Path, OpeningBook> books,
+                                  Map<Path, OpponentStore> stores, ExecutorService ponderExecutor) {
+        Path bookPath = Paths.get(property(strategy, "OPENING_BOOK", "opening-book.bin"));
+        if (Files.isRegularFile(bookPath)) {
+            OpeningBook book = books.get(bookPath);
+            try {
+                if (book == null) {
+                    book = OpeningBook.open(bookPath);
+                    books.put(bookPath, book);
+                }
+                handler.setOpeningBook(book);
+                LOG.info("{} uses opening book {} with {} positions", handler.prefix(), bookPath, book.size());
+            } catch (IOException | IllegalArgumentException e) {
+                LOG.warn("Could not load opening book " + bookPath, e);
+            }
+        }
+        String storePath = property(strategy, "OPPONENT_STORE", null);
+        if (storePath != null) {
+            Path path = Paths.get(storePath);
+            try {
+                OpponentStore store = stores.get(path);
+                if (store == null) {
+                    store = OpponentStore.open(path);
+                    stores.put(path, store);
+                }
+                handler.setOpponentStore(store);
+                LOG.info("{} remembers opponents in {}, {} known", handler.prefix(), path, store.size());
+            } catch (IOException | IllegalArgumentException e) {
+                LOG.warn("Could not open opponent store " + path, e);
+            }
+        }
+        if (Boolean.parseBoolean(property(strategy, "ALLOCATION_METER", "false"))) {
+            if (AllocationMeter.supported()) {
+                handler.setAllocationMeter(new AllocationMeter());
+                LOG.info("{} meters allocations per move", handler.prefix());
+            } else {
+                LOG.warn("This JVM does not count allocations per thread, not metering {}", handler.prefix());
+            }
+        }
+        if (Boolean.parseBoolean(property(strategy, "PONDER", "false"))) {
+            int predictions = Integer.parseInt(property(strategy, "PONDER_PREDICTIONS", "9"));
+            handler.setPonderer(new Ponderer(handler::ponderMove, handler.models, predictions, ponderExecutor));
+            LOG.info("{} ponders", handler.prefix());
+        }
+        String stallNanos = property(strategy, "STALL_NANOS", String.valueOf(BoardArena.STALL_NANOS));
+        handler.setStallNanos(Long.parseLong(stallNanos));
+        handler.setColor(property(strategy, "COLOR", handler.color()));
+        handler.setMovePool(movePool);
+    }
+
+    private static String property(String strategy, String key, String defaultValue) {
+        String value = strategy == null ? null : System.getProperty(strategy + "." + key);
+        return value != null ? value : System.getProperty(key, defaultValue);
+    }
+
+    private static void mount(Handler handler) {
+        String prefix = handler.prefix();
+        post(prefix + "/start", handler::process, JSON_MAPPER::writeValueAsString);
+        post(prefix + "/ping", handler::process, JSON_MAPPER::writeValueAsString);
+        post(prefix + "/move", handler::process, JSON_MAPPER::writeValueAsString);
+        post(prefix + "/end", handler::process, JSON_MAPPER::writeValueAsString);
+        get(prefix + "/metrics", (req, res) -> handler.metrics(), JSON_MAPPER::writeValueAsString);
     }
 
     /**
@@ -67,6 +203,172 @@ public class Snake {
          */
         private static final Map<String, String> EMPTY = new HashMap<>();
 
+        /**
+         * The /move responses, one per {@link Direction}, shared by every turn.
+         */
+        private static final List<Map<String, String>> MOVE_RESPONSES = new ArrayList<>();
+        static {
+            for (int d = 0; d < Direction.COUNT; d++) {
+                MOVE_RESPONSES.add(Collections.singletonMap("move", Direction.name(d)));
+            }
+        }
+
+        /**
+         * The order in which {@link #getRandomMove(BoardArena)} lists the open moves.
+         */
+        private static final int[] FALLBACK_ORDER = { Direction.RIGHT, Direction.DOWN, Direction.LEFT, Direction.UP };
+
+        /**
+         * Boards with at least this many cells are searched hierarchically, see {@link #hierarchy(JsonNode, int, Map)}.
+         */
+        private static final int HIERARCHICAL_MIN_CELLS = 25 * 25;
+        private static final int CLUSTER_SIZE = 10;
+
+        /**
+         * Once the snakes cover at least this share of the board, in percent, we follow the survival tour, see
+         * {@link #survivalMove(BoardArena, int)}.
+         */
+        private static final int CROWDED_PERCENT = 50;
+
+        /**
+         * Cluster graphs of the large-board games in progress, kept between turns so only changed clusters are rebuilt.
+         * Like {@link GameModels}, only the {@link GameModels#MAX_GAMES} most recently used are kept.
+         */
+        private final Map<String, HierarchicalGridFinder<GridCell>> hierarchies = recentGraphs();
+
+        /**
+         * The ponderer's own cluster graphs, so that pondering never holds the lock of a graph a live request needs.
+         */
+        private final Map<String, HierarchicalGridFinder<GridCell>> ponderHierarchies = recentGraphs();
+
+        /**
+         * Precomputed early-game moves, or null to always compute the move.
+         */
+        private volatile OpeningBook openingBook;
+
+        public void setOpeningBook(OpeningBook openingBook) {
+            this.openingBook = openingBook;
+        }
+
+        /**
+         * Answers the next turn in the background while the engine is busy, or null to disable pondering.
+         */
+        private volatile Ponderer ponderer;
+
+        public void setPonderer(Ponderer ponderer) {
+            this.ponderer = ponderer;
+        }
+
+        /**
+         * Evaluates three of the four candidate moves while the request thread does the fourth, or null to evaluate
+         * them one after the other.
+         */
+        private volatile Executor movePool;
+
+        public void setMovePool(Executor movePool) {
+            this.movePool = movePool;
+        }
+
+        /**
+         * How long the stalling search may run per move once we are trapped; 0 leaves only its node budget, so the
+         * answers are reproducible however busy the machine is.
+         */
+        private volatile long stallNanos = BoardArena.STALL_NANOS;
+
+        public void setStallNanos(long stallNanos) {
+            this.stallNanos = stallNanos;
+        }
+
+        /**
+         * Remembers how opponents play from one game to the next, or null to start every game from scratch.
+         */
+        private volatile OpponentStore opponentStore;
+
+        public void setOpponentStore(OpponentStore opponentStore) {
+            this.opponentStore = opponentStore;
+        }
+
+        /**
+         * Meters the bytes each /move allocates, or null to not meter them.
+         */
+        private volatile AllocationMeter allocationMeter;
+
+        public void setAllocationMeter(AllocationMeter allocationMeter) {
+            this.allocationMeter = allocationMeter;
+        }
+
+        public AllocationMeter allocationMeter() {
+            return allocationMeter;
+        }
+
+        /**
+         * The opponent model of each game in progress. The ponderer learns it and ranks its predictions with it;
+         * without a ponderer it is only learned, on every /move, when an {@link OpponentStore} will keep it.
+         */
+        private final GameModels models = new GameModels();
+
+        /**
+         * The route prefix this handler is mounted under, "" for the default routes.
+         */
+        private final String prefix;
+
+        private volatile String color = "#ff00ff";
+
+        private final HandlerMetrics metrics = new HandlerMetrics();
+
+        public Handler() {
+            this("");
+        }
+
+        /**
+         * @param prefix the route prefix, such as "/v2", stripped before dispatching a request
+         */
+        public Handler(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String prefix() {
+            return prefix;
+        }
+
+        /**
+         * @return a handler that answers moves like this one, with its move pool, opening book and stall budget, but
+         * with games, opponents and metrics of its own and no ponderer, so boards replayed through it leave no trace
+         */
+        Handler scratchCopy() {
+            Handler copy = new Handler(prefix);
+            copy.setMovePool(movePool);
+            copy.setOpeningBook(openingBook);
+            copy.setStallNanos(stallNanos);
+            return copy;
+        }
+
+        public String color() {
+            return color;
+        }
+
+        public void setColor(String color) {
+            this.color = color;
+        }
+
+        /**
+         * @return this handler's request counters and move latency, plus its pondering hit rate when it ponders and
+         * the bytes its moves allocate when they are metered
+         */
+        public Map<String, Object> metrics() {
+            Map<String, Object> snapshot = metrics.snapshot();
+            Ponderer ponderer = this.ponderer;
+            if (ponderer != null) {
+                snapshot.put("ponderHits", ponderer.hits());
+                snapshot.put("ponderMisses", ponderer.misses());
+            }
+            AllocationMeter meter = allocationMeter;
+            if (meter != null) {
+                snapshot.put("allocation", meter.snapshot());
+            }
+            return snapshot;
+        }
+
         /**
          * Generic processor that prints out the request and response from the methods.
          *
@@ -75,27 +377,78 @@ public class Snake {
          * @return
          */
         public Map<String, String> process(Request req, Response res) {
+            return process(req.uri(), new ByteArrayInputStream(req.bodyAsBytes()));
+        }
+
+        /**
+         * Transport-independent processor: parses the raw request body and dispatches on the route. Requests and
+         * responses are only logged at debug level, as writing out a whole board costs more than answering it.
+         *
+         * @param uri the request path, including this handler's prefix
+         * @param body the request body, read to its end
+         * @return the response, or null if the request failed
+         */
+        public Map<String, String> process(String uri, InputStream body) {
+            AllocationMeter meter = allocationMeter;
+            long allocated = meter == null ? 0 : AllocationMeter.allocatedBytes();
+            RequestEvent event = FlightEvents.request();
+            JsonNode parsedRequest = null;
+            boolean failed = true;
             try {
-                JsonNode parsedRequest = JSON_MAPPER.readTree(req.body());
-                String uri = req.uri();
-                LOG.info("{} called with: {}", uri, req.body());
+                parsedRequest = JSON_MAPPER.readTree(body);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("{} called with: {}", uri, parsedRequest);
+                }
+                String route = uri.startsWith(prefix) ? uri.substring(prefix.length()) : uri;
                 Map<String, String> snakeResponse;
-                if (uri.equals("/start")) {
+                if (route.equals("/start")) {
+                    metrics.start();
                     snakeResponse = start(parsedRequest);
-                } else if (uri.equals("/ping")) {
+                } else if (route.equals("/ping")) {
+                    metrics.ping();
                     snakeResponse = ping();
-                } else if (uri.equals("/move")) {
-                    snakeResponse = move(parsedRequest);
-                } else if (uri.equals("/end")) {
+                } else if (route.equals("/move")) {
+                    long started = System.nanoTime();
+                    Ponderer ponderer = this.ponderer;
+                    snakeResponse = ponderer == null ? null : ponderer.take(parsedRequest);
+                    if (snakeResponse == null) {
+                        snakeResponse = move(parsedRequest);
+                    }
+                    if (ponderer != null) {
+                        ponderer.ponder(parsedRequest, snakeResponse.get("move"));
+                    }
+                    if (opponentStore != null) {
+                        if (ponderer == null) {
+                            observe(parsedRequest);
+                        }
+                        nameOpponents(parsedRequest);
+                    }
+                    metrics.move(System.nanoTime() - started);
+                    if (meter != null) {
+                        meter.request(AllocationMeter.allocatedBytes() - allocated);
+                    }
+                } else if (route.equals("/end")) {
+                    metrics.end();
                     snakeResponse = end(parsedRequest);
+                    if (ponderer != null) {
+                        ponderer.forget(parsedRequest);
+                    }
                 } else {
                     throw new IllegalAccessError("Strange call made to the snake: " + uri);
                 }
-                LOG.info("Responding with: {}", JSON_MAPPER.writeValueAsString(snakeResponse));
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Responding with: {}", JSON_MAPPER.writeValueAsString(snakeResponse));
+                }
+                failed = false;
                 return snakeResponse;
             } catch (Exception e) {
+                metrics.error();
                 LOG.error("Something went wrong!", e);
                 return null;
+            } finally {
+                if (event != null) {
+                    event.finish(uri, parsedRequest, failed);
+                }
             }
         }
 
@@ -117,8 +470,24 @@ public class Snake {
          * @return a response back to the engine containing the snake setup values.
          */
         public Map<String, String> start(JsonNode startRequest) {
+            OpponentStore store = opponentStore;
+            String gameId = gameId(startRequest);
+            if (store != null && gameId != null) {
+                OpponentModel model = models.get(gameId);
+                synchronized (model) {
+                    for (JsonNode snake : opponents(startRequest)) {
+                        String id = snake.get("id").textValue();
+                        String name = opponentName(snake);
+                        model.setName(id, name);
+                        OpponentProfile profile = store.load(name);
+                        if (profile != null) {
+                            model.prime(id, profile);
+                        }
+                    }
+                }
+            }
             Map<String, String> response = new HashMap<>();
-            response.put("color", "#ff00ff");
+            response.put("color", color);
             return response;
         }
 
@@ -133,288 +502,383 @@ public class Snake {
        
         
         public Map<String, String> move(JsonNode moveRequest) {
-            Map<String, String> response = new HashMap<>();
-            int boardHeight = moveRequest.get("board").get("height").intValue();
-            int boardWidth = moveRequest.get("board").get("width").intValue();
-            int health = moveRequest.get("you").get("health").intValue();
-            GridCell[][] grid = new GridCell[boardWidth][boardHeight];
-            List<int[]> ourBody = new ArrayList<int[]>();
-            List<List<int[]>> others = new ArrayList<List<int[]>>();
-            List<int[]> allBodies = new ArrayList<int[]>();
-            List<int[]> food = new ArrayList<int[]>();
-            String ourId = moveRequest.get("you").get("id").textValue();
-
-            for (int i = 0; i < grid.length; i++) {
-                for (int j = 0; j < grid[i].length; j++) {
-                    grid[i][j] = new GridCell(i, j, true);
-                }
+            JsonNode boardNode = moveRequest.get("board");
+            int width = boardNode.get("width").intValue();
+            int height = boardNode.get("height").intValue();
+            AllocationMeter meter = allocationMeter;
+            MoveEvent event = FlightEvents.move();
+            if (meter != null) {
+                meter.begin();
             }
-
-            Iterator<JsonNode> ourBodyIter = moveRequest.get("you").get("body").elements();
-
-            while (ourBodyIter.hasNext()) {
-                JsonNode coord = ourBodyIter.next();
-                int x = coord.get("x").intValue();
-                int y = coord.get("y").intValue();
-
-                ourBody.add(new int[] {x, y});
+            long started = event == null ? 0 : System.nanoTime();
+            BoardArena arena = BoardArena.forBoard(width, height);
+            arena.timed = event != null;
+            if (arena.timed) {
+                Arrays.fill(arena.phaseNanos, 0);
+                arena.phaseStarted = started;
             }
+            arena.reset(moveRequest);
+            int direction = decide(moveRequest, arena, meter, false);
+            if (meter != null) {
+                meter.end(width, height);
+            }
+            if (event != null) {
+                event.finish(moveRequest, arena, direction);
+            }
+            return response(direction);
+        }
 
-            Iterator<JsonNode> snakesIter = moveRequest.get("board").get("snakes").elements();
-            while (snakesIter.hasNext()){
-                List<int[]> snake = new ArrayList<int[]>();
-                JsonNode snakeNode = snakesIter.next();
-                Iterator<JsonNode> bodyIter = snakeNode.get("body").elements();
-                boolean checkedHead = false;
-
-
-                while (bodyIter.hasNext()) {
-                    JsonNode coord = bodyIter.next();
-                    int x = coord.get("x").intValue();
-                    int y = coord.get("y").intValue();
-
-                    snake.add(new int[] {x, y});
-
-                    if (!ourId.equals(snakeNode.get("id").textValue())) {
-                       if(!checkedHead){
-                           int eHeadx = x + 1;
-                           int eHeady = y;
-
-                           if (eHeadx >= 0 && eHeadx < boardWidth && eHeady >= 0 && eHeady > boardHeight) {
-                               grid[eHeadx][eHeady] = new GridCell(eHeadx, eHeady, false);
-                           }
-
-                           eHeadx = x - 1;
-                           eHeady = y;
-
-                           if (eHeadx >= 0 && eHeadx < boardWidth && eHeady >= 0 && eHeady > boardHeight) {
-                            grid[eHeadx][eHeady] = new GridCell(eHeadx, eHeady, false);
-                            }
-
-                           eHeadx = x;
-                           eHeady = y + 1;
-
-                           if (eHeadx >= 0 && eHeadx < boardWidth && eHeady >= 0 && eHeady > boardHeight) {
-                            grid[eHeadx][eHeady] = new GridCell(eHeadx, eHeady, false);
-                            }
-
-                           eHeadx = x;
-                           eHeady = y - 1;
+        /**
+         * The answer {@link #move(JsonNode)} gives, computed for the {@link Ponderer}: the candidate moves are
+         * evaluated on the calling thread instead of the move pool, and large boards are searched on cluster graphs
+         * of the ponderer's own. Ponder work thus never queues in front of a live request nor holds a lock one
+         * waits for. Neither metered nor recorded.
+         */
+        public Map<String, String> ponderMove(JsonNode moveRequest) {
+            JsonNode boardNode = moveRequest.get("board");
+            BoardArena arena = BoardArena.forBoard(boardNode.get("width").intValue(), boardNode.get("height").intValue());
+            arena.timed = false;
+            arena.reset(moveRequest);
+            return response(decide(moveRequest, arena, null, true));
+        }
 
-                           if (eHeadx >= 0 && eHeadx < boardWidth && eHeady >= 0 && eHeady > boardHeight) {
-                            grid[eHeadx][eHeady] = new GridCell(eHeadx, eHeady, false);
-                            }                                                   
-                           checkedHead = true;
-                       }
-                       
-                        // if checkedHead is false
-                        // then we are looking at the head
-                        // add in logic for adding neighbor heads to board
-                        // so checkedHead is now true
-                    }
+        /**
+         * Tries the ways of picking a move in turn. As each phase ends it is charged to the meter, if any, and timed
+         * for the flight recorder when the move is recorded.
+         *
+         * @return the {@link Direction}
+         */
+        private int decide(JsonNode moveRequest, BoardArena arena, AllocationMeter meter, boolean pondering) {
+            Board board = arena.board;
+            phaseEnded(arena, meter, AllocationMeter.RESET);
+            int bookMove = bookMove(moveRequest, arena);
+            phaseEnded(arena, meter, AllocationMeter.BOOK);
+            if (bookMove >= 0) {
+                return bookMove;
+            }
+            // sealed in a small pocket, survival is all that counts and it can be solved exactly
+            int endgameMove = arena.endgame.bestMove(board);
+            phaseEnded(arena, meter, AllocationMeter.ENDGAME);
+            if (endgameMove >= 0) {
+                return endgameMove;
+            }
 
-                    // If snake is not our snake [X]
-                    // If first piece of body (head) [X]
-                    // for each neighbor of head [X]
-                    // make inaccessible [X]
+            int targetFood = closestFood(board, arena.danger);
+            int survivalMove = survivalMove(arena, targetFood);
+            phaseEnded(arena, meter, AllocationMeter.SURVIVAL);
+            if (survivalMove >= 0) {
+                return survivalMove;
+            }
+            HierarchicalGridFinder<GridCell> hierarchy = hierarchy(moveRequest, board.cellCount(),
+                    pondering ? ponderHierarchies : hierarchies);
+            int direction = hierarchy != null ? hierarchicalMove(arena, hierarchy, targetFood)
+                    // each first move is scored on its own, on the pool when there is one and we are live
+                    : arena.evaluator.bestMove(targetFood, pondering ? null : movePool);
+            phaseEnded(arena, meter, AllocationMeter.SEARCH);
+            if (direction < 0) {
+                // neither food nor our tail can be reached: fill as much of the trap as we can
+                arena.stall.setTimeBudgetNanos(stallNanos);
+                direction = arena.stall.bestMove(board);
+                phaseEnded(arena, meter, AllocationMeter.STALL);
+            }
+            if (direction < 0) {
+                direction = getRandomMove(arena);
+                phaseEnded(arena, meter, AllocationMeter.FALLBACK);
+            }
+            return direction;
+        }
 
-                    if (bodyIter.hasNext()) {
+        private static void phaseEnded(BoardArena arena, AllocationMeter meter, int phase) {
+            arena.lastPhase = phase;
+            if (meter != null) {
+                meter.phase(phase);
+            }
+            if (arena.timed) {
+                long now = System.nanoTime();
+                arena.phaseNanos[phase] = now - arena.phaseStarted;
+                arena.phaseStarted = now;
+            }
+        }
 
-                        
-                        grid[x][y] = new GridCell(x, y, false);
-                        allBodies.add(new int[] {x, y});
-                    } else {
-                        if (distance(ourBody.get(0), new int[]{x, y}) != 1) {
-                            grid[x][y] = new GridCell(x, y, true);
-                        }
+        /**
+         * Large boards: the first step towards the food if the tail can still be reached from it, else the first
+         * step towards the tail, both found on the game's cluster graph.
+         *
+         * @return the {@link Direction}, or -1 if neither can be reached
+         */
+        private int hierarchicalMove(BoardArena arena, HierarchicalGridFinder<GridCell> hierarchy, int targetFood) {
+            Board board = arena.board;
+            NavigationGrid<GridCell> navGrid = arena.grid;
+            int head = board.head(0);
+            GridCell headCell = arena.cell(head);
+            GridCell tailCell = arena.cell(board.tail(0));
+            GridCell step;
+
+            // overlapping requests of one game would otherwise update the graph under each other's search
+            synchronized (hierarchy) {
+                hierarchy.update(navGrid);
+                step = hierarchy.findFirstStep(headCell, tailCell, navGrid);
+                if (targetFood >= 0) {
+                    GridCell foodStep = hierarchy.findFirstStep(headCell, arena.cell(targetFood), navGrid);
+                    // only head for the food if the tail can still be reached from the step towards it
+                    if (foodStep != null && hierarchy.findFirstStep(foodStep, tailCell, navGrid) != null) {
+                        step = foodStep;
                     }
                 }
-
-                if (!ourId.equals(snakeNode.get("id").textValue())) {
-                    others.add(snake);
-                }
             }
+            return step == null ? -1 : Direction.between(board.x(head), board.y(head), step.getX(), step.getY());
+        }
 
-            Iterator<JsonNode> foodIter = moveRequest.get("board").get("food").elements();
+        /**
+         * @return the shared, immutable response for a {@link Direction}
+         */
+        private static Map<String, String> response(int direction) {
+            return MOVE_RESPONSES.get(direction);
+        }
 
-            while (foodIter.hasNext()) {
-                JsonNode coord = foodIter.next();
-                int x = coord.get("x").intValue();
-                int y = coord.get("y").intValue();
+        /** @return a synchronized map that drops its least recently used game once it holds too many */
+        private static Map<String, HierarchicalGridFinder<GridCell>> recentGraphs() {
+            return Collections.synchronizedMap(
+                    new LinkedHashMap<String, HierarchicalGridFinder<GridCell>>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<String, HierarchicalGridFinder<GridCell>> eldest) {
+                            return size() > GameModels.MAX_GAMES;
+                        }
+                    });
+        }
 
-                food.add(new int[] {x, y});
+        /**
+         * @param graphs the live or the ponderer's cluster graphs
+         * @return the cluster graph of this request's game when the board is large enough to search hierarchically,
+         * or null to use plain A*
+         */
+        private HierarchicalGridFinder<GridCell> hierarchy(JsonNode moveRequest, int cells,
+                                                           Map<String, HierarchicalGridFinder<GridCell>> graphs) {
+            JsonNode game = moveRequest.get("game");
+            if (cells < HIERARCHICAL_MIN_CELLS || game == null || game.get("id") == null) {
+                return null;
             }
+            return graphs.computeIfAbsent(game.get("id").textValue(), id -> {
+                GridFinderOptions opt = new GridFinderOptions();
+                opt.allowDiagonal = false;
+                return new HierarchicalGridFinder<GridCell>(opt, CLUSTER_SIZE);
+            });
+        }
 
-            NavigationGrid<GridCell> navGrid = new NavigationGrid<GridCell>(grid, false);
-            GridFinderOptions opt = new GridFinderOptions();
-            opt.allowDiagonal = false;
-            AStarFinder<GridCell> finder = new AStarFinder<GridCell>(GridCell.class, opt);
-
-            int xHead = ourBody.get(0)[0];
-            int yHead = ourBody.get(0)[1];
-            int xTail = ourBody.get(ourBody.size() - 1)[0];
-            int yTail = ourBody.get(ourBody.size() - 1)[1];
-            int[] directionVector = new int[] { 0, 0 };
-            List<GridCell> pathToTail = finder.findPath(navGrid.getCell(xHead, yHead), navGrid.getCell(xTail, yTail), navGrid);
-
-            if (pathToTail != null && pathToTail.size() > 0) {
-                GridCell node = pathToTail.get(0);
-
-                directionVector = new int []{ node.getX() - xHead, node.getY() - yHead };   
-            }            
-
-            if (food.size() > 0) {
-                int[] targetFood = closestFood(ourBody, others, food);
-
-                if (targetFood != null) {
-                    List<GridCell> pathToFood = finder.findPath(navGrid.getCell(xHead, yHead), navGrid.getCell(targetFood[0], targetFood[1]), navGrid);
-
-                    if (pathToFood != null && pathToFood.size() > 0) {
-                        GridCell node = pathToFood.get(0);
-    
-                        List<GridCell> pathToTailFromFoodNode = finder.findPath(navGrid.getCell(node.getX(), node.getY()), navGrid.getCell(xTail, yTail), navGrid);                    
-    
-                        if (pathToTailFromFoodNode != null && pathToTailFromFoodNode.size() > 0) {
-                            directionVector = new int []{ node.getX() - xHead, node.getY() - yHead };
-                        }
-                    }
+        /**
+         * Crowded boards: follows the board's {@link HamiltonianCycle}, which costs a few table reads per turn. Food
+         * is only worth a shortcut when we could not survive a whole lap of the tour without it. Steps next to the
+         * head of an opponent at least as long are never taken, and the step must keep our tail reachable, as
+         * {@link MoveEvaluator} requires of any move; otherwise the move is left to the search.
+         *
+         * @return the {@link Direction}, or -1 when the board is not crowded or the tour has no safe move
+         */
+        private int survivalMove(BoardArena arena, int targetFood) {
+            HamiltonianCycle cycle = arena.cycle;
+            Board board = arena.board;
+            if (cycle == null) {
+                return -1;
+            }
+            int occupied = 0;
+            for (int s = 0; s < board.snakeCount(); s++) {
+                if (board.isAlive(s)) {
+                    occupied += board.length(s);
                 }
             }
-
-            if (directionVector[0] == 1 && directionVector[1] == 0) {
-                response.put("move", "right");
-            } else if (directionVector[0] == 0 && directionVector[1] == 1) {
-                response.put("move", "down");
-            } else if (directionVector[0] == -1 && directionVector[1] == 0) {
-                response.put("move", "left");
-            } else if (directionVector[0] == 0 && directionVector[1] == -1) {
-                response.put("move", "up");
-            } else {
-                response.put("move", getRandomMove(boardWidth, boardHeight, ourBody, allBodies));
+            if (occupied * 100 < board.cellCount() * CROWDED_PERCENT) {
+                return -1;
             }
-
-            return response;
-        }
-
-        public int distance(int[] node1, int[] node2) {
-            return Math.abs(node1[0]- node2[0])+Math.abs(node1[1]- node2[1]);
+            // our body need not lie along the tour, so a tour step is only as safe as the checks below make it
+            int pattern = NeighborhoodTable.pattern(board, 0);
+            int moves = 0;
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int type = NeighborhoodTable.type(pattern, d);
+                if (type == NeighborhoodTable.FREE || type == NeighborhoodTable.TAIL) {
+                    moves |= 1 << d;
+                }
+            }
+            int target = board.health(0) <= cycle.length() ? targetFood : -1;
+            int direction = cycle.move(board, 0, moves, target);
+            return direction >= 0 && arena.evaluator.keepsTail(direction) ? direction : -1;
         }
 
-        public int[] closestFood(List<int[]> ourBody, List<List<int[]>> others, List <int[]> food){
-            if (food.size() == 0) {
-                return null;
+        /**
+         * Looks the position up in the opening book.
+         *
+         * @return the book {@link Direction}, or -1 when there is no book or the position is not in it
+         */
+        private int bookMove(JsonNode moveRequest, BoardArena arena) {
+            OpeningBook book = openingBook;
+            JsonNode turn = moveRequest.get("turn");
+            if (book == null || turn == null || !book.covers(arena.width, arena.height, turn.intValue())) {
+                return -1;
             }
+            return book.lookup(arena.positionHash.compute(arena.board));
+        }
 
-            int[] ourHead = ourBody.get(0);
-            int[] closestFood = null;
+        /**
+         * Picks the nearest food that we reach strictly before every opponent at least as long as us.
+         *
+         * @param danger the danger map computed for the board, which knows the distance to those opponents
+         * @return the food cell, or -1 if there is none
+         */
+        public int closestFood(Board board, DangerMap danger) {
+            int head = board.head(0);
+            int closestFood = -1;
             int closestDistance = Integer.MAX_VALUE;
 
-            for (int i = 0; i< food.size(); i++){
-                boolean isValid = true;
-                int[] currentFood = food.get(i);
-                int distance = Math.abs(ourHead[0]- currentFood[0])+Math.abs(ourHead[1]- currentFood[1]);
-
-                if (distance < closestDistance) {
-                    for (int j = 0; j < others.size(); j++) {
-                        List<int[]> enemySnake = others.get(j);
-                        int[] enemyHead = enemySnake.get(0);
-
-                        if (enemySnake.size() < ourBody.size()) {
-                            continue;
-                        } else {
-                            int enemyDistance = Math.abs(enemyHead[0]- currentFood[0])+Math.abs(enemyHead[1]- currentFood[1]);
-
-                            if (distance >= enemyDistance) {
-                                isValid = false;
-                                break;
-                            }
-                        }
-                    }
-               } else {
-                   isValid = false;
-               }
-
-               if (isValid) {
+            for (int food = 0; food < board.cellCount(); food++) {
+                if (!board.hasFood(food)) {
+                    continue;
+                }
+                int distance = Math.abs(board.x(head) - board.x(food)) + Math.abs(board.y(head) - board.y(food));
+                if (distance < closestDistance && distance < danger.rivalDistance(food)) {
                     closestDistance = distance;
-                    closestFood = food.get(i);
+                    closestFood = food;
                 }
-            }  
+            }
 
             return closestFood;
         }
 
+        /**
+         * @return one of the legal moves with the best {@link NeighborhoodTable} score, picked by a hash of the board
+         * so that replaying a game gives the same answers, or right when there is no legal move
+         */
+        int getRandomMove(BoardArena arena) {
+            int entry = NeighborhoodTable.lookup(arena.board, 0);
+            int best = NeighborhoodTable.safety(entry);
+            int[] moves = arena.moves;
+            int count = 0;
+            for (int direction : FALLBACK_ORDER) {
+                if ((NeighborhoodTable.legalMoves(entry) & (1 << direction)) != 0
+                        && NeighborhoodTable.score(entry, direction) == best) {
+                    moves[count++] = direction;
+                }
+            }
 
-
-        public boolean isInBounds(int[] coord, int boardWidth, int boardHeight) {
-            if (coord[0] < 0 || coord[0] >= boardWidth || coord[1] < 0 || coord[1] >= boardHeight) {
-                return false;
+            if (count == 0) {
+                return Direction.RIGHT;
             }
-        
-            return true;
+            long hash = arena.board.stateHash();
+            return moves[(int) Math.floorMod(hash ^ hash >>> 32, (long) count)];
         }
 
-        public boolean isColliding(int[] coord, List<int[]> body) {
-            for (int i = 0; i < body.size(); i++) {
-                int[] bodyCoord = body.get(i);
-
-                if (coord[0] == bodyCoord[0] && coord[1] == bodyCoord[1]) {
-                    return true;
+        /**
+         * /end is called by the engine when a game is complete.
+         *
+         * @param endRequest a map containing the JSON sent to this snake. See the spec for details of what this contains.
+         * @return responses back to the engine are ignored.
+         */
+        public Map<String, String> end(JsonNode endRequest) {
+            String gameId = gameId(endRequest);
+            if (gameId != null) {
+                hierarchies.remove(gameId);
+                ponderHierarchies.remove(gameId);
+                OpponentStore store = opponentStore;
+                if (store != null) {
+                    // the final board still holds the opponents' last moves
+                    observe(endRequest);
+                    nameOpponents(endRequest);
+                    remember(store, models.remove(gameId));
+                } else {
+                    models.remove(gameId);
                 }
             }
-
-            return false;
+            Map<String, String> response = new HashMap<>();
+            return response;
         }
 
-        public String getRandomMove(int boardWidth, int boardHeight, List<int[]> ourBody, List<int[]> allBodies) {
-            int xHead = ourBody.get(0)[0];
-            int yHead = ourBody.get(0)[1];
-
-            int[] right = { xHead + 1, yHead };
-            int[] down = { xHead, yHead + 1 };
-            int[] left = { xHead - 1, yHead };
-            int[] up = { xHead, yHead - 1 };
-        
-            boolean isRightValid = isInBounds(right, boardWidth, boardHeight) && !isColliding(right, allBodies);
-            boolean isDownValid = isInBounds(down, boardWidth, boardHeight) && !isColliding(down, allBodies);
-            boolean isLeftValid = isInBounds(left, boardWidth, boardHeight) && !isColliding(left, allBodies);
-            boolean isUpValid = isInBounds(up, boardWidth, boardHeight) && !isColliding(up, allBodies);
-
-            List<String> directions = new LinkedList<String>(Arrays.asList("right", "down", "left", "up"));
+        /**
+         * Adds what the model of a finished game learned about each opponent to its stored profile, including the
+         * opponents eliminated before the end.
+         */
+        private void remember(OpponentStore store, OpponentModel model) {
+            if (model == null) {
+                return;
+            }
+            synchronized (model) {
+                for (String id : model.learnedIds()) {
+                    String name = model.name(id) != null ? model.name(id) : id;
+                    OpponentProfile profile = store.load(name);
+                    if (profile == null) {
+                        profile = new OpponentProfile();
+                    }
+                    if (model.addGameTo(id, profile)) {
+                        try {
+                            store.save(name, profile);
+                        } catch (IOException e) {
+                            LOG.warn("Could not save the profile of " + name, e);
+                        }
+                    }
+                }
+            }
+        }
 
-            if (!isRightValid) {
-                directions.remove("right");
+        /**
+         * Teaches the game's opponent model the moves that led to this board.
+         */
+        private void observe(JsonNode request) {
+            String gameId = gameId(request);
+            if (gameId == null) {
+                return;
             }
-            
-            if (!isDownValid) {
-                directions.remove("down");
+            Board board = Board.fromJson(request);
+            OpponentModel model = models.get(gameId);
+            synchronized (model) {
+                model.observe(board);
             }
-            
-            if (!isLeftValid) {
-                directions.remove("left");
+        }
+
+        /**
+         * Tells the game's opponent model the names the opponents on this board play under, which the /end board
+         * no longer lists for the snakes that were eliminated.
+         */
+        private void nameOpponents(JsonNode request) {
+            String gameId = gameId(request);
+            if (gameId == null) {
+                return;
             }
-            
-            if (!isUpValid) {
-                directions.remove("up");
+            OpponentModel model = models.get(gameId);
+            synchronized (model) {
+                for (JsonNode snake : opponents(request)) {
+                    model.setName(snake.get("id").textValue(), opponentName(snake));
+                }
             }
+        }
 
-            if (directions.size() == 0) {
-                return "right";
-            } else {
-                Random rand = new Random();
+        private static String gameId(JsonNode request) {
+            JsonNode game = request.get("game");
+            JsonNode id = game == null ? null : game.get("id");
+            return id == null ? null : id.textValue();
+        }
 
-                return directions.get(rand.nextInt(directions.size()));
+        /**
+         * @return the snakes on the request's board other than ours
+         */
+        private static List<JsonNode> opponents(JsonNode request) {
+            List<JsonNode> opponents = new ArrayList<>();
+            JsonNode board = request.get("board");
+            JsonNode you = request.get("you");
+            if (board == null || board.get("snakes") == null || you == null) {
+                return opponents;
+            }
+            String ourId = you.get("id").textValue();
+            for (JsonNode snake : board.get("snakes")) {
+                if (!ourId.equals(snake.get("id").textValue())) {
+                    opponents.add(snake);
+                }
             }
+            return opponents;
         }
 
         /**
-         * /end is called by the engine when a game is complete.
-         *
-         * @param endRequest a map containing the JSON sent to this snake. See the spec for details of what this contains.
-         * @return responses back to the engine are ignored.
+         * @return the name an opponent plays under on the ladder, which stays the same between games, or its id
+         * when it has none
          */
-        public Map<String, String> end(JsonNode endRequest) {
-            Map<String, String> response = new HashMap<>();
-            return response;
+        private static String opponentName(JsonNode snake) {
+            JsonNode name = snake.get("name");
+            return name != null && !name.textValue().isEmpty() ? name.textValue() : snake.get("id").textValue();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+package io.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a corpus of recorded boards through {@link Snake.Handler#move(JsonNode)} before the server binds its
+ * port, so the first real turns run compiled code instead of the interpreter.
+ *
+ * The corpus is replayed in rounds. Warm-up stops once compilation has settled, meaning that for
+ * {@link #SETTLED_MILLIS} no round kept the JIT busy and no round improved the best mean move time by more than
+ * {@link #SETTLED_IMPROVEMENT}, or when the time cap runs out. Every
+ * game of the corpus is ended after each round, so the large boards also exercise rebuilding their cluster graph.
+ * The boards go through a {@link Snake.Handler#scratchCopy()} of each handler, so the games, opponent profiles and
+ * metrics of the handlers that serve requests are left alone.
+ */
+public final class WarmUp {
+    private static final Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+
+    /** The corpus bundled with the snake, a JSON array of /move requests. */
+    public static final String CORPUS = "/warmup-boards.json";
+
+    private static final int MIN_ROUNDS = 20;
+    private static final long SETTLED_MILLIS = 500;
+    private static final double SETTLED_IMPROVEMENT = 0.05;
+    private static final long SETTLED_COMPILATION_MILLIS = 1;
+
+    private final List<JsonNode> boards;
+
+    public WarmUp(List<JsonNode> boards) {
+        if (boards.isEmpty()) {
+            throw new IllegalArgumentException("No boards to warm up with");
+        }
+        this.boards = boards;
+    }
+
+    /**
+     * @return the bundled corpus
+     */
+    public static WarmUp bundled(ObjectMapper mapper) throws IOException {
+        try (InputStream in = WarmUp.class.getResourceAsStream(CORPUS)) {
+            if (in == null) {
+                throw new IOException("Missing warm-up corpus " + CORPUS);
+            }
+            List<JsonNode> boards = new ArrayList<>();
+            for (JsonNode board : mapper.readTree(in)) {
+                boards.add(board);
+            }
+            return new WarmUp(boards);
+        }
+    }
+
+    /**
+     * Replays the corpus through every handler until the move time settles or the cap runs out, whichever comes
+     * first.
+     */
+    public Result run(List<Snake.Handler> handlers, long capMillis) {
+        if (handlers.isEmpty()) {
+            throw new IllegalArgumentException("No handlers to warm up");
+        }
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(capMillis);
+        long compileStart = compilationMillis();
+        long compiled = compileStart;
+        long[] moveNanos = new long[boards.size() * handlers.size()];
+        List<Snake.Handler> copies = new ArrayList<>();
+        for (Snake.Handler handler : handlers) {
+            copies.add(handler.scratchCopy());
+        }
+
+        double best = Double.MAX_VALUE;
+        long quietSince = started;
+        int rounds = 0;
+        boolean settled = false;
+        while (System.nanoTime() < deadline) {
+            int i = 0;
+            for (Snake.Handler handler : copies) {
+                for (JsonNode board : boards) {
+                    long moveStarted = System.nanoTime();
+                    handler.move(board);
+                    moveNanos[i++] = System.nanoTime() - moveStarted;
+                }
+                for (JsonNode board : boards) {
+                    handler.end(board);
+                }
+            }
+            rounds++;
+
+            double mean = mean(moveNanos);
+            long compiledNow = compilationMillis();
+            if (mean < best * (1 - SETTLED_IMPROVEMENT) || compiledNow - compiled > SETTLED_COMPILATION_MILLIS) {
+                quietSince = System.nanoTime();
+            }
+            best = Math.min(best, mean);
+            compiled = compiledNow;
+            if (rounds >= MIN_ROUNDS && System.nanoTime() - quietSince >= TimeUnit.MILLISECONDS.toNanos(SETTLED_MILLIS)) {
+                settled = true;
+                break;
+            }
+        }
+
+        Arrays.sort(moveNanos);
+        long elapsed = System.nanoTime() - started;
+        Result result = new Result(rounds, settled, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                compilationMillis() - compileStart, mean(moveNanos) / 1000, moveNanos[moveNanos.length / 2] / 1000.0,
+                moveNanos[moveNanos.length - 1] / 1000.0);
+        LOG.info("{}", result);
+        return result;
+    }
+
+    private static double mean(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return (double) sum / values.length;
+    }
+
+    /** @return the total JIT compilation time so far, or 0 when the JVM does not report it */
+    private static long compilationMillis() {
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        return compilation != null && compilation.isCompilationTimeMonitoringSupported()
+                ? compilation.getTotalCompilationTime() : 0;
+    }
+
+    /**
+     * How long warm-up took and the move times of its last round, which are what the first real turns can expect.
+     */
+    public static final class Result {
+        public final int rounds;
+        public final boolean settled;
+        public final long elapsedMillis;
+        public final long compilationMillis;
+        public final double meanMicros;
+        public final double medianMicros;
+        public final double maxMicros;
+
+        Result(int rounds, boolean settled, long elapsedMillis, long compilationMillis, double meanMicros,
+               double medianMicros, double maxMicros) {
+            this.rounds = rounds;
+            this.settled = settled;
+            this.elapsedMillis = elapsedMillis;
+            this.compilationMillis = compilationMillis;
+            this.meanMicros = meanMicros;
+            this.medianMicros = medianMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Warm-up %s after %d rounds in %d ms (%d ms compiling): "
+                            + "move mean %.0f us, median %.0f us, max %.0f us",
+                    settled ? "settled" : "hit its time cap", rounds, elapsedMillis, compilationMillis,
+                    meanMicros, medianMicros, maxMicros);
+        }
+    }
+}
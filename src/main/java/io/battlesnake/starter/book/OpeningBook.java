@@ -0,0 +1,130 @@
+package io.battlesnake.starter.book;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A read-only book of precomputed moves, memory-mapped from a file written by {@link OpeningBookGenerator}.
+ *
+ * The file is a fixed header followed by entries sorted by canonical {@link PositionHash}:
+ *
+ * <pre>
+ *   int magic, int version, int width, int height, int maxTurn, int entryCount
+ *   entryCount x { long hash, byte direction }
+ * </pre>
+ *
+ * Lookups binary search the mapping directly, so the book never has to be copied onto the heap and the operating
+ * system shares its pages between processes. Instances are safe to use from several threads.
+ */
+public final class OpeningBook {
+    static final int MAGIC = 0x53424B31; // "SBK1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int ENTRY_SIZE = 9;
+
+    private final MappedByteBuffer entries;
+    private final int width;
+    private final int height;
+    private final int maxTurn;
+    private final int size;
+
+    private OpeningBook(MappedByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not an opening book file");
+        }
+        this.width = buffer.getInt(8);
+        this.height = buffer.getInt(12);
+        this.maxTurn = buffer.getInt(16);
+        this.size = buffer.getInt(20);
+        if (buffer.capacity() < HEADER_SIZE + (long) size * ENTRY_SIZE) {
+            throw new IllegalArgumentException("Truncated opening book: expected " + size + " entries");
+        }
+        this.entries = buffer;
+    }
+
+    /** Maps an opening book file into memory. */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new OpeningBook(buffer);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int maxTurn() {
+        return maxTurn;
+    }
+
+    /** @return true if the book may hold such a position, which saves hashing boards it cannot contain */
+    public boolean covers(int boardWidth, int boardHeight, int turn) {
+        return boardWidth == width && boardHeight == height && turn <= maxTurn;
+    }
+
+    /**
+     * @param hash a position already hashed with {@link PositionHash#compute}
+     * @return the move for the real board, or -1 if the position is not in the book
+     */
+    public int lookup(PositionHash hash) {
+        int stored = find(hash.hash());
+        return stored < 0 ? -1 : hash.fromCanonical(stored);
+    }
+
+    /** @return the move stored in the canonical frame for the hash, or -1 */
+    int find(long hash) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = HEADER_SIZE + mid * ENTRY_SIZE;
+            long key = entries.getLong(offset);
+            if (key < hash) {
+                low = mid + 1;
+            } else if (key > hash) {
+                high = mid - 1;
+            } else {
+                return entries.get(offset + 8);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a book file. The hashes and moves are given as parallel arrays in any order; they are sorted here.
+     */
+    public static void write(Path path, int width, int height, int maxTurn, long[] hashes, byte[] moves, int count)
+            throws IOException {
+        long[] keys = Arrays.copyOf(hashes, count);
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(maxTurn);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(keys[order[i]]);
+                out.writeByte(moves[order[i]]);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package io.battlesnake.starter.book;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import io.battlesnake.starter.engine.Rules;
+import io.battlesnake.starter.search.Search;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Offline generator for the {@link OpeningBook}.
+ *
+ * Builds every standard 11x11 start (snakes on the fixed corner or edge spawn points, one food on a diagonal of
+ * each snake away from the centre plus the centre food), then walks the first turns: at each position our move
+ * comes from a deep {@link Search}, and every plausible joint reply of the opponents is explored. Food spawning is
+ * off while exploring, so turns where the engine spawns food simply miss the book at runtime.
+ *
+ * Usage: {@code OpeningBookGenerator <output> [maxTurn=3] [depth=3] [maxSnakes=2]}
+ */
+public class OpeningBookGenerator {
+    private static final int SIZE = 11;
+
+    private final int maxTurn;
+    private final int depth;
+    private final Search search = new Search();
+    private final Rules rules = new Rules(0, 0, false);
+    private final PositionHash positionHash = new PositionHash();
+    private final Set<Long> seen = new HashSet<>();
+
+    private long[] hashes = new long[1024];
+    private byte[] moves = new byte[1024];
+    private int count;
+
+    public OpeningBookGenerator(int maxTurn, int depth) {
+        this.maxTurn = maxTurn;
+        this.depth = depth;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: OpeningBookGenerator <output> [maxTurn] [depth] [maxSnakes]");
+            System.exit(1);
+        }
+        int maxTurn = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int maxSnakes = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        long started = System.nanoTime();
+        OpeningBookGenerator generator = new OpeningBookGenerator(maxTurn, depth);
+        for (int snakes = 2; snakes <= maxSnakes; snakes++) {
+            generator.generate(snakes);
+        }
+        generator.write(args[0]);
+        System.out.printf("Wrote %d positions to %s in %.1fs%n", generator.count, args[0],
+                (System.nanoTime() - started) / 1e9);
+    }
+
+    /** Explores every start with the given number of snakes. */
+    public void generate(int snakes) {
+        int low = 1, mid = (SIZE - 1) / 2, high = SIZE - 2;
+        int[][] corners = { { low, low }, { low, high }, { high, low }, { high, high } };
+        int[][] edges = { { low, mid }, { mid, low }, { mid, high }, { high, mid } };
+        for (int[][] spawns : new int[][][] { corners, edges }) {
+            for (int chosen = 0; chosen < 1 << spawns.length; chosen++) {
+                if (Integer.bitCount(chosen) != snakes) {
+                    continue;
+                }
+                for (int us = 0; us < spawns.length; us++) {
+                    if ((chosen & (1 << us)) == 0) {
+                        continue;
+                    }
+                    for (int foodChoice = 0; foodChoice < 1 << snakes; foodChoice++) {
+                        Board board = start(spawns, chosen, us, foodChoice);
+                        if (board != null) {
+                            explore(board);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Board start(int[][] spawns, int chosen, int us, int foodChoice) {
+        Board board = new Board(SIZE, SIZE);
+        board.addFood(board.index(SIZE / 2, SIZE / 2));
+        int[] order = new int[spawns.length];
+        int n = 0;
+        order[n++] = us;
+        for (int i = 0; i < spawns.length; i++) {
+            if (i != us && (chosen & (1 << i)) != 0) {
+                order[n++] = i;
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            int[] spawn = spawns[order[k]];
+            int s = board.addSnake(k == 0 ? "you" : "snake-" + k, Board.MAX_HEALTH);
+            for (int i = 0; i < 3; i++) {
+                board.appendSegment(s, board.index(spawn[0], spawn[1]));
+            }
+            int option = (foodChoice >> k) & 1;
+            int food = foodAwayFromCentre(board, spawn[0], spawn[1], option);
+            if (food < 0 || board.hasFood(food)) {
+                return null;
+            }
+            board.addFood(food);
+        }
+        return board;
+    }
+
+    /** @return the option-th diagonal of the spawn point that lies away from the centre and is not a corner */
+    private static int foodAwayFromCentre(Board board, int x, int y, int option) {
+        int centre = (SIZE - 1) / 2;
+        int[][] diagonals = { { x - 1, y - 1 }, { x - 1, y + 1 }, { x + 1, y - 1 }, { x + 1, y + 1 } };
+        for (int[] p : diagonals) {
+            boolean corner = (p[0] == 0 || p[0] == SIZE - 1) && (p[1] == 0 || p[1] == SIZE - 1);
+            boolean away = (p[0] < x && x < centre) || (centre < x && x < p[0])
+                    || (p[1] < y && y < centre) || (centre < y && y < p[1]);
+            if (!corner && away && board.contains(p[0], p[1]) && option-- == 0) {
+                return board.index(p[0], p[1]);
+            }
+        }
+        return -1;
+    }
+
+    private void explore(Board board) {
+        if (board.turn() > maxTurn || !board.isAlive(0) || board.aliveCount() < 2) {
+            return;
+        }
+        positionHash.compute(board);
+        if (!seen.add(positionHash.hash())) {
+            return;
+        }
+        int move = search.bestMove(board, depth);
+        add(positionHash.hash(), positionHash.toCanonical(move));
+
+        int snakes = board.snakeCount();
+        int[] options = new int[snakes * Direction.COUNT];
+        int[] counts = new int[snakes];
+        for (int s = 1; s < snakes; s++) {
+            counts[s] = board.isAlive(s) ? Search.candidates(board, s, options, s * Direction.COUNT) : 1;
+        }
+        int[] joint = new int[snakes];
+        int[] index = new int[snakes];
+        joint[0] = move;
+        while (true) {
+            for (int s = 1; s < snakes; s++) {
+                joint[s] = options[s * Direction.COUNT + index[s]];
+            }
+            rules.makeMove(board, joint);
+            explore(board);
+            rules.unmakeMove(board);
+
+            int s = 1;
+            while (s < snakes && ++index[s] == counts[s]) {
+                index[s] = 0;
+                s++;
+            }
+            if (s >= snakes) {
+                return;
+            }
+        }
+    }
+
+    private void add(long hash, int move) {
+        if (count == hashes.length) {
+            hashes = Arrays.copyOf(hashes, count << 1);
+            moves = Arrays.copyOf(moves, count << 1);
+        }
+        hashes[count] = hash;
+        moves[count] = (byte) move;
+        count++;
+    }
+
+    public void write(String path) throws IOException {
+        OpeningBook.write(Paths.get(path), SIZE, SIZE, maxTurn, hashes, moves, count);
+    }
+}
@@ -0,0 +1,137 @@
+package io.battlesnake.starter.book;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+
+/**
+ * 64-bit position hashes that are identical for positions which are mirror images or rotations of each other.
+ *
+ * A position is hashed in each of the board's symmetries (eight on a square board, four otherwise) and the
+ * smallest value is the canonical hash. The symmetry that produced it is kept so that a move stored in the
+ * canonical frame can be mapped back onto the real board.
+ *
+ * The hash covers the board size, the body and health of every living snake (snake 0 separately from the
+ * others, whose order does not matter) and the food. It uses no random tables, so the offline generator and the
+ * server always agree.
+ */
+public final class PositionHash {
+    private static final long OURS = 0x5851F42D4C957F2DL;
+    private static final long THEIRS = 0x14057B7EF767814FL;
+    private static final long FOOD = 0x2545F4914F6CDD1DL;
+
+    private long hash;
+    private int symmetry;
+
+    /**
+     * Computes the canonical hash of the board. Read the results with {@link #hash()} and {@link #symmetry()}.
+     */
+    public PositionHash compute(Board board) {
+        boolean square = board.width() == board.height();
+        hash = 0;
+        symmetry = -1;
+        for (int t = 0; t < 8; t++) {
+            if (!square && (t & 4) != 0) {
+                continue;
+            }
+            long h = hash(board, t);
+            if (symmetry < 0 || h < hash) {
+                hash = h;
+                symmetry = t;
+            }
+        }
+        return this;
+    }
+
+    public long hash() {
+        return hash;
+    }
+
+    /** @return the symmetry that maps the real board onto the canonical one */
+    public int symmetry() {
+        return symmetry;
+    }
+
+    /** @return the direction in the canonical frame of a move made on the real board */
+    public int toCanonical(int direction) {
+        return transformDirection(symmetry, direction);
+    }
+
+    /** @return the direction on the real board of a move stored in the canonical frame */
+    public int fromCanonical(int direction) {
+        for (int d = 0; d < Direction.COUNT; d++) {
+            if (transformDirection(symmetry, d) == direction) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    private static long hash(Board board, int t) {
+        long total = mix(board.width() * 31L + board.height());
+        long others = 0;
+        for (int s = 0; s < board.snakeCount(); s++) {
+            if (!board.isAlive(s)) {
+                continue;
+            }
+            long h = mix((s == 0 ? OURS : THEIRS) ^ board.health(s));
+            for (int i = 0; i < board.length(s); i++) {
+                h = mix(h * 0x100000001B3L ^ transformCell(board, t, board.segment(s, i)));
+            }
+            if (s == 0) {
+                total ^= h;
+            } else {
+                others += h;
+            }
+        }
+        long food = 0;
+        for (int cell = 0; cell < board.cellCount(); cell++) {
+            if (board.hasFood(cell)) {
+                food += mix(FOOD ^ transformCell(board, t, cell));
+            }
+        }
+        return mix(total ^ mix(others ^ THEIRS) ^ mix(food ^ FOOD));
+    }
+
+    /**
+     * Applies symmetry t to a cell: bit 2 transposes, then bit 0 mirrors x and bit 1 mirrors y.
+     */
+    private static int transformCell(Board board, int t, int cell) {
+        int x = board.x(cell);
+        int y = board.y(cell);
+        if ((t & 4) != 0) {
+            int swap = x;
+            x = y;
+            y = swap;
+        }
+        if ((t & 1) != 0) {
+            x = board.width() - 1 - x;
+        }
+        if ((t & 2) != 0) {
+            y = board.height() - 1 - y;
+        }
+        return board.index(x, y);
+    }
+
+    private static int transformDirection(int t, int direction) {
+        int dx = Direction.dx(direction);
+        int dy = Direction.dy(direction);
+        if ((t & 4) != 0) {
+            int swap = dx;
+            dx = dy;
+            dy = swap;
+        }
+        if ((t & 1) != 0) {
+            dx = -dx;
+        }
+        if ((t & 2) != 0) {
+            dy = -dy;
+        }
+        return Direction.between(0, 0, dx, dy);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
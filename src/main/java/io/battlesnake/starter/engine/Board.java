@@ -0,0 +1,582 @@
+package io.battlesnake.starter.engine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Arrays;
+
+/**
+ * A compact, mutable board state meant to be advanced in-process by {@link Rules}.
+ *
+ * Cells are addressed by a single int index ({@code y * width + x}). Each snake keeps its body in a ring buffer
+ * so that moving only touches the new head and the old tail. An occupancy index next to the bodies answers "is
+ * anything here", "whose body is it" and "how many turns until it is free" in constant time without walking the
+ * bodies, and is updated with the same two cells on every move. Snake 0 is always "you" when the board is loaded
+ * from a request.
+ */
+public final class Board {
+    /** Health a snake is reset to when it eats. */
+    public static final int MAX_HEALTH = 100;
+
+    /** Snakes are tracked in an int bitmask, so a board can hold at most this many. */
+    public static final int MAX_SNAKES = 16;
+
+    final int width;
+    final int height;
+    final int cellCount;
+
+    /** Ring buffer capacity for each body, a power of two strictly larger than any reachable length. */
+    final int ringCapacity;
+    final int ringMask;
+
+    int snakeCount;
+    int aliveMask;
+    final String[] ids = new String[MAX_SNAKES];
+    final int[][] bodies = new int[MAX_SNAKES][];
+    final int[] headPos = new int[MAX_SNAKES];
+    final int[] length = new int[MAX_SNAKES];
+    final int[] health = new int[MAX_SNAKES];
+
+    final boolean[] food;
+    int foodCount;
+
+    /** Royale hazard cells. Rules does not shrink the board or apply hazard damage; they are read from requests. */
+    final boolean[] hazard;
+    int hazardCount;
+
+    /** Number of body segments of living snakes on each cell. Stacked segments count more than once. */
+    final short[] segments;
+
+    /**
+     * For each occupied cell, the snake index plus one and the ring slot of the segment that stays there longest,
+     * the one nearest its head. 0 for free cells. A ring slot keeps its meaning as the head advances, so moves
+     * never touch the entries of the cells in between.
+     */
+    final byte[] owner;
+    final int[] ownerSlot;
+
+    int turn;
+    long rngState;
+
+    /* undo journal, see Rules */
+    int[] journal = new int[256];
+    int journalSize;
+    int depth;
+
+    /* per-move scratch used by Rules */
+    final int[] movedTo = new int[MAX_SNAKES];
+    final int[] poppedTail = new int[MAX_SNAKES];
+    final int[] previousHealth = new int[MAX_SNAKES];
+    final boolean[] grew = new boolean[MAX_SNAKES];
+
+    public Board(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Board dimensions must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.cellCount = width * height;
+        this.ringCapacity = Integer.highestOneBit(cellCount + 3) << 1;
+        this.ringMask = ringCapacity - 1;
+        this.food = new boolean[cellCount];
+        this.hazard = new boolean[cellCount];
+        this.segments = new short[cellCount];
+        this.owner = new byte[cellCount];
+        this.ownerSlot = new int[cellCount];
+    }
+
+    /**
+     * Builds a board from a /move request. "you" becomes snake 0 and the other snakes keep the request order.
+     */
+    public static Board fromJson(JsonNode moveRequest) {
+        JsonNode board = moveRequest.get("board");
+        Board result = new Board(board.get("width").intValue(), board.get("height").intValue());
+        result.load(moveRequest);
+        return result;
+    }
+
+    /**
+     * Replaces the contents of this board with the state of a /move request of the same dimensions, reusing the
+     * existing arrays.
+     */
+    public void load(JsonNode moveRequest) {
+        JsonNode board = moveRequest.get("board");
+        if (board.get("width").intValue() != width || board.get("height").intValue() != height) {
+            throw new IllegalArgumentException("Request board does not match a " + width + "x" + height + " board");
+        }
+        clear();
+        JsonNode turnNode = moveRequest.get("turn");
+        turn = turnNode == null ? 0 : turnNode.intValue();
+
+        JsonNode you = moveRequest.get("you");
+        String ourId = you.get("id").textValue();
+        addSnake(ourId, you.get("health").intValue(), you.get("body"));
+
+        JsonNode snakes = board.get("snakes");
+        for (int i = 0; i < snakes.size(); i++) {
+            JsonNode snake = snakes.get(i);
+            if (!ourId.equals(snake.get("id").textValue())) {
+                addSnake(snake.get("id").textValue(), snake.get("health").intValue(), snake.get("body"));
+            }
+        }
+
+        JsonNode foodNode = board.get("food");
+        for (int i = 0; i < foodNode.size(); i++) {
+            JsonNode coord = foodNode.get(i);
+            addFood(index(coord.get("x").intValue(), coord.get("y").intValue()));
+        }
+
+        JsonNode hazards = board.get("hazards");
+        for (int i = 0; hazards != null && i < hazards.size(); i++) {
+            JsonNode coord = hazards.get(i);
+            addHazard(index(coord.get("x").intValue(), coord.get("y").intValue()));
+        }
+    }
+
+    /**
+     * Writes this board as a /move request, the inverse of {@link #load(JsonNode)}. Eliminated snakes are left
+     * out and snake 0 is "you".
+     */
+    public ObjectNode toJson(String gameId) {
+        JsonNodeFactory factory = JsonNodeFactory.instance;
+        ObjectNode request = factory.objectNode();
+        request.putObject("game").put("id", gameId);
+        request.put("turn", turn);
+        ObjectNode board = request.putObject("board");
+        board.put("width", width);
+        board.put("height", height);
+        ArrayNode foodNode = board.putArray("food");
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (food[cell]) {
+                foodNode.addObject().put("x", x(cell)).put("y", y(cell));
+            }
+        }
+        if (hazardCount > 0) {
+            ArrayNode hazards = board.putArray("hazards");
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (hazard[cell]) {
+                    hazards.addObject().put("x", x(cell)).put("y", y(cell));
+                }
+            }
+        }
+        ArrayNode snakes = board.putArray("snakes");
+        for (int s = 0; s < snakeCount; s++) {
+            if (isAlive(s)) {
+                ObjectNode snake = snakes.addObject();
+                writeSnake(s, snake);
+                if (s == 0) {
+                    writeSnake(s, request.putObject("you"));
+                }
+            }
+        }
+        return request;
+    }
+
+    private void writeSnake(int s, ObjectNode snake) {
+        snake.put("id", ids[s]);
+        snake.put("name", ids[s]);
+        snake.put("health", health[s]);
+        ArrayNode body = snake.putArray("body");
+        for (int i = 0; i < length[s]; i++) {
+            int cell = segment(s, i);
+            body.addObject().put("x", x(cell)).put("y", y(cell));
+        }
+    }
+
+    private void addSnake(String id, int snakeHealth, JsonNode body) {
+        int s = addSnake(id, snakeHealth);
+        for (int i = 0; i < body.size(); i++) {
+            JsonNode coord = body.get(i);
+            appendSegment(s, index(coord.get("x").intValue(), coord.get("y").intValue()));
+        }
+    }
+
+    /** Removes all snakes, food and hazards and forgets the undo history. */
+    public void clear() {
+        for (int s = 0; s < snakeCount; s++) {
+            ids[s] = null;
+            length[s] = 0;
+            headPos[s] = 0;
+        }
+        snakeCount = 0;
+        aliveMask = 0;
+        Arrays.fill(food, false);
+        foodCount = 0;
+        Arrays.fill(hazard, false);
+        hazardCount = 0;
+        Arrays.fill(segments, (short) 0);
+        Arrays.fill(owner, (byte) 0);
+        turn = 0;
+        journalSize = 0;
+        depth = 0;
+    }
+
+    /**
+     * Adds an empty, living snake. Its body is built tail-last with {@link #appendSegment(int, int)}.
+     *
+     * @return the index of the new snake
+     */
+    public int addSnake(String id, int snakeHealth) {
+        if (snakeCount == MAX_SNAKES) {
+            throw new IllegalStateException("A board holds at most " + MAX_SNAKES + " snakes");
+        }
+        int s = snakeCount++;
+        if (bodies[s] == null) {
+            bodies[s] = new int[ringCapacity];
+        }
+        ids[s] = id;
+        health[s] = snakeHealth;
+        length[s] = 0;
+        headPos[s] = 0;
+        aliveMask |= 1 << s;
+        return s;
+    }
+
+    /** Appends a segment after the current tail of snake s. */
+    public void appendSegment(int s, int cell) {
+        if (length[s] >= ringCapacity - 1) {
+            throw new IllegalStateException("Snake " + ids[s] + " is longer than the board allows");
+        }
+        int slot = (headPos[s] + length[s]) & ringMask;
+        bodies[s][slot] = cell;
+        length[s]++;
+        if (isAlive(s)) {
+            occupy(s, slot);
+        }
+    }
+
+    public void addFood(int cell) {
+        if (!food[cell]) {
+            food[cell] = true;
+            foodCount++;
+        }
+    }
+
+    public void removeFood(int cell) {
+        if (food[cell]) {
+            food[cell] = false;
+            foodCount--;
+        }
+    }
+
+    public void addHazard(int cell) {
+        if (!hazard[cell]) {
+            hazard[cell] = true;
+            hazardCount++;
+        }
+    }
+
+    /** Seeds the random number generator used for food spawning. */
+    public void setSeed(long seed) {
+        rngState = seed;
+    }
+
+    /** @return a deep copy of this board's state. The undo history is not copied. */
+    public Board copy() {
+        Board copy = new Board(width, height);
+        copy.snakeCount = snakeCount;
+        copy.aliveMask = aliveMask;
+        for (int s = 0; s < snakeCount; s++) {
+            copy.ids[s] = ids[s];
+            copy.bodies[s] = bodies[s].clone();
+            copy.headPos[s] = headPos[s];
+            copy.length[s] = length[s];
+            copy.health[s] = health[s];
+        }
+        System.arraycopy(food, 0, copy.food, 0, cellCount);
+        copy.foodCount = foodCount;
+        System.arraycopy(hazard, 0, copy.hazard, 0, cellCount);
+        copy.hazardCount = hazardCount;
+        System.arraycopy(segments, 0, copy.segments, 0, cellCount);
+        System.arraycopy(owner, 0, copy.owner, 0, cellCount);
+        System.arraycopy(ownerSlot, 0, copy.ownerSlot, 0, cellCount);
+        copy.turn = turn;
+        copy.rngState = rngState;
+        return copy;
+    }
+
+    /**
+     * @return true when both boards hold the same snakes (bodies, health, liveness), the same food and hazards
+     * and the same turn. Ring buffer offsets and undo history are ignored.
+     */
+    public boolean sameState(Board other) {
+        if (other.width != width || other.height != height || other.snakeCount != snakeCount
+                || other.aliveMask != aliveMask || other.turn != turn || other.foodCount != foodCount
+                || other.hazardCount != hazardCount) {
+            return false;
+        }
+        for (int s = 0; s < snakeCount; s++) {
+            if (!ids[s].equals(other.ids[s]) || length[s] != other.length[s] || health[s] != other.health[s]) {
+                return false;
+            }
+            for (int i = 0; i < length[s]; i++) {
+                if (segment(s, i) != other.segment(s, i)) {
+                    return false;
+                }
+            }
+        }
+        return Arrays.equals(food, other.food) && Arrays.equals(hazard, other.hazard)
+                && Arrays.equals(segments, other.segments);
+    }
+
+    /**
+     * @return a hash of exactly what {@link #sameState(Board)} compares, suitable as a key for positions that
+     * are then confirmed with sameState
+     */
+    public long stateHash() {
+        long h = turn * 0x9E3779B97F4A7C15L ^ aliveMask;
+        for (int s = 0; s < snakeCount; s++) {
+            if (!isAlive(s)) {
+                continue;
+            }
+            h = h * 31 + ids[s].hashCode();
+            h = h * 31 + health[s];
+            for (int i = 0; i < length[s]; i++) {
+                h = h * 31 + segment(s, i);
+            }
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (food[cell]) {
+                h = h * 31 + cell;
+            }
+            if (hazard[cell]) {
+                h = h * 31 - cell;
+            }
+        }
+        return h;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int cellCount() {
+        return cellCount;
+    }
+
+    public int turn() {
+        return turn;
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public int x(int cell) {
+        return cell % width;
+    }
+
+    public int y(int cell) {
+        return cell / width;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * @return the cell next to the given one in the given {@link Direction}, or -1 if that would leave the board.
+     */
+    public int neighbor(int cell, int direction) {
+        int x = cell % width + Direction.dx(direction);
+        int y = cell / width + Direction.dy(direction);
+        return contains(x, y) ? y * width + x : -1;
+    }
+
+    public int snakeCount() {
+        return snakeCount;
+    }
+
+    public int aliveMask() {
+        return aliveMask;
+    }
+
+    public int aliveCount() {
+        return Integer.bitCount(aliveMask);
+    }
+
+    public boolean isAlive(int s) {
+        return (aliveMask & (1 << s)) != 0;
+    }
+
+    public String id(int s) {
+        return ids[s];
+    }
+
+    public int health(int s) {
+        return health[s];
+    }
+
+    public int length(int s) {
+        return length[s];
+    }
+
+    /** @return the cell of segment i of snake s, where 0 is the head. -1 means the head left the board. */
+    public int segment(int s, int i) {
+        return bodies[s][(headPos[s] + i) & ringMask];
+    }
+
+    public int head(int s) {
+        return segment(s, 0);
+    }
+
+    public int tail(int s) {
+        return segment(s, length[s] - 1);
+    }
+
+    public boolean hasFood(int cell) {
+        return food[cell];
+    }
+
+    public int foodCount() {
+        return foodCount;
+    }
+
+    public boolean isHazard(int cell) {
+        return hazard[cell];
+    }
+
+    public int hazardCount() {
+        return hazardCount;
+    }
+
+    /** @return true if any living snake has a body segment (head included) on the cell. */
+    public boolean isOccupied(int cell) {
+        return segments[cell] != 0;
+    }
+
+    /** @return the snake whose body covers the cell longest, or -1 if the cell is free. */
+    public int owner(int cell) {
+        return owner[cell] - 1;
+    }
+
+    /**
+     * @return how many moves until the cell is free if no snake on it eats: 1 for a tail that moves away this
+     * turn, the length of the snake for its head, 0 for a free cell
+     */
+    public int turnsUntilFree(int cell) {
+        int s = owner[cell] - 1;
+        return s < 0 ? 0 : length[s] - ((ownerSlot[cell] - headPos[s]) & ringMask);
+    }
+
+    /** @return the number of moves that can currently be undone. */
+    public int depth() {
+        return depth;
+    }
+
+    int nextRandom(int bound) {
+        // splitmix64, kept inline so the state is a single long that the undo journal can restore
+        long z = (rngState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) ((z >>> 1) % bound);
+    }
+
+    void push(int value) {
+        if (journalSize == journal.length) {
+            journal = Arrays.copyOf(journal, journalSize << 1);
+        }
+        journal[journalSize++] = value;
+    }
+
+    int pop() {
+        return journal[--journalSize];
+    }
+
+    /** Counts the segment in ring slot {@code slot} of snake s on its cell. */
+    void occupy(int s, int slot) {
+        int cell = bodies[s][slot];
+        if (cell < 0) {
+            return;
+        }
+        segments[cell]++;
+        int o = owner[cell] - 1;
+        int remaining = length[s] - ((slot - headPos[s]) & ringMask);
+        if (o < 0 || remaining > length[o] - ((ownerSlot[cell] - headPos[o]) & ringMask)) {
+            owner[cell] = (byte) (s + 1);
+            ownerSlot[cell] = slot;
+        }
+    }
+
+    /**
+     * Uncounts the segment in ring slot {@code slot} of snake s. Call it while the slot is still part of the body.
+     * If that segment owned a cell that something else still covers, which only happens for a moment while a
+     * turn is applied or undone, the owner is looked up again among the living snakes.
+     */
+    void vacate(int s, int slot) {
+        int cell = bodies[s][slot];
+        if (cell < 0) {
+            return;
+        }
+        if (--segments[cell] == 0) {
+            owner[cell] = 0;
+        } else if (owner[cell] == s + 1 && ownerSlot[cell] == slot) {
+            reown(cell, s, slot);
+        }
+    }
+
+    private void reown(int cell, int vacatedSnake, int vacatedSlot) {
+        owner[cell] = 0;
+        int best = 0;
+        for (int o = 0; o < snakeCount; o++) {
+            if (!isAlive(o)) {
+                continue;
+            }
+            for (int i = 0; i < length[o]; i++) {
+                int slot = (headPos[o] + i) & ringMask;
+                if (bodies[o][slot] == cell && !(o == vacatedSnake && slot == vacatedSlot) && length[o] - i > best) {
+                    best = length[o] - i;
+                    owner[cell] = (byte) (o + 1);
+                    ownerSlot[cell] = slot;
+                }
+            }
+        }
+    }
+
+    /** Counts every segment of snake s. */
+    void addSegments(int s) {
+        for (int i = 0, n = length[s]; i < n; i++) {
+            occupy(s, (headPos[s] + i) & ringMask);
+        }
+    }
+
+    /** Uncounts every segment of snake s, which must already be marked as eliminated. */
+    void removeSegments(int s) {
+        for (int i = 0, n = length[s]; i < n; i++) {
+            vacate(s, (headPos[s] + i) & ringMask);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder((width + 1) * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cell = index(x, y);
+                char c = food[cell] ? '*' : '.';
+                for (int s = 0; s < snakeCount; s++) {
+                    if (isAlive(s) && head(s) == cell) {
+                        c = (char) ('A' + s);
+                    } else if (c == '.' && isAlive(s) && segments[cell] > 0) {
+                        for (int i = 1; i < length[s]; i++) {
+                            if (segment(s, i) == cell) {
+                                c = (char) ('a' + s);
+                                break;
+                            }
+                        }
+                    }
+                }
+                out.append(c);
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
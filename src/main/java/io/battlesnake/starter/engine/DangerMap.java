@@ -0,0 +1,138 @@
+package io.battlesnake.starter.engine;
+
+import java.util.Arrays;
+
+/**
+ * Per-cell extra cost of stepping onto a cell, for weighted pathfinding.
+ *
+ * Costs are in units of one ordinary move and are whole numbers, so they add cleanly to the orthogonal movement
+ * cost of the finders. A cell pays for each of:
+ * <ul>
+ *   <li>being next to the head of a living opponent at least as long as snake 0, which could move there too</li>
+ *   <li>being a royale hazard</li>
+ *   <li>being a corridor (two free neighbors) or a dead end (one or none)</li>
+ * </ul>
+ * The array is indexed like {@link Board} cells and is reused between calls of {@link #compute(Board)}, which
+ * visits every cell and every opponent head once.
+ *
+ * The same pass also leaves the distance from every cell to the nearest such opponent head, so contested food
+ * is found with one array read per item instead of a loop over the opponents.
+ */
+public final class DangerMap {
+    public static final float HEAD_COST = 8;
+    public static final float HAZARD_COST = 3;
+    public static final float CORRIDOR_COST = 1;
+    public static final float DEAD_END_COST = 3;
+
+    private final int width;
+    private final int height;
+    private final float[] costs;
+    private final int[] rivalDistance;
+
+    public DangerMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.costs = new float[width * height];
+        this.rivalDistance = new int[width * height];
+    }
+
+    /**
+     * Recomputes the costs for a board of this map's dimensions.
+     *
+     * @return the cost array, indexed {@code y * width + x}
+     */
+    public float[] compute(Board board) {
+        if (board.width() != width || board.height() != height) {
+            throw new IllegalArgumentException("Board does not match a " + width + "x" + height + " danger map");
+        }
+        Arrays.fill(costs, 0);
+
+        for (int cell = 0; cell < costs.length; cell++) {
+            if (board.isHazard(cell)) {
+                costs[cell] += HAZARD_COST;
+            }
+            if (board.isOccupied(cell)) {
+                continue;
+            }
+            int free = 0;
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int next = board.neighbor(cell, d);
+                if (next >= 0 && !board.isOccupied(next)) {
+                    free++;
+                }
+            }
+            if (free <= 1) {
+                costs[cell] += DEAD_END_COST;
+            } else if (free == 2) {
+                costs[cell] += CORRIDOR_COST;
+            }
+        }
+
+        Arrays.fill(rivalDistance, Integer.MAX_VALUE);
+        boolean rivals = false;
+        int ourLength = board.isAlive(0) ? board.length(0) : 0;
+        for (int s = 1; s < board.snakeCount(); s++) {
+            if (!board.isAlive(s) || board.length(s) < ourLength || board.head(s) < 0) {
+                continue;
+            }
+            rivals = true;
+            rivalDistance[board.head(s)] = 0;
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int next = board.neighbor(board.head(s), d);
+                if (next >= 0) {
+                    costs[next] += HEAD_COST;
+                }
+            }
+        }
+        if (rivals) {
+            distanceTransform();
+        }
+        return costs;
+    }
+
+    /** Two-pass Manhattan distance transform, exact for distances on an open grid. */
+    private void distanceTransform() {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int cell = y * width + x;
+                int best = rivalDistance[cell];
+                if (x > 0 && rivalDistance[cell - 1] < best - 1) {
+                    best = rivalDistance[cell - 1] + 1;
+                }
+                if (y > 0 && rivalDistance[cell - width] < best - 1) {
+                    best = rivalDistance[cell - width] + 1;
+                }
+                rivalDistance[cell] = best;
+            }
+        }
+        for (int y = height - 1; y >= 0; y--) {
+            for (int x = width - 1; x >= 0; x--) {
+                int cell = y * width + x;
+                int best = rivalDistance[cell];
+                if (x < width - 1 && rivalDistance[cell + 1] < best - 1) {
+                    best = rivalDistance[cell + 1] + 1;
+                }
+                if (y < height - 1 && rivalDistance[cell + width] < best - 1) {
+                    best = rivalDistance[cell + width] + 1;
+                }
+                rivalDistance[cell] = best;
+            }
+        }
+    }
+
+    public float[] costs() {
+        return costs;
+    }
+
+    public float cost(int cell) {
+        return costs[cell];
+    }
+
+    /**
+     * @return the Manhattan distance from the cell to the nearest head of a living opponent at least as long as
+     * snake 0, or {@link Integer#MAX_VALUE} if there is none
+     */
+    public int rivalDistance(int cell) {
+        return rivalDistance[cell];
+    }
+}
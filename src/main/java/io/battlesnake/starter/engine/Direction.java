@@ -0,0 +1,65 @@
+package io.battlesnake.starter.engine;
+
+/**
+ * The four moves a snake can make, encoded as small ints so they can be stored in arrays and bitmasks.
+ * Uses the same orientation as the engine: "down" increases y and "up" decreases it.
+ */
+public final class Direction {
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+
+    public static final int COUNT = 4;
+
+    private static final String[] NAMES = { "up", "down", "left", "right" };
+    private static final int[] DX = { 0, 0, -1, 1 };
+    private static final int[] DY = { -1, 1, 0, 0 };
+    private static final int[] OPPOSITE = { DOWN, UP, RIGHT, LEFT };
+
+    private Direction() {
+    }
+
+    public static String name(int direction) {
+        return NAMES[direction];
+    }
+
+    public static int dx(int direction) {
+        return DX[direction];
+    }
+
+    public static int dy(int direction) {
+        return DY[direction];
+    }
+
+    public static int opposite(int direction) {
+        return OPPOSITE[direction];
+    }
+
+    /**
+     * @return the direction leading from (fromX, fromY) to the orthogonally adjacent (toX, toY), or -1 if the two
+     * cells are not adjacent.
+     */
+    public static int between(int fromX, int fromY, int toX, int toY) {
+        int dx = toX - fromX;
+        int dy = toY - fromY;
+        for (int d = 0; d < COUNT; d++) {
+            if (DX[d] == dx && DY[d] == dy) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the direction with the given engine name, or -1 if the name is unknown.
+     */
+    public static int parse(String name) {
+        for (int d = 0; d < COUNT; d++) {
+            if (NAMES[d].equals(name)) {
+                return d;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,165 @@
+package io.battlesnake.starter.engine;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A closed tour through the cells of a board, for a survival mode that costs next to nothing per turn.
+ *
+ * A snake alone on the board that only ever steps to the next cell of the tour never dies, whatever its length:
+ * its body lies along the tour and the cell ahead is always the one its tail just left. On a board with an even
+ * side the tour visits every cell. A board with two odd sides has no such tour, so the bottom-right corner is
+ * left out and the tour visits the others.
+ *
+ * {@link #move(Board, int, int, int)} also takes shortcuts, to get around other snakes or to reach food sooner:
+ * any legal step that lands further along the tour, as long as it stays behind our own tail with a margin, so the
+ * tail is still ahead of us on the tour. Tours are built once per board size and shared.
+ */
+public final class HamiltonianCycle {
+    /** how far behind our tail, along the tour, a shortcut has to land; leaves room for growing after eating */
+    private static final int SHORTCUT_MARGIN = 4;
+
+    private static final Map<Integer, HamiltonianCycle> CYCLES = new ConcurrentHashMap<>();
+
+    private final int width;
+    /* cell to its index along the tour, -1 for the left-out corner */
+    private final int[] position;
+    private final int[] cells;
+    private int length;
+
+    private HamiltonianCycle(int width, int height) {
+        this.width = width;
+        this.position = new int[width * height];
+        this.cells = new int[width * height];
+        Arrays.fill(position, -1);
+        if (height % 2 == 0) {
+            build(width, height, false, false);
+        } else if (width % 2 == 0) {
+            build(height, width, true, false);
+        } else {
+            build(width, height - 1, false, true);
+        }
+    }
+
+    /** @return the tour for the board size, built on first use, or null if a side is shorter than two cells */
+    public static HamiltonianCycle forBoard(int width, int height) {
+        if (width < 2 || height < 2) {
+            return null;
+        }
+        return CYCLES.computeIfAbsent(width << 16 | height, key -> new HamiltonianCycle(width, height));
+    }
+
+    /** @return the number of cells on the tour */
+    public int length() {
+        return length;
+    }
+
+    /** @return the index of the cell along the tour, or -1 if the tour leaves it out */
+    public int position(int cell) {
+        return position[cell];
+    }
+
+    /** @return the cell after this one on the tour */
+    public int next(int cell) {
+        return cells[(position[cell] + 1) % length];
+    }
+
+    /** @return how many steps along the tour lead from one cell to the other */
+    public int distance(int from, int to) {
+        return Math.floorMod(position[to] - position[from], length);
+    }
+
+    /**
+     * Picks the move of snake s along the tour: the furthest shortcut that does not overshoot the target, or
+     * the shortest step forward when there is no target ahead of us.
+     *
+     * @param legalMoves bit d set when {@link Direction} d does not run into a wall or a body
+     * @param target a cell to head for, such as food, or -1 to follow the tour
+     * @return the {@link Direction}, or -1 if no legal move keeps our tail ahead of us
+     */
+    public int move(Board board, int s, int legalMoves, int target) {
+        int head = board.head(s);
+        int tail = board.tail(s);
+        if (position[head] < 0) {
+            // the left-out corner: back onto the tour whichever way is open
+            for (int d = 0; d < Direction.COUNT; d++) {
+                if ((legalMoves & (1 << d)) != 0) {
+                    return d;
+                }
+            }
+            return -1;
+        }
+        int window = tail == head || position[tail] < 0 ? length : distance(head, tail);
+        int targetDistance = target < 0 || position[target] < 0 ? -1 : distance(head, target);
+        if (targetDistance >= window) {
+            targetDistance = -1;
+        }
+
+        int best = -1;
+        int bestDistance = 0;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            int next = board.neighbor(head, d);
+            if ((legalMoves & (1 << d)) == 0 || position[next] < 0) {
+                continue;
+            }
+            int distance = distance(head, next);
+            if (distance != 1 && distance >= window - SHORTCUT_MARGIN) {
+                continue;
+            }
+            boolean better;
+            if (best < 0) {
+                better = true;
+            } else if (targetDistance > 0) {
+                // closest to the target without passing it, else as little past it as possible
+                better = distance <= targetDistance
+                        ? bestDistance > targetDistance || distance > bestDistance
+                        : bestDistance > targetDistance && distance < bestDistance;
+            } else {
+                better = distance < bestDistance;
+            }
+            if (better) {
+                best = d;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lays the tour through a rectangle with an even number of rows: along the top row, back and forth through
+     * the other rows leaving out the first column, then up the first column to the start.
+     *
+     * @param transposed whether x and y are swapped on the real board
+     * @param lastRow whether to detour through the row below the rectangle, which the left-out corner ends
+     */
+    private void build(int columns, int rows, boolean transposed, boolean lastRow) {
+        for (int x = 0; x < columns; x++) {
+            add(x, 0, transposed);
+        }
+        for (int y = 1; y < rows; y++) {
+            if (y % 2 == 1) {
+                for (int x = columns - 1; x >= 1; x--) {
+                    add(x, y, transposed);
+                    if (lastRow && y == rows - 1 && x % 2 == 1) {
+                        add(x, rows, transposed);
+                        add(x - 1, rows, transposed);
+                    }
+                }
+            } else {
+                for (int x = 1; x < columns; x++) {
+                    add(x, y, transposed);
+                }
+            }
+        }
+        for (int y = rows - 1; y >= 1; y--) {
+            add(0, y, transposed);
+        }
+    }
+
+    private void add(int x, int y, boolean transposed) {
+        int cell = transposed ? x * width + y : y * width + x;
+        position[cell] = length;
+        cells[length++] = cell;
+    }
+}
@@ -0,0 +1,140 @@
+package io.battlesnake.starter.engine;
+
+/**
+ * Precomputed move safety for every pattern of the cells around a head.
+ *
+ * {@link #pattern(Board, int)} encodes the twelve cells within two steps of a head in 16 bits: a 2-bit class for
+ * each of the four neighbors ({@link #FREE}, {@link #TAIL}, {@link #CONTESTED} or {@link #BLOCKED}) and one
+ * "blocked" bit for each of the eight cells beyond them. One read of the table, built on first use, then gives
+ * the legal moves and a static score for each of them: how many ways lead on from the cell, discounted for tails
+ * that may stay when their snake eats and for cells a rival head can also reach.
+ */
+public final class NeighborhoodTable {
+    public static final int FREE = 0;
+    /** a tail that leaves this turn, unless its snake eats */
+    public static final int TAIL = 1;
+    /** free, but next to the head of an opponent at least as long, which may move there too */
+    public static final int CONTESTED = 2;
+    /** off the board, or a body segment that is still there next turn */
+    public static final int BLOCKED = 3;
+
+    /** The highest score of a single move. */
+    public static final int MAX_SCORE = 15;
+
+    /* the eight cells beyond the neighbors: the diagonals, then two steps away in Direction order */
+    private static final int[] OUTER_DX = { -1, 1, -1, 1, 0, 0, -2, 2 };
+    private static final int[] OUTER_DY = { -1, -1, 1, 1, -2, 2, 0, 0 };
+    /* for each Direction, the outer cells next to that neighbor */
+    private static final int[][] BEYOND = { { 4, 0, 1 }, { 5, 2, 3 }, { 6, 0, 2 }, { 7, 1, 3 } };
+    private static final int[] BEYOND_MASK = new int[Direction.COUNT];
+
+    private static final int[] TABLE = new int[1 << 16];
+    static {
+        for (int d = 0; d < Direction.COUNT; d++) {
+            for (int i : BEYOND[d]) {
+                BEYOND_MASK[d] |= 1 << i;
+            }
+        }
+        for (int pattern = 0; pattern < TABLE.length; pattern++) {
+            TABLE[pattern] = build(pattern);
+        }
+    }
+
+    private NeighborhoodTable() {
+    }
+
+    /**
+     * @return the table entry for the head of snake s, see {@link #legalMoves(int)}, {@link #score(int, int)} and
+     * {@link #safety(int)}
+     */
+    public static int lookup(Board board, int s) {
+        return TABLE[pattern(board, s)];
+    }
+
+    /** @return bit d is set when {@link Direction} d is legal */
+    public static int legalMoves(int entry) {
+        return entry & 15;
+    }
+
+    /** @return the score of a move, 0 for an illegal one, at most {@link #MAX_SCORE} */
+    public static int score(int entry, int direction) {
+        return entry >>> 4 + 4 * direction & 15;
+    }
+
+    /** @return the score of the best move, 0 if there is no legal one */
+    public static int safety(int entry) {
+        return entry >>> 20;
+    }
+
+    /** @return the class of the neighbor in that {@link Direction}, {@link #FREE} to {@link #BLOCKED} */
+    public static int type(int pattern, int direction) {
+        return pattern >>> 2 * direction & 3;
+    }
+
+    /** Encodes the neighborhood of the head of snake s. */
+    public static int pattern(Board board, int s) {
+        int head = board.head(s);
+        int hx = board.x(head);
+        int hy = board.y(head);
+        int ourLength = board.length(s);
+        int outerBlocked = 0;
+        int rivalHeads = 0;
+        for (int i = 0; i < OUTER_DX.length; i++) {
+            int x = hx + OUTER_DX[i];
+            int y = hy + OUTER_DY[i];
+            if (!board.contains(x, y)) {
+                outerBlocked |= 1 << i;
+                continue;
+            }
+            int cell = board.index(x, y);
+            int turns = board.turnsUntilFree(cell);
+            if (turns > 1) {
+                outerBlocked |= 1 << i;
+                int owner = board.owner(cell);
+                // the head is the one segment that stays as many turns as its snake is long
+                if (owner != s && turns == board.length(owner) && board.length(owner) >= ourLength) {
+                    rivalHeads |= 1 << i;
+                }
+            }
+        }
+
+        int pattern = outerBlocked << 8;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            int next = board.neighbor(head, d);
+            int type;
+            if (next < 0 || board.turnsUntilFree(next) > 1) {
+                type = BLOCKED;
+            } else if ((rivalHeads & BEYOND_MASK[d]) != 0) {
+                type = CONTESTED;
+            } else {
+                type = board.turnsUntilFree(next) == 1 ? TAIL : FREE;
+            }
+            pattern |= type << 2 * d;
+        }
+        return pattern;
+    }
+
+    private static int build(int pattern) {
+        int legal = 0;
+        int scores = 0;
+        int best = 0;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            int type = type(pattern, d);
+            if (type == BLOCKED) {
+                continue;
+            }
+            int exits = 0;
+            for (int i : BEYOND[d]) {
+                if ((pattern & (1 << 8 + i)) == 0) {
+                    exits++;
+                }
+            }
+            // a possible head-to-head scores no better than a dead end we would enter alone
+            int score = type == CONTESTED ? exits : exits * 4 + (type == FREE ? 3 : 2);
+            legal |= 1 << d;
+            scores |= score << 4 * d;
+            best = Math.max(best, score);
+        }
+        return legal | scores << 4 | best << 20;
+    }
+}
@@ -0,0 +1,242 @@
+package io.battlesnake.starter.engine;
+
+/**
+ * Standard Battlesnake rules applied in place to a {@link Board}.
+ *
+ * A turn is applied with {@link #makeMove(Board, int[])} and reverted with {@link #unmakeMove(Board)}. Every
+ * change is recorded in the board's undo journal, so undoing costs time proportional to the cells that changed
+ * (heads, tails, eaten and spawned food, eliminated bodies) rather than to the board size, and search code can
+ * walk a game tree on a single board without copying it.
+ *
+ * The order of a turn follows the reference rules: move, reduce health, feed, eliminate, spawn food.
+ */
+public final class Rules {
+    /** Food is spawned until at least this many items are on the board. */
+    public int minimumFood = 1;
+
+    /** Chance, in percent, of spawning an extra food item on a turn that already has the minimum. */
+    public int foodSpawnChance = 15;
+
+    /** When false no food is ever spawned, which keeps lookahead deterministic. */
+    public boolean spawnFood = true;
+
+    public Rules() {
+    }
+
+    public Rules(int minimumFood, int foodSpawnChance, boolean spawnFood) {
+        this.minimumFood = minimumFood;
+        this.foodSpawnChance = foodSpawnChance;
+        this.spawnFood = spawnFood;
+    }
+
+    /**
+     * Applies one joint move.
+     *
+     * @param board the board to advance
+     * @param moves a {@link Direction} for every snake on the board, indexed like the snakes. Entries for
+     *              eliminated snakes are ignored.
+     */
+    public void makeMove(Board board, int[] moves) {
+        int aliveBefore = board.aliveMask;
+        long rngBefore = board.rngState;
+        int mask = board.ringMask;
+
+        // move every snake: pop the tail, push the new head
+        for (int s = 0; s < board.snakeCount; s++) {
+            if ((aliveBefore & (1 << s)) == 0) {
+                continue;
+            }
+            int[] body = board.bodies[s];
+            int tailSlot = (board.headPos[s] + board.length[s] - 1) & mask;
+            int tail = body[tailSlot];
+            board.vacate(s, tailSlot);
+            int head = board.neighbor(body[board.headPos[s]], moves[s]);
+            board.headPos[s] = (board.headPos[s] - 1) & mask;
+            body[board.headPos[s]] = head;
+            board.occupy(s, board.headPos[s]);
+            board.movedTo[s] = head;
+            board.poppedTail[s] = tail;
+            board.previousHealth[s] = board.health[s];
+            board.grew[s] = false;
+            board.health[s]--;
+        }
+
+        // feed: every snake whose head is on food eats it, even if several reach the same item
+        for (int s = 0; s < board.snakeCount; s++) {
+            int head = board.movedTo[s];
+            if ((aliveBefore & (1 << s)) == 0 || head < 0 || !board.food[head]) {
+                continue;
+            }
+            int[] body = board.bodies[s];
+            int tail = body[(board.headPos[s] + board.length[s] - 1) & mask];
+            int slot = (board.headPos[s] + board.length[s]) & mask;
+            body[slot] = tail;
+            board.length[s]++;
+            board.occupy(s, slot);
+            board.health[s] = Board.MAX_HEALTH;
+            board.grew[s] = true;
+        }
+
+        for (int s = 0; s < board.snakeCount; s++) {
+            if ((aliveBefore & (1 << s)) != 0) {
+                board.push(board.previousHealth[s]);
+                board.push(board.poppedTail[s]);
+                board.push(board.grew[s] ? 1 : 0);
+            }
+        }
+
+        int eaten = 0;
+        for (int s = 0; s < board.snakeCount; s++) {
+            int head = board.movedTo[s];
+            if ((aliveBefore & (1 << s)) != 0 && board.grew[s] && board.food[head]) {
+                board.food[head] = false;
+                board.foodCount--;
+                board.push(head);
+                eaten++;
+            }
+        }
+        board.push(eaten);
+
+        eliminate(board, aliveBefore);
+
+        int spawned = 0;
+        if (spawnFood) {
+            int wanted = board.foodCount < minimumFood ? minimumFood - board.foodCount
+                    : board.nextRandom(100) < foodSpawnChance ? 1 : 0;
+            for (int i = 0; i < wanted; i++) {
+                int cell = randomFreeCell(board);
+                if (cell < 0) {
+                    break;
+                }
+                board.food[cell] = true;
+                board.foodCount++;
+                board.push(cell);
+                spawned++;
+            }
+        }
+        board.push(spawned);
+
+        board.push(board.turn);
+        board.push((int) (rngBefore >>> 32));
+        board.push((int) rngBefore);
+        board.push(aliveBefore);
+        board.turn++;
+        board.depth++;
+    }
+
+    /**
+     * Reverts the last move applied with {@link #makeMove(Board, int[])}.
+     *
+     * @throws IllegalStateException if there is no move to undo
+     */
+    public void unmakeMove(Board board) {
+        if (board.depth == 0) {
+            throw new IllegalStateException("No move to undo");
+        }
+        int mask = board.ringMask;
+        int aliveBefore = board.pop();
+        long rngLow = board.pop() & 0xFFFFFFFFL;
+        long rngHigh = board.pop();
+        board.rngState = (rngHigh << 32) | rngLow;
+        board.turn = board.pop();
+
+        for (int spawned = board.pop(); spawned > 0; spawned--) {
+            board.food[board.pop()] = false;
+            board.foodCount--;
+        }
+        for (int eaten = board.pop(); eaten > 0; eaten--) {
+            board.food[board.pop()] = true;
+            board.foodCount++;
+        }
+
+        int eliminated = aliveBefore & ~board.aliveMask;
+        for (int s = 0; s < board.snakeCount; s++) {
+            if ((eliminated & (1 << s)) != 0) {
+                board.addSegments(s);
+            }
+        }
+        board.aliveMask = aliveBefore;
+
+        for (int s = board.snakeCount - 1; s >= 0; s--) {
+            if ((aliveBefore & (1 << s)) == 0) {
+                continue;
+            }
+            boolean grew = board.pop() != 0;
+            int tail = board.pop();
+            board.health[s] = board.pop();
+            int[] body = board.bodies[s];
+            if (grew) {
+                board.vacate(s, (board.headPos[s] + board.length[s] - 1) & mask);
+                board.length[s]--;
+            }
+            board.vacate(s, board.headPos[s]);
+            board.headPos[s] = (board.headPos[s] + 1) & mask;
+            int tailSlot = (board.headPos[s] + board.length[s] - 1) & mask;
+            body[tailSlot] = tail;
+            board.occupy(s, tailSlot);
+        }
+        board.depth--;
+    }
+
+    /**
+     * Removes snakes that starved or left the board, then snakes that collided with a body or lost a head-to-head,
+     * considering only the snakes that survived the first step.
+     */
+    private void eliminate(Board board, int aliveBefore) {
+        int survivors = aliveBefore;
+        for (int s = 0; s < board.snakeCount; s++) {
+            if ((aliveBefore & (1 << s)) != 0 && (board.movedTo[s] < 0 || board.health[s] <= 0)) {
+                survivors &= ~(1 << s);
+                board.aliveMask = survivors;
+                board.removeSegments(s);
+            }
+        }
+
+        int collided = 0;
+        for (int s = 0; s < board.snakeCount; s++) {
+            if ((survivors & (1 << s)) == 0) {
+                continue;
+            }
+            int head = board.movedTo[s];
+            int headsHere = 0;
+            for (int o = 0; o < board.snakeCount; o++) {
+                if ((survivors & (1 << o)) == 0 || board.movedTo[o] != head) {
+                    continue;
+                }
+                headsHere++;
+                if (o != s && board.length[o] >= board.length[s]) {
+                    collided |= 1 << s;
+                }
+            }
+            // every segment on the head's cell that is not somebody's head is a body hit
+            if (board.segments[head] > headsHere) {
+                collided |= 1 << s;
+            }
+        }
+        for (int s = 0; s < board.snakeCount; s++) {
+            if ((collided & (1 << s)) != 0) {
+                board.aliveMask &= ~(1 << s);
+                board.removeSegments(s);
+            }
+        }
+    }
+
+    private static int randomFreeCell(Board board) {
+        int free = 0;
+        for (int cell = 0; cell < board.cellCount; cell++) {
+            if (board.segments[cell] == 0 && !board.food[cell]) {
+                free++;
+            }
+        }
+        if (free == 0) {
+            return -1;
+        }
+        int pick = board.nextRandom(free);
+        for (int cell = 0; cell < board.cellCount; cell++) {
+            if (board.segments[cell] == 0 && !board.food[cell] && pick-- == 0) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,461 @@
+package io.battlesnake.starter.search;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exact move choice for snake 0 when it is sealed in a small region, alone or with one opponent.
+ *
+ * The region is everything the head can reach through cells that are free, or become free, within the horizon
+ * (our length, at most {@link #horizon}). If it has more than {@link #maxCells} cells we are not enclosed and
+ * the solver declines. Otherwise every cell gets a bit in a 64-bit board together with the time its body
+ * segment leaves, and a memoized search over (heads, our cells, their cells) finds the move that survives the
+ * most turns, up to the horizon. Within the horizon none of the cells we enter frees up again, so the cell sets
+ * are the whole state and the answer is exact. An opponent whose head touches the region moves after us, picking
+ * the reply that is worst for us (it may also leave through its own exits on the first turn); on a tie or a loss
+ * in a head-to-head we die, and a snake that is shut in dies. Eating and hazard damage are not modeled, so the
+ * solver also declines a region that holds food or hazards, or one we would starve in within the horizon.
+ *
+ * Solved regions are cached under a canonical key that is the same for all eight rotations and reflections and
+ * for every position on the board, so a shape seen once is answered from the cache on later turns and in later
+ * games. A search that visits more than {@link #nodeBudget} states gives up and answers -1.
+ */
+public final class EndgameSolver {
+    public static final int MAX_CELLS = 62;
+    private static final int CACHE_SIZE = 4096;
+    private static final int NO_SNAKE = -1;
+
+    /** canonical region key to survival turns (high half) and the canonical index of the first step (low half) */
+    private static final Map<Key, Long> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<Key, Long>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private final int maxCells;
+    private final int horizon;
+    private final long nodeBudget;
+
+    /* the region: board cell and release time of every local cell, local neighbors as bit masks */
+    private final int[] cellOf = new int[MAX_CELLS + 2];
+    private final int[] release = new int[MAX_CELLS + 2];
+    private final long[] adjacent = new long[MAX_CELLS + 2];
+    /* released[t] has the bits of the cells that can be entered on turn t */
+    private final long[] released = new long[MAX_CELLS + 2];
+    private int[] localOf = new int[0];
+    private int[] mark = new int[0];
+    private int markStamp;
+    private int count;
+
+    private int turns;
+    private boolean weWinHeadOn;
+    private boolean theyCanLeave;
+    private long nodes;
+    private int lastSurvival = -1;
+    private boolean lastCached;
+
+    /* memo, open addressing, cleared by bumping the stamp; allocated by the first search */
+    private final int memoCapacity;
+    private long[] memoOurs;
+    private long[] memoTheirs;
+    private int[] memoHeads;
+    private int[] memoStamp;
+    private byte[] memoValue;
+    private int stamp;
+    private int filled;
+
+    /**
+     * @param maxCells the largest region to solve, at most {@link #MAX_CELLS}
+     * @param horizon the most turns to look ahead
+     * @param nodeBudget the most states to visit before giving up
+     */
+    public EndgameSolver(int maxCells, int horizon, long nodeBudget) {
+        if (maxCells < 1 || maxCells > MAX_CELLS) {
+            throw new IllegalArgumentException("Regions hold 1 to " + MAX_CELLS + " cells: " + maxCells);
+        }
+        this.maxCells = maxCells;
+        this.horizon = Math.min(horizon, MAX_CELLS);
+        this.nodeBudget = nodeBudget;
+        this.memoCapacity = Integer.highestOneBit((int) Math.min(1 << 20, Math.max(16, nodeBudget * 2)) - 1) << 1;
+    }
+
+    /**
+     * @return the {@link Direction} that keeps snake 0 alive longest, or -1 if it is not enclosed, the region
+     * holds more than one opponent head, food or hazards, our health runs out within the horizon, or the search
+     * ran over its budget
+     */
+    public int bestMove(Board board) {
+        lastSurvival = -1;
+        lastCached = false;
+        nodes = 0;
+        if (!board.isAlive(0) || board.head(0) < 0) {
+            return -1;
+        }
+        turns = Math.min(horizon, board.length(0));
+        if (board.health(0) <= turns) {
+            return -1;
+        }
+        int opponent = findRegion(board);
+        if (opponent == -2) {
+            return -1;
+        }
+        for (int i = 0; i < count; i++) {
+            // a snake that eats stays longer than the release times say, for us as much as for them
+            if (board.hasFood(cellOf[i]) || board.isHazard(cellOf[i])) {
+                return -1;
+            }
+        }
+        int theirs = NO_SNAKE;
+        if (opponent >= 0) {
+            theirs = addCell(board.head(opponent), turns + 1);
+            weWinHeadOn = board.length(0) > board.length(opponent);
+            theyCanLeave = false;
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int next = board.neighbor(board.head(opponent), d);
+                if (next >= 0 && board.turnsUntilFree(next) <= 1 && localOf[next] < 0) {
+                    theyCanLeave = true;
+                }
+            }
+        }
+        link(board);
+
+        Canonical canonical = canonical(board, theirs);
+        Long cached = CACHE.get(canonical.key);
+        if (cached != null) {
+            lastSurvival = (int) (cached >>> 32);
+            lastCached = true;
+            int step = canonical.toBoard((int) (long) cached);
+            return step < 0 ? -1 : direction(board, board.head(0), step);
+        }
+
+        if (memoStamp == null) {
+            memoOurs = new long[memoCapacity];
+            memoTheirs = new long[memoCapacity];
+            memoHeads = new int[memoCapacity];
+            memoStamp = new int[memoCapacity];
+            memoValue = new byte[memoCapacity];
+        }
+        if (++stamp == 0) {
+            Arrays.fill(memoStamp, 0);
+            stamp = 1;
+        }
+        filled = 0;
+        long ours = 1L;
+        long theirMask = theirs == NO_SNAKE ? 0 : 1L << theirs;
+        int first = -1;
+        int best = -1;
+        for (long moves = ourMoves(0, ours | theirMask, 0); moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            int value = reply(move, theirs, ours | 1L << move, theirMask, 0);
+            if (nodes > nodeBudget) {
+                return -1;
+            }
+            // ties go to the first step in canonical order, so a cached answer is the one a search would give
+            if (value > best || value == best
+                    && canonical.toKey(cellOf[move]) < canonical.toKey(cellOf[first])) {
+                best = value;
+                first = move;
+            }
+        }
+        lastSurvival = Math.max(best, 0);
+        CACHE.put(canonical.key, (long) lastSurvival << 32 | (first < 0 ? -1 : canonical.toKey(cellOf[first])) & 0xFFFFFFFFL);
+        return first < 0 ? -1 : direction(board, board.head(0), cellOf[first]);
+    }
+
+    /** @return how many turns the last answer survives, capped at the horizon, or -1 without an answer */
+    public int lastSurvival() {
+        return lastSurvival;
+    }
+
+    /** @return whether the last answer came from the cache of solved regions */
+    public boolean lastCached() {
+        return lastCached;
+    }
+
+    /** @return the number of states the last search visited */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Flood fills from our head through the cells that are free within the horizon.
+     *
+     * @return the opponent whose head touches the region, -1 for none, -2 if the region is too large or touches
+     * more than one opponent head
+     */
+    private int findRegion(Board board) {
+        if (localOf.length != board.cellCount()) {
+            localOf = new int[board.cellCount()];
+            mark = new int[board.cellCount()];
+            markStamp = 0;
+        }
+        if (++markStamp == 0) {
+            Arrays.fill(mark, 0);
+            markStamp = 1;
+        }
+        Arrays.fill(localOf, -1);
+        count = 0;
+        int opponent = -1;
+        addCell(board.head(0), turns + 1);
+        for (int i = 0; i < count; i++) {
+            int cell = cellOf[i];
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int next = board.neighbor(cell, d);
+                if (next < 0 || localOf[next] >= 0 || mark[next] == markStamp) {
+                    continue;
+                }
+                int owner = board.owner(next);
+                int release = board.turnsUntilFree(next);
+                // the head is the one segment that stays as many turns as its snake is long
+                if (owner > 0 && release == board.length(owner)) {
+                    if (opponent >= 0 && opponent != owner) {
+                        return -2;
+                    }
+                    opponent = owner;
+                    mark[next] = markStamp;
+                } else if (release <= turns) {
+                    if (count == maxCells) {
+                        return -2;
+                    }
+                    addCell(next, release);
+                } else {
+                    mark[next] = markStamp;
+                }
+            }
+        }
+        return opponent;
+    }
+
+    private int addCell(int cell, int releaseTime) {
+        int local = count++;
+        cellOf[local] = cell;
+        release[local] = releaseTime;
+        localOf[cell] = local;
+        return local;
+    }
+
+    private void link(Board board) {
+        Arrays.fill(released, 0, turns + 2, 0);
+        for (int i = 0; i < count; i++) {
+            adjacent[i] = 0;
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int next = board.neighbor(cellOf[i], d);
+                if (next >= 0 && localOf[next] >= 0) {
+                    adjacent[i] |= 1L << localOf[next];
+                }
+            }
+            for (int t = release[i]; t <= turns; t++) {
+                released[t] |= 1L << i;
+            }
+        }
+    }
+
+    private long ourMoves(int head, long blocked, int turn) {
+        return adjacent[head] & ~blocked & released[turn + 1];
+    }
+
+    /** Best survival from our head on turn t with both snakes to move. */
+    private int search(int ours, int theirs, long ourMask, long theirMask, int turn) {
+        if (turn == turns) {
+            return 0;
+        }
+        if (++nodes > nodeBudget) {
+            return 0;
+        }
+        int heads = ours << 8 | theirs + 1;
+        int slot = (int) (mix(ourMask * 31 + theirMask, heads) & memoStamp.length - 1);
+        while (memoStamp[slot] == stamp) {
+            if (memoOurs[slot] == ourMask && memoTheirs[slot] == theirMask && memoHeads[slot] == heads) {
+                return memoValue[slot];
+            }
+            slot = slot + 1 & memoStamp.length - 1;
+        }
+
+        int best = 0;
+        int most = turns - turn;
+        for (long moves = ourMoves(ours, ourMask | theirMask, turn); moves != 0 && best < most; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            best = Math.max(best, reply(move, theirs, ourMask | 1L << move, theirMask, turn));
+        }
+
+        // a memo that is three quarters full is left as it is, so probing always ends
+        if (nodes <= nodeBudget && filled < memoStamp.length - (memoStamp.length >> 2)) {
+            filled++;
+            memoStamp[slot] = stamp;
+            memoOurs[slot] = ourMask;
+            memoTheirs[slot] = theirMask;
+            memoHeads[slot] = heads;
+            memoValue[slot] = (byte) best;
+        }
+        return best;
+    }
+
+    /** Survival after our move on turn t, once the opponent has answered it as badly for us as it can. */
+    private int reply(int move, int theirs, long ourMask, long theirMask, int turn) {
+        if (theirs == NO_SNAKE) {
+            return 1 + search(move, NO_SNAKE, ourMask, theirMask, turn + 1);
+        }
+        // our move is already in ourMask, their reply may still meet it head-on
+        long moves = adjacent[theirs] & ~(ourMask & ~(1L << move) | theirMask) & released[turn + 1];
+        boolean canLeave = turn == 0 && theyCanLeave;
+        if (moves == 0 && !canLeave) {
+            return 1 + search(move, NO_SNAKE, ourMask, theirMask, turn + 1);
+        }
+        int worst = canLeave ? 1 + search(move, NO_SNAKE, ourMask, theirMask, turn + 1) : Integer.MAX_VALUE;
+        for (; moves != 0 && worst > 0; moves &= moves - 1) {
+            int answer = Long.numberOfTrailingZeros(moves);
+            int value;
+            if (answer == move) {
+                value = weWinHeadOn ? 1 + search(move, NO_SNAKE, ourMask, theirMask, turn + 1) : 0;
+            } else {
+                value = 1 + search(move, answer, ourMask, theirMask | 1L << answer, turn + 1);
+            }
+            worst = Math.min(worst, value);
+        }
+        return worst;
+    }
+
+    private static long mix(long a, int b) {
+        long h = (a ^ b) * 0x9E3779B97F4A7C15L;
+        return h ^ h >>> 29;
+    }
+
+    private static int direction(Board board, int from, int to) {
+        return Direction.between(board.x(from), board.y(from), board.x(to), board.y(to));
+    }
+
+    /**
+     * Builds the key of the region in each of the eight orientations of its bounding box and keeps the smallest,
+     * with what it takes to map cells between the board and that orientation.
+     */
+    private Canonical canonical(Board board, int theirs) {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, board.x(cellOf[i]));
+            minY = Math.min(minY, board.y(cellOf[i]));
+            maxX = Math.max(maxX, board.x(cellOf[i]));
+            maxY = Math.max(maxY, board.y(cellOf[i]));
+        }
+        Canonical best = null;
+        for (int transform = 0; transform < 8; transform++) {
+            Canonical candidate = new Canonical(board, minX, minY, maxX - minX + 1, maxY - minY + 1, transform);
+            int header = 5;
+            int[] key = new int[header + candidate.width * candidate.height];
+            key[0] = turns;
+            key[1] = theirs == NO_SNAKE ? 0 : weWinHeadOn ? 1 : 2;
+            key[2] = theyCanLeave && theirs != NO_SNAKE ? 1 : 0;
+            key[3] = candidate.width;
+            key[4] = candidate.height;
+            Arrays.fill(key, header, key.length, -1);
+            for (int i = 0; i < count; i++) {
+                int value = i == 0 ? -2 : i == theirs ? -3 : release[i];
+                key[header + candidate.toKey(cellOf[i])] = value;
+            }
+            candidate.key = new Key(key);
+            if (best == null || candidate.key.compareTo(best.key) < 0) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /** One orientation of the region's bounding box. */
+    private static final class Canonical {
+        final Board board;
+        final int originX;
+        final int originY;
+        final int boxWidth;
+        final int boxHeight;
+        final int transform;
+        final int width;
+        final int height;
+        Key key;
+
+        Canonical(Board board, int originX, int originY, int boxWidth, int boxHeight, int transform) {
+            this.board = board;
+            this.originX = originX;
+            this.originY = originY;
+            this.boxWidth = boxWidth;
+            this.boxHeight = boxHeight;
+            this.transform = transform;
+            boolean swap = (transform & 4) != 0;
+            this.width = swap ? boxHeight : boxWidth;
+            this.height = swap ? boxWidth : boxHeight;
+        }
+
+        /** @return the index in the oriented box of a board cell */
+        int toKey(int cell) {
+            int x = board.x(cell) - originX;
+            int y = board.y(cell) - originY;
+            if ((transform & 1) != 0) {
+                x = boxWidth - 1 - x;
+            }
+            if ((transform & 2) != 0) {
+                y = boxHeight - 1 - y;
+            }
+            return (transform & 4) != 0 ? x * width + y : y * width + x;
+        }
+
+        /** @return the board cell of an index in the oriented box, or -1 */
+        int toBoard(int index) {
+            if (index < 0) {
+                return -1;
+            }
+            int x = index % width;
+            int y = index / width;
+            if ((transform & 4) != 0) {
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+            if ((transform & 1) != 0) {
+                x = boxWidth - 1 - x;
+            }
+            if ((transform & 2) != 0) {
+                y = boxHeight - 1 - y;
+            }
+            return board.index(originX + x, originY + y);
+        }
+    }
+
+    private static final class Key implements Comparable<Key> {
+        final int[] values;
+        final int hash;
+
+        Key(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(values, ((Key) other).values);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int length = Math.min(values.length, other.values.length);
+            for (int i = 0; i < length; i++) {
+                if (values[i] != other.values[i]) {
+                    return Integer.compare(values[i], other.values[i]);
+                }
+            }
+            return Integer.compare(values.length, other.values.length);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package io.battlesnake.starter.search;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Finds the first step of a long path for snake 0 through the cells it can still reach, to stall for as many
+ * turns as possible once it is trapped.
+ *
+ * The search is a depth-first walk over the region around the head: the open cells it reaches, plus the body
+ * cells that free up before the snake could run out of room. A body cell can be entered once it has freed up, so
+ * cells freed later by the snakes' tails join the walk in time. Three things keep it bounded:
+ * <ul>
+ *   <li>each state, the visited cells plus the head, is remembered by a Zobrist hash and never expanded twice;</li>
+ *   <li>a branch is cut when even an optimistic count of the cells it can still reach cannot beat the best path
+ *   found so far; the count follows the articulation points of the unvisited cells, since a path that passes one
+ *   can use only one of the pockets behind it;</li>
+ *   <li>the walk stops after {@link #nodeBudget} states or {@link #timeBudgetNanos}, and answers with the best path
+ *   found by then.</li>
+ * </ul>
+ * Neighbors are tried with the fewest onward exits first, which finds long fills early. Food and hazards are
+ * ignored. Not thread-safe; scratch memory is sized on first use.
+ */
+public final class LongestPath {
+    private final int maxCells;
+    private final long nodeBudget;
+    private long timeBudgetNanos;
+
+    /* the region: board cell, release time and neighbors (-1 for none, Direction order) of every local cell */
+    private final int[] cellOf;
+    private final int[] release;
+    private final int[] neighbors;
+    private int[] localOf = new int[0];
+    private int count;
+
+    /* the walk */
+    private final long[] visited;
+    private final long[] zobrist;
+    private final long[] headZobrist;
+    private long hash;
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+    private int bestLength;
+    private int bestFirst;
+    private final int[] order = new int[Direction.COUNT];
+    private final int[] degree = new int[Direction.COUNT];
+
+    /* states already expanded, open addressing, cleared by bumping the stamp */
+    private final long[] seenKeys;
+    private final int[] seenStamp;
+    private int stamp;
+    private int seen;
+
+    /* articulation point bound */
+    private final int[] discovered;
+    private final int[] low;
+    private final int[] discoveredStamp;
+    private int discoverStamp;
+    private int time;
+
+    /**
+     * @param maxCells the largest region to walk, a bigger one is not a trap
+     * @param nodeBudget the most states to expand per call
+     * @param timeBudgetNanos the longest a call may take, or 0 for no limit, which makes answers reproducible
+     */
+    public LongestPath(int maxCells, long nodeBudget, long timeBudgetNanos) {
+        this.maxCells = maxCells;
+        this.nodeBudget = nodeBudget;
+        this.timeBudgetNanos = timeBudgetNanos;
+        this.cellOf = new int[maxCells];
+        this.release = new int[maxCells];
+        this.neighbors = new int[maxCells * Direction.COUNT];
+        this.visited = new long[(maxCells + 63) >>> 6];
+        this.zobrist = new long[maxCells];
+        this.headZobrist = new long[maxCells];
+        SplittableRandom random = new SplittableRandom(0x5EEDL);
+        for (int i = 0; i < maxCells; i++) {
+            zobrist[i] = random.nextLong();
+            headZobrist[i] = random.nextLong();
+        }
+        int capacity = Integer.highestOneBit((int) Math.min(1 << 20, Math.max(16, nodeBudget * 2)) - 1) << 1;
+        this.seenKeys = new long[capacity];
+        this.seenStamp = new int[capacity];
+        this.discovered = new int[maxCells];
+        this.low = new int[maxCells];
+        this.discoveredStamp = new int[maxCells];
+    }
+
+    /** @param timeBudgetNanos the longest a call may take from now on, or 0 for no limit */
+    public void setTimeBudgetNanos(long timeBudgetNanos) {
+        this.timeBudgetNanos = timeBudgetNanos;
+    }
+
+    /**
+     * @return the first {@link Direction} of the longest path found, or -1 if snake 0 has no move or its region
+     * holds more than {@link #maxCells} cells
+     */
+    public int bestMove(Board board) {
+        bestLength = 0;
+        bestFirst = -1;
+        nodes = 0;
+        if (!board.isAlive(0) || board.head(0) < 0 || !findRegion(board)) {
+            return -1;
+        }
+        Arrays.fill(visited, 0);
+        visited[0] = 1;
+        hash = zobrist[0];
+        aborted = false;
+        deadline = System.nanoTime() + timeBudgetNanos;
+        if (++stamp == 0) {
+            Arrays.fill(seenStamp, 0);
+            stamp = 1;
+        }
+        seen = 0;
+        walk(0, 0, -1);
+        return bestFirst;
+    }
+
+    /** @return how many moves the path behind the last answer lasts */
+    public int lastLength() {
+        return bestLength;
+    }
+
+    /** @return the number of states the last call expanded */
+    public long nodes() {
+        return nodes;
+    }
+
+    /** @return whether the last call ran out of nodes or time before it had tried every path */
+    public boolean aborted() {
+        return aborted;
+    }
+
+    private boolean findRegion(Board board) {
+        if (localOf.length != board.cellCount()) {
+            localOf = new int[board.cellCount()];
+        }
+        Arrays.fill(localOf, -1);
+        count = 0;
+        int head = board.head(0);
+        localOf[head] = count;
+        cellOf[count] = head;
+        release[count++] = Integer.MAX_VALUE;
+        // a body cell joins once the region is big enough to stall in until it frees up
+        for (int limit = 1, before = 0; count > before; limit = count) {
+            before = count;
+            for (int i = 0; i < count; i++) {
+                for (int d = 0; d < Direction.COUNT; d++) {
+                    int next = board.neighbor(cellOf[i], d);
+                    if (next < 0 || localOf[next] >= 0 || board.turnsUntilFree(next) > limit) {
+                        continue;
+                    }
+                    if (count == maxCells) {
+                        return false;
+                    }
+                    localOf[next] = count;
+                    cellOf[count] = next;
+                    release[count++] = board.turnsUntilFree(next);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int next = board.neighbor(cellOf[i], d);
+                neighbors[i * Direction.COUNT + d] = next < 0 ? -1 : localOf[next];
+            }
+        }
+        return true;
+    }
+
+    private boolean isVisited(int local) {
+        return (visited[local >>> 6] & 1L << local) != 0;
+    }
+
+    private void walk(int head, int turn, int first) {
+        if (turn > bestLength) {
+            bestLength = turn;
+            bestFirst = first;
+        }
+        if (aborted) {
+            return;
+        }
+        if (++nodes > nodeBudget || timeBudgetNanos > 0 && (nodes & 255) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+            return;
+        }
+        // nothing beats a path through every cell; short of that the articulation points bound the branch
+        if (bestLength >= count - 1 || !firstVisit(hash ^ headZobrist[head])
+                || turn + reach(head) <= bestLength) {
+            return;
+        }
+
+        // the moves open on this turn, fewest onward exits first
+        int moves = 0;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            int next = neighbors[head * Direction.COUNT + d];
+            if (next < 0 || isVisited(next) || release[next] > turn + 1) {
+                continue;
+            }
+            int exits = 0;
+            for (int e = 0; e < Direction.COUNT; e++) {
+                int onward = neighbors[next * Direction.COUNT + e];
+                if (onward >= 0 && !isVisited(onward)) {
+                    exits++;
+                }
+            }
+            int at = moves++;
+            while (at > 0 && degree[at - 1] > exits) {
+                order[at] = order[at - 1];
+                degree[at] = degree[at - 1];
+                at--;
+            }
+            order[at] = d;
+            degree[at] = exits;
+        }
+        int packed = 0;
+        for (int i = 0; i < moves; i++) {
+            packed |= order[i] << 2 * i;
+        }
+        for (int i = 0; i < moves && !aborted; i++) {
+            int d = packed >>> 2 * i & 3;
+            int next = neighbors[head * Direction.COUNT + d];
+            visited[next >>> 6] |= 1L << next;
+            hash ^= zobrist[next];
+            walk(next, turn + 1, first < 0 ? d : first);
+            hash ^= zobrist[next];
+            visited[next >>> 6] &= ~(1L << next);
+        }
+    }
+
+    /** @return false if the state was expanded before; a full table forgets nothing new but stays correct */
+    private boolean firstVisit(long key) {
+        int mask = seenKeys.length - 1;
+        int slot = (int) (key ^ key >>> 32) & mask;
+        while (seenStamp[slot] == stamp) {
+            if (seenKeys[slot] == key) {
+                return false;
+            }
+            slot = slot + 1 & mask;
+        }
+        if (seen < seenKeys.length - (seenKeys.length >> 2)) {
+            seen++;
+            seenStamp[slot] = stamp;
+            seenKeys[slot] = key;
+        }
+        return true;
+    }
+
+    /**
+     * An optimistic count of the unvisited cells a path from the head can still take, ignoring when they free up.
+     * Below an articulation point only the largest pocket counts.
+     */
+    private int reach(int head) {
+        if (++discoverStamp == 0) {
+            Arrays.fill(discoveredStamp, 0);
+            discoverStamp = 1;
+        }
+        time = 0;
+        return count(head) - 1;
+    }
+
+    private int count(int v) {
+        discoveredStamp[v] = discoverStamp;
+        discovered[v] = low[v] = ++time;
+        int shared = 1;
+        int separated = 0;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            int next = neighbors[v * Direction.COUNT + d];
+            if (next < 0 || isVisited(next)) {
+                continue;
+            }
+            if (discoveredStamp[next] != discoverStamp) {
+                int below = count(next);
+                low[v] = Math.min(low[v], low[next]);
+                if (low[next] >= discovered[v]) {
+                    separated = Math.max(separated, below);
+                } else {
+                    shared += below;
+                }
+            } else {
+                low[v] = Math.min(low[v], discovered[next]);
+            }
+        }
+        return shared + separated;
+    }
+}
@@ -0,0 +1,365 @@
+package io.battlesnake.starter.search;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Learns during one game how each opponent picks its moves, to rank its replies from most to least likely.
+ *
+ * Every observed turn, the move an opponent actually made is counted under the local context it saw the turn
+ * before: which of its moves were safe, which way the nearest food was, and which way it was heading. That is
+ * {@value #CONTEXTS} contexts of four counters each. A context that has not been seen yet falls back on how often
+ * the snake picks a move that has a certain trait when such a move is available: heading for food, going
+ * straight, hugging a wall or following its own tail. Rows are halved when they fill up, so recent turns weigh
+ * more and counters stay small.
+ *
+ * Memory is fixed per model: one table per snake slot of the {@link Board}. Snakes are matched by id between
+ * turns, and an update only touches the counters of one context. Turns that were not observed are skipped.
+ * Models are not thread-safe.
+ *
+ * The trait rates carry over between games through an {@link OpponentProfile}: {@link #prime} starts a snake off
+ * with what earlier games taught, and {@link #addGameTo} adds what this game taught on top.
+ */
+public final class OpponentModel {
+    private static final int NO_DIRECTION = Direction.COUNT;
+    /** safe move mask x food direction (or none) x heading (or none) */
+    public static final int CONTEXTS = 16 * (Direction.COUNT + 1) * (Direction.COUNT + 1);
+
+    private static final int TOWARDS_FOOD = 0;
+    private static final int STRAIGHT = 1;
+    private static final int WALL = 2;
+    private static final int TOWARDS_TAIL = 3;
+    private static final int TRAITS = OpponentProfile.TRAITS;
+
+    private static final int ROW_LIMIT = 64;
+    /** a profile from earlier games counts as at most this many offers per trait, so this game can still outvote it */
+    private static final int PRIOR_LIMIT = ROW_LIMIT / 2;
+    /** keeps every safe move possible, however rarely its context and traits were chosen */
+    private static final float BASE_SCORE = 0.1f;
+
+    private final Table[] tables = new Table[Board.MAX_SNAKES];
+
+    /* scratch for the traits of each move */
+    private final int[] traits = new int[Direction.COUNT];
+
+    /**
+     * Learns from the moves the opponents made since the last observed board, then remembers the contexts of
+     * this board for the next call.
+     */
+    public void observe(Board board) {
+        for (int s = 1; s < board.snakeCount(); s++) {
+            if (!board.isAlive(s) || board.head(s) < 0) {
+                continue;
+            }
+            Table table = table(board.id(s));
+            if (table.turn == board.turn() - 1 && table.head >= 0) {
+                int move = Direction.between(board.x(table.head), board.y(table.head),
+                        board.x(board.head(s)), board.y(board.head(s)));
+                if (move >= 0) {
+                    table.learn(move);
+                }
+            }
+            table.turn = board.turn();
+            table.head = board.head(s);
+            table.context = context(board, s);
+            traitsOf(board, s, table.traits, table.context);
+        }
+    }
+
+    /**
+     * Writes the probability of each {@link Direction} for snake s, zero for the moves that are not safe. A snake
+     * with no safe move is given an even spread, as it will die whatever it does.
+     */
+    public void distribution(Board board, int s, float[] out) {
+        int context = context(board, s);
+        int safe = context & 15;
+        traitsOf(board, s, traits, context);
+        Table table = lookup(board.id(s));
+        float total = 0;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            float score = 0;
+            if ((safe & (1 << d)) != 0) {
+                score = BASE_SCORE + prior(table, traits[d]);
+                if (table != null) {
+                    score += table.counts[context * Direction.COUNT + d];
+                }
+            }
+            out[d] = score;
+            total += score;
+        }
+        for (int d = 0; d < Direction.COUNT; d++) {
+            out[d] = total == 0 ? 1f / Direction.COUNT : out[d] / total;
+        }
+    }
+
+    /**
+     * Writes the safe moves of snake s from most to least likely, starting at out[offset], like
+     * {@link Search#candidates(Board, int, int[], int)} does in board order.
+     *
+     * @param probabilities scratch for four probabilities
+     * @return the number of moves written
+     */
+    public int rank(Board board, int s, int[] out, int offset, float[] probabilities) {
+        int count = Search.candidates(board, s, out, offset);
+        distribution(board, s, probabilities);
+        // insertion sort, there are at most four moves; the sort is stable so ties keep board order
+        for (int i = 1; i < count; i++) {
+            for (int j = i; j > 0 && probabilities[out[offset + j]] > probabilities[out[offset + j - 1]]; j--) {
+                int swap = out[offset + j];
+                out[offset + j] = out[offset + j - 1];
+                out[offset + j - 1] = swap;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Starts the trait rates of the snake with the given id from its profile, scaled down so that the moves of
+     * this game soon outweigh it.
+     */
+    public void prime(String id, OpponentProfile profile) {
+        Table table = table(id);
+        for (int t = 0; t < TRAITS; t++) {
+            int offered = profile.offered(t);
+            int taken = profile.taken(t);
+            if (offered > PRIOR_LIMIT) {
+                taken = (int) ((long) taken * PRIOR_LIMIT / offered);
+                offered = PRIOR_LIMIT;
+            }
+            table.offered[t] = offered;
+            table.taken[t] = taken;
+        }
+    }
+
+    /**
+     * Adds the trait counts learned this game for the snake with the given id to its profile, leaving out what
+     * {@link #prime(String, OpponentProfile)} put in.
+     *
+     * @return false if nothing was learned about the snake
+     */
+    public boolean addGameTo(String id, OpponentProfile profile) {
+        Table table = lookup(id);
+        if (table == null || table.observations == 0) {
+            return false;
+        }
+        profile.addGame(table.observations, table.gameOffered, table.gameTaken);
+        return true;
+    }
+
+    /**
+     * Remembers the name the snake with the given id plays under, so its profile can be saved after it was
+     * eliminated and is no longer on the board.
+     */
+    public void setName(String id, String name) {
+        Table table = lookup(id);
+        if (table == null || !name.equals(table.name)) {
+            table(id).name = name;
+        }
+    }
+
+    /** @return the name given for the snake with the given id, or null */
+    public String name(String id) {
+        Table table = lookup(id);
+        return table == null ? null : table.name;
+    }
+
+    /** @return the ids of every snake learned about this game, whether or not it is still on the board */
+    public List<String> learnedIds() {
+        List<String> ids = new ArrayList<>();
+        for (Table table : tables) {
+            if (table != null && table.observations > 0) {
+                ids.add(table.id);
+            }
+        }
+        return ids;
+    }
+
+    /** @return the number of moves learned for the snake with the given id */
+    public int observations(String id) {
+        Table table = lookup(id);
+        return table == null ? 0 : table.observations;
+    }
+
+    private Table table(String id) {
+        Table table = lookup(id);
+        if (table != null) {
+            return table;
+        }
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i] == null) {
+                tables[i] = new Table(id);
+                return tables[i];
+            }
+        }
+        // more ids than a board holds snakes: reuse the table that was observed least recently
+        int oldest = 0;
+        for (int i = 1; i < tables.length; i++) {
+            if (tables[i].turn < tables[oldest].turn) {
+                oldest = i;
+            }
+        }
+        tables[oldest] = new Table(id);
+        return tables[oldest];
+    }
+
+    private Table lookup(String id) {
+        for (Table table : tables) {
+            if (table != null && table.id.equals(id)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    /** Laplace-smoothed rate at which the snake takes the traits of a move when they are on offer. */
+    private static float prior(Table table, int moveTraits) {
+        float prior = 0;
+        for (int t = 0; t < TRAITS; t++) {
+            if ((moveTraits & (1 << t)) != 0) {
+                prior += table == null ? 0.5f : (table.taken[t] + 1f) / (table.offered[t] + 2f);
+            }
+        }
+        return prior;
+    }
+
+    /** Safe moves in the low four bits, then the food direction and the heading, each 0..4. */
+    private static int context(Board board, int s) {
+        int head = board.head(s);
+        int safe = 0;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            int next = board.neighbor(head, d);
+            if (next >= 0 && board.turnsUntilFree(next) <= 1) {
+                safe |= 1 << d;
+            }
+        }
+        int food = nearestFood(board, head);
+        int foodDirection = food < 0 ? NO_DIRECTION : towards(board, head, food);
+        int heading = NO_DIRECTION;
+        if (board.length(s) > 1 && board.segment(s, 1) != head) {
+            int neck = board.segment(s, 1);
+            int between = Direction.between(board.x(neck), board.y(neck), board.x(head), board.y(head));
+            heading = between < 0 ? NO_DIRECTION : between;
+        }
+        return (heading * (Direction.COUNT + 1) + foodDirection) * 16 + safe;
+    }
+
+    /** Fills the trait bits of every move of snake s. */
+    private static void traitsOf(Board board, int s, int[] out, int context) {
+        int head = board.head(s);
+        int foodDirection = context / 16 % (Direction.COUNT + 1);
+        int heading = context / 16 / (Direction.COUNT + 1);
+        int tail = board.tail(s);
+        int tailDistance = distance(board, head, tail);
+        for (int d = 0; d < Direction.COUNT; d++) {
+            int next = board.neighbor(head, d);
+            int bits = 0;
+            if (next >= 0) {
+                if (d == foodDirection) {
+                    bits |= 1 << TOWARDS_FOOD;
+                }
+                if (d == heading) {
+                    bits |= 1 << STRAIGHT;
+                }
+                int x = board.x(next);
+                int y = board.y(next);
+                if (x == 0 || y == 0 || x == board.width() - 1 || y == board.height() - 1) {
+                    bits |= 1 << WALL;
+                }
+                if (tail != head && distance(board, next, tail) < tailDistance) {
+                    bits |= 1 << TOWARDS_TAIL;
+                }
+            }
+            out[d] = bits;
+        }
+    }
+
+    private static int nearestFood(Board board, int head) {
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int cell = 0; cell < board.cellCount(); cell++) {
+            if (board.hasFood(cell)) {
+                int distance = distance(board, head, cell);
+                if (distance < bestDistance) {
+                    best = cell;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** @return the direction along the longer axis from one cell towards another */
+    private static int towards(Board board, int from, int to) {
+        int dx = board.x(to) - board.x(from);
+        int dy = board.y(to) - board.y(from);
+        if (dx == 0 && dy == 0) {
+            return NO_DIRECTION;
+        }
+        if (Math.abs(dx) >= Math.abs(dy)) {
+            return dx > 0 ? Direction.RIGHT : Direction.LEFT;
+        }
+        return dy > 0 ? Direction.DOWN : Direction.UP;
+    }
+
+    private static int distance(Board board, int a, int b) {
+        return Math.abs(board.x(a) - board.x(b)) + Math.abs(board.y(a) - board.y(b));
+    }
+
+    private static final class Table {
+        final String id;
+        String name;
+        final int[] counts = new int[CONTEXTS * Direction.COUNT];
+        final int[] rowTotals = new int[CONTEXTS];
+        final int[] offered = new int[TRAITS];
+        final int[] taken = new int[TRAITS];
+        /* the same counts for this game alone, never halved */
+        final int[] gameOffered = new int[TRAITS];
+        final int[] gameTaken = new int[TRAITS];
+        int observations;
+
+        /* what the snake saw on the last observed turn */
+        int turn = Integer.MIN_VALUE;
+        int head = -1;
+        int context;
+        final int[] traits = new int[Direction.COUNT];
+
+        Table(String id) {
+            this.id = id;
+        }
+
+        void learn(int move) {
+            int row = context * Direction.COUNT;
+            counts[row + move]++;
+            if (++rowTotals[context] >= ROW_LIMIT) {
+                rowTotals[context] = 0;
+                for (int d = 0; d < Direction.COUNT; d++) {
+                    counts[row + d] >>= 1;
+                    rowTotals[context] += counts[row + d];
+                }
+            }
+            int safe = context & 15;
+            for (int t = 0; t < TRAITS; t++) {
+                boolean onOffer = false;
+                for (int d = 0; d < Direction.COUNT; d++) {
+                    onOffer |= (safe & (1 << d)) != 0 && (traits[d] & (1 << t)) != 0;
+                }
+                if (onOffer) {
+                    offered[t]++;
+                    gameOffered[t]++;
+                    if ((traits[move] & (1 << t)) != 0) {
+                        taken[t]++;
+                        gameTaken[t]++;
+                    }
+                    if (offered[t] >= ROW_LIMIT) {
+                        offered[t] >>= 1;
+                        taken[t] >>= 1;
+                    }
+                }
+            }
+            observations++;
+        }
+    }
+}
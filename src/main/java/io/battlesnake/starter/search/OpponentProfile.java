@@ -0,0 +1,76 @@
+package io.battlesnake.starter.search;
+
+import java.util.Arrays;
+
+/**
+ * What we know about one opponent across games: for each trait an {@link OpponentModel} tracks, how often a move
+ * with that trait was on offer and how often the snake took it, summed over every game it was observed in.
+ *
+ * Counts are halved once one of them passes {@link #COUNT_LIMIT}, so old games slowly lose weight and a profile
+ * never overflows.
+ */
+public final class OpponentProfile {
+    public static final int TRAITS = 4;
+    static final int COUNT_LIMIT = 1 << 24;
+
+    int games;
+    int observations;
+    final int[] offered = new int[TRAITS];
+    final int[] taken = new int[TRAITS];
+
+    public int games() {
+        return games;
+    }
+
+    /** @return the number of moves observed over all games */
+    public int observations() {
+        return observations;
+    }
+
+    public int offered(int trait) {
+        return offered[trait];
+    }
+
+    public int taken(int trait) {
+        return taken[trait];
+    }
+
+    /** Adds one game's worth of observations. */
+    void addGame(int gameObservations, int[] gameOffered, int[] gameTaken) {
+        games++;
+        observations += gameObservations;
+        boolean halve = false;
+        for (int t = 0; t < TRAITS; t++) {
+            offered[t] += gameOffered[t];
+            taken[t] += gameTaken[t];
+            halve |= offered[t] > COUNT_LIMIT;
+        }
+        if (halve) {
+            for (int t = 0; t < TRAITS; t++) {
+                offered[t] >>= 1;
+                taken[t] >>= 1;
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof OpponentProfile)) {
+            return false;
+        }
+        OpponentProfile that = (OpponentProfile) other;
+        return games == that.games && observations == that.observations
+                && Arrays.equals(offered, that.offered) && Arrays.equals(taken, that.taken);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * games + observations) + 31 * Arrays.hashCode(offered) + Arrays.hashCode(taken);
+    }
+
+    @Override
+    public String toString() {
+        return "OpponentProfile{games=" + games + ", observations=" + observations + ", offered="
+                + Arrays.toString(offered) + ", taken=" + Arrays.toString(taken) + "}";
+    }
+}
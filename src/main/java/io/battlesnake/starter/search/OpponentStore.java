@@ -0,0 +1,179 @@
+package io.battlesnake.starter.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@link OpponentProfile} of every opponent we have played, kept in a memory-mapped file so it survives
+ * restarts.
+ *
+ * The file is append-only: a fixed header, then one fixed-size record per finished game and opponent holding the
+ * opponent's whole profile after that game.
+ *
+ * <pre>
+ *   int magic, int version, int recordCount, int reserved
+ *   recordCount x { long nameHash, int games, int observations, int[4] offered, int[4] taken }
+ * </pre>
+ *
+ * The last record of a name is its current profile. Opening the store scans the records once into an
+ * open-addressing index from name hash to record, so {@link #load(String)} is one probe and a read from the
+ * mapping. A record is written in full before the header counts it, so a crash mid-write loses at most that
+ * record. Instances are safe to use from several threads.
+ */
+public final class OpponentStore implements Closeable {
+    static final int MAGIC = 0x534F5031; // "SOP1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 8 + 4 + 4 + 8 * OpponentProfile.TRAITS;
+    private static final int INITIAL_SIZE = HEADER_SIZE + 1024 * RECORD_SIZE;
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int records;
+
+    /* name hash to the index of its latest record, open addressing with linear probing */
+    private long[] keys = new long[64];
+    private int[] latest = new int[64];
+    private int names;
+
+    private OpponentStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        boolean fresh = channel.size() == 0;
+        map(Math.max(channel.size(), INITIAL_SIZE));
+        if (fresh) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, 0);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not an opponent store file");
+        }
+        records = buffer.getInt(8);
+        if (buffer.capacity() < HEADER_SIZE + (long) records * RECORD_SIZE) {
+            throw new IllegalArgumentException("Truncated opponent store: expected " + records + " records");
+        }
+        for (int r = 0; r < records; r++) {
+            index(buffer.getLong(HEADER_SIZE + r * RECORD_SIZE), r);
+        }
+    }
+
+    /** Opens the store at the path, creating an empty one if there is no file yet. */
+    public static OpponentStore open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        try {
+            return new OpponentStore(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** @return the number of opponents with a profile */
+    public synchronized int size() {
+        return names;
+    }
+
+    /** @return the number of records in the file, one per opponent and game */
+    public synchronized int records() {
+        return records;
+    }
+
+    /** @return a copy of the opponent's profile, or null if we have never finished a game against it */
+    public synchronized OpponentProfile load(String name) {
+        int slot = find(hash(name));
+        if (keys[slot] == 0) {
+            return null;
+        }
+        int at = HEADER_SIZE + latest[slot] * RECORD_SIZE + 8;
+        OpponentProfile profile = new OpponentProfile();
+        profile.games = buffer.getInt(at);
+        profile.observations = buffer.getInt(at + 4);
+        for (int t = 0; t < OpponentProfile.TRAITS; t++) {
+            profile.offered[t] = buffer.getInt(at + 8 + 4 * t);
+            profile.taken[t] = buffer.getInt(at + 8 + 4 * (OpponentProfile.TRAITS + t));
+        }
+        return profile;
+    }
+
+    /** Appends the opponent's profile, which becomes the one {@link #load(String)} returns. */
+    public synchronized void save(String name, OpponentProfile profile) throws IOException {
+        long end = HEADER_SIZE + (long) (records + 1) * RECORD_SIZE;
+        if (end > Integer.MAX_VALUE) {
+            throw new IOException("Opponent store is full");
+        }
+        if (end > buffer.capacity()) {
+            map(Math.min(Integer.MAX_VALUE, 2L * buffer.capacity()));
+        }
+        long key = hash(name);
+        int at = HEADER_SIZE + records * RECORD_SIZE;
+        buffer.putLong(at, key);
+        buffer.putInt(at + 8, profile.games);
+        buffer.putInt(at + 12, profile.observations);
+        for (int t = 0; t < OpponentProfile.TRAITS; t++) {
+            buffer.putInt(at + 16 + 4 * t, profile.offered[t]);
+            buffer.putInt(at + 16 + 4 * (OpponentProfile.TRAITS + t), profile.taken[t]);
+        }
+        buffer.force();
+        buffer.putInt(8, records + 1);
+        buffer.force();
+        index(key, records++);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void map(long size) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private void index(long key, int record) {
+        if (2 * (names + 1) > keys.length) {
+            long[] oldKeys = keys;
+            int[] oldLatest = latest;
+            keys = new long[2 * oldKeys.length];
+            latest = new int[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    latest[slot] = oldLatest[i];
+                }
+            }
+        }
+        int slot = find(key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            names++;
+        }
+        latest[slot] = record;
+    }
+
+    /** @return the slot holding the key, or the empty slot where it belongs */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ key >>> 32) * 0x9E3779B9 >>> 1 & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = slot + 1 & mask;
+        }
+        return slot;
+    }
+
+    /** 64-bit FNV-1a of the name; 0 marks an empty index slot, so it is never a hash. */
+    static long hash(String name) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
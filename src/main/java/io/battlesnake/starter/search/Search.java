@@ -0,0 +1,230 @@
+package io.battlesnake.starter.search;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import io.battlesnake.starter.engine.NeighborhoodTable;
+import io.battlesnake.starter.engine.Rules;
+
+import java.util.Arrays;
+
+/**
+ * Depth-limited paranoid search for snake 0 on a {@link Board}.
+ *
+ * Every ply is one joint move: snake 0 picks the move that maximizes its score and the opponents answer with
+ * the joint reply that minimizes it, with alpha-beta cutoffs on both levels. The board is advanced and restored
+ * in place with {@link Rules}, so a search allocates nothing once its scratch arrays are sized.
+ *
+ * This is too slow to run on every live turn; it is meant for offline work such as the opening book.
+ */
+public class Search {
+    private static final int WIN = 1000000;
+    private static final int LOSS = -WIN;
+
+    private final Rules rules = new Rules(0, 0, false);
+
+    /* scratch per ply: candidate moves of every snake and the joint move being tried */
+    private int[][] candidates = new int[0][];
+    private int[][] candidateCounts = new int[0][];
+    private int[][] jointMoves = new int[0][];
+    private int[][] replyIndex = new int[0][];
+
+    /* flood fill scratch */
+    private int[] queue = new int[0];
+    private int[] visited = new int[0];
+    private int visitStamp;
+
+    private long nodes;
+
+    /* optional pruning of unlikely opponent replies */
+    private OpponentModel opponentModel;
+    private int maxReplies = Direction.COUNT;
+    private final float[] distribution = new float[Direction.COUNT];
+
+    /**
+     * Only tries the maxReplies most likely moves of each opponent according to the model, or every safe move
+     * when the model is null. The model must not change while a search runs.
+     */
+    public void setOpponentModel(OpponentModel opponentModel, int maxReplies) {
+        if (maxReplies < 1) {
+            throw new IllegalArgumentException("At least one reply per opponent is needed");
+        }
+        this.opponentModel = opponentModel;
+        this.maxReplies = maxReplies;
+    }
+
+    /**
+     * @param depth number of joint moves to look ahead, at least 1
+     * @return the {@link Direction} snake 0 should play, or -1 if snake 0 is not alive
+     */
+    public int bestMove(Board board, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Search depth must be at least 1");
+        }
+        if (!board.isAlive(0)) {
+            return -1;
+        }
+        ensureCapacity(board, depth);
+        nodes = 0;
+
+        int count = candidates(board, 0, candidates[depth], 0);
+        int bestMove = candidates[depth][0];
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int move = candidates[depth][i];
+            int value = worstReply(board, depth, move, best == Integer.MIN_VALUE ? LOSS - 1 : best, WIN + 1);
+            if (value > best) {
+                best = value;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    /** @return the number of positions evaluated by the last {@link #bestMove(Board, int)} call */
+    public long nodes() {
+        return nodes;
+    }
+
+    private int search(Board board, int depth, int alpha, int beta) {
+        if (!board.isAlive(0)) {
+            // dying later is better than dying now
+            return LOSS - depth;
+        }
+        if (board.aliveCount() == 1 && board.snakeCount() > 1) {
+            return WIN + depth;
+        }
+        if (depth == 0) {
+            return evaluate(board);
+        }
+        int count = candidates(board, 0, candidates[depth], 0);
+        int best = LOSS - depth - 1;
+        for (int i = 0; i < count; i++) {
+            int value = worstReply(board, depth, candidates[depth][i], Math.max(alpha, best), beta);
+            if (value > best) {
+                best = value;
+                if (best >= beta) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Tries every joint reply of the opponents to our move and returns the lowest resulting score, stopping as
+     * soon as it drops to alpha.
+     */
+    private int worstReply(Board board, int depth, int ourMove, int alpha, int beta) {
+        int snakes = board.snakeCount();
+        int[] moves = jointMoves[depth];
+        int[] counts = candidateCounts[depth];
+        int[] options = candidates[depth];
+        moves[0] = ourMove;
+        for (int s = 1; s < snakes; s++) {
+            if (!board.isAlive(s)) {
+                counts[s] = 1;
+            } else if (opponentModel == null) {
+                counts[s] = candidates(board, s, options, s * Direction.COUNT);
+            } else {
+                counts[s] = Math.min(maxReplies,
+                        opponentModel.rank(board, s, options, s * Direction.COUNT, distribution));
+            }
+        }
+
+        int[] index = replyIndex[depth];
+        Arrays.fill(index, 0);
+        int worst = WIN + depth + 1;
+        while (true) {
+            for (int s = 1; s < snakes; s++) {
+                moves[s] = options[s * Direction.COUNT + index[s]];
+            }
+            rules.makeMove(board, moves);
+            nodes++;
+            int value = search(board, depth - 1, alpha, Math.min(beta, worst));
+            rules.unmakeMove(board);
+            if (value < worst) {
+                worst = value;
+                if (worst <= alpha) {
+                    return worst;
+                }
+            }
+            int s = 1;
+            while (s < snakes && ++index[s] == counts[s]) {
+                index[s] = 0;
+                s++;
+            }
+            if (s >= snakes) {
+                return worst;
+            }
+        }
+    }
+
+    /**
+     * Writes the moves of snake s that do not immediately hit a wall or a body that stays in place, starting at
+     * out[offset]. Falls back to a single move when all of them are unsafe.
+     *
+     * @return the number of moves written
+     */
+    public static int candidates(Board board, int s, int[] out, int offset) {
+        // free now, or a tail that is not stacked and so leaves this turn
+        int legal = NeighborhoodTable.legalMoves(NeighborhoodTable.lookup(board, s));
+        int count = 0;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            if ((legal & (1 << d)) != 0) {
+                out[offset + count++] = d;
+            }
+        }
+        if (count == 0) {
+            out[offset] = Direction.UP;
+            count = 1;
+        }
+        return count;
+    }
+
+    /**
+     * Scores a position for snake 0: mostly the room it has to move, then length, health and how many opponents
+     * are left.
+     */
+    private int evaluate(Board board) {
+        int space = floodFill(board, board.head(0), board.cellCount());
+        int opponents = board.aliveCount() - 1;
+        return space * 100 + board.length(0) * 20 + board.health(0) - opponents * 50;
+    }
+
+    /** Counts free cells reachable from the head, stopping early once the given limit is reached. */
+    private int floodFill(Board board, int start, int limit) {
+        if (++visitStamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            visitStamp = 1;
+        }
+        int read = 0, write = 0, reached = 0;
+        queue[write++] = start;
+        visited[start] = visitStamp;
+        while (read < write && reached < limit) {
+            int cell = queue[read++];
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int next = board.neighbor(cell, d);
+                if (next >= 0 && visited[next] != visitStamp && !board.isOccupied(next)) {
+                    visited[next] = visitStamp;
+                    queue[write++] = next;
+                    reached++;
+                }
+            }
+        }
+        return reached;
+    }
+
+    private void ensureCapacity(Board board, int depth) {
+        if (candidates.length <= depth) {
+            candidates = new int[depth + 1][Board.MAX_SNAKES * Direction.COUNT];
+            candidateCounts = new int[depth + 1][Board.MAX_SNAKES];
+            jointMoves = new int[depth + 1][Board.MAX_SNAKES];
+            replyIndex = new int[depth + 1][Board.MAX_SNAKES];
+        }
+        if (queue.length < board.cellCount()) {
+            queue = new int[board.cellCount()];
+            visited = new int[board.cellCount()];
+            visitStamp = 0;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package io.battlesnake.starter.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.xguzm.pathfinding.Heuristic;
+import org.xguzm.pathfinding.NavigationNode;
+import org.xguzm.pathfinding.PathQuery;
+import org.xguzm.pathfinding.finders.AStarFinder;
+import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.NavigationGrid;
+import org.xguzm.pathfinding.grid.finders.GridFinderOptions;
+import org.xguzm.pathfinding.grid.finders.HierarchicalGridFinder;
+import org.xguzm.pathfinding.grid.heuristics.ManhattanDistance;
+
+/**
+ * Rough throughput comparison for the pathfinding changes, run with
+ * {@code mvn compile exec:java -Dexec.mainClass=io.battlesnake.starter.tests.PathBenchmark}.
+ *
+ * Every case runs on the same seeded 11x11 board with a fifth of its cells blocked, except the large board case
+ * which uses a 60x60 board with the same density.
+ */
+public class PathBenchmark {
+    private static final int SIZE = 11;
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 200000;
+    private static final int LARGE = 60;
+
+    public static void main(String[] args) {
+        GridCell[][] cells = new GridCell[SIZE][SIZE];
+        Random random = new Random(7);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                cells[x][y] = new GridCell(x, y, random.nextInt(5) != 0);
+            }
+        }
+        NavigationGrid<GridCell> grid = new NavigationGrid<GridCell>(cells, false);
+        GridFinderOptions opt = new GridFinderOptions();
+        opt.allowDiagonal = false;
+        AStarFinder<GridCell> finder = new AStarFinder<GridCell>(GridCell.class, opt);
+
+        GridCell start = cells[5][5];
+        start.setWalkable(true);
+        List<PathQuery<GridCell>> queries = new ArrayList<PathQuery<GridCell>>();
+        int[][] goals = { { 0, 0 }, { 10, 10 }, { 0, 10 }, { 10, 0 } };
+        for (int[] goal : goals) {
+            cells[goal[0]][goal[1]].setWalkable(true);
+            queries.add(new PathQuery<GridCell>(start, cells[goal[0]][goal[1]]));
+        }
+
+        batch(finder, grid, queries);
+        independent(finder, grid, queries);
+
+        Heuristic wrapped = new Heuristic() {
+            private final Heuristic manhattan = new ManhattanDistance();
+
+            @Override
+            public float calculate(NavigationNode from, NavigationNode to) {
+                return manhattan.calculate(from, to);
+            }
+        };
+        heuristic("generic Heuristic", grid, queries, wrapped, 0);
+        heuristic("ManhattanDistance", grid, queries, new ManhattanDistance(), 0);
+        heuristic("ManhattanDistance + table", grid, queries, new ManhattanDistance(), SIZE * SIZE);
+        largeBoard();
+    }
+
+    /**
+     * Corner to corner first steps on a large board, flat A* against the cluster graph, with and without one cell
+     * inside a cluster changing before each query, as a moving snake would change it.
+     */
+    private static void largeBoard() {
+        GridCell[][] cells = new GridCell[LARGE][LARGE];
+        Random random = new Random(7);
+        for (int x = 0; x < LARGE; x++) {
+            for (int y = 0; y < LARGE; y++) {
+                cells[x][y] = new GridCell(x, y, random.nextInt(5) != 0);
+            }
+        }
+        cells[0][0].setWalkable(true);
+        cells[LARGE - 1][LARGE - 1].setWalkable(true);
+        NavigationGrid<GridCell> grid = new NavigationGrid<GridCell>(cells, false);
+        GridFinderOptions opt = new GridFinderOptions();
+        opt.allowDiagonal = false;
+        AStarFinder<GridCell> flat = new AStarFinder<GridCell>(GridCell.class, opt);
+        HierarchicalGridFinder<GridCell> hierarchy = new HierarchicalGridFinder<GridCell>(opt, 10);
+        GridCell start = cells[0][0], goal = cells[LARGE - 1][LARGE - 1];
+        int iterations = ITERATIONS / 20;
+
+        int sink = 0;
+        long started = 0;
+        for (int i = -WARMUP / 20; i < iterations; i++) {
+            if (i == 0) {
+                started = System.nanoTime();
+            }
+            GridCell step = flat.findFirstStep(start, goal, grid);
+            sink += step == null ? 0 : step.x;
+        }
+        report(LARGE + "x" + LARGE + " A* first step", started, sink, iterations);
+
+        hierarchy.update(grid);
+        sink = 0;
+        for (int i = -WARMUP / 20; i < iterations; i++) {
+            if (i == 0) {
+                started = System.nanoTime();
+            }
+            GridCell step = hierarchy.findFirstStep(start, goal, grid);
+            sink += step == null ? 0 : step.x;
+        }
+        report(LARGE + "x" + LARGE + " HPA* step", started, sink, iterations);
+
+        sink = 0;
+        for (int i = -WARMUP / 20; i < iterations; i++) {
+            if (i == 0) {
+                started = System.nanoTime();
+            }
+            GridCell moved = cells[22 + i % 6][35];
+            moved.setWalkable(!moved.isWalkable());
+            hierarchy.update(grid);
+            GridCell step = hierarchy.findFirstStep(start, goal, grid);
+            sink += step == null ? 0 : step.x;
+        }
+        report(LARGE + "x" + LARGE + " HPA* update + step", started, sink, iterations);
+    }
+
+    private static void heuristic(String name, NavigationGrid<GridCell> grid, List<PathQuery<GridCell>> queries,
+            Heuristic heuristic, int tableCells) {
+        GridFinderOptions opt = new GridFinderOptions(false, true, heuristic, false, 1, 1.4f);
+        opt.heuristicTableMaxCells = tableCells;
+        AStarFinder<GridCell> finder = new AStarFinder<GridCell>(GridCell.class, opt);
+        PathQuery<GridCell> query = queries.get(1);
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += finder.findPath(query.start, query.goal, grid).size();
+        }
+        long expanded = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += finder.findPath(query.start, query.goal, grid).size();
+            expanded += finder.getExpandedNodes();
+        }
+        long elapsed = System.nanoTime() - started;
+        report(name, started, sink);
+        System.out.printf("%-32s %10.1f ns/expansion%n", "", elapsed / (double) expanded);
+    }
+
+    private static void batch(AStarFinder<GridCell> finder, NavigationGrid<GridCell> grid,
+            List<PathQuery<GridCell>> queries) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += totalLength(finder.findPaths(queries, grid));
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += totalLength(finder.findPaths(queries, grid));
+        }
+        report("findPaths, " + queries.size() + " goals", started, sink);
+    }
+
+    private static void independent(AStarFinder<GridCell> finder, NavigationGrid<GridCell> grid,
+            List<PathQuery<GridCell>> queries) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            for (PathQuery<GridCell> query : queries) {
+                List<GridCell> path = finder.findPath(query.start, query.goal, grid);
+                sink += path == null ? 0 : new ArrayList<GridCell>(path).size();
+            }
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (PathQuery<GridCell> query : queries) {
+                List<GridCell> path = finder.findPath(query.start, query.goal, grid);
+                sink += path == null ? 0 : new ArrayList<GridCell>(path).size();
+            }
+        }
+        report(queries.size() + " x findPath", started, sink);
+    }
+
+    private static int totalLength(List<List<GridCell>> paths) {
+        int total = 0;
+        for (List<GridCell> path : paths) {
+            total += path == null ? 0 : path.size();
+        }
+        return total;
+    }
+
+    static void report(String name, long started, int sink) {
+        report(name, started, sink, ITERATIONS);
+    }
+
+    static void report(String name, long started, int sink, int iterations) {
+        double nanos = (System.nanoTime() - started) / (double) iterations;
+        System.out.printf("%-32s %10.0f ns/op   (%d)%n", name, nanos, sink);
+    }
+}
@@ -0,0 +1,284 @@
+package io.battlesnake.starter.tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.battlesnake.starter.Snake;
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import io.battlesnake.starter.engine.NeighborhoodTable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A regression corpus of recorded /move requests, each with the moves that were safe on its board.
+ *
+ * A corpus is a directory of {@code .jsonl} or {@code .jsonl.gz} files with one state per line,
+ * {@code {"safe":["up","left"],"request":{...}}}, and a {@value #BASELINE} holding the p95 move latency it is held
+ * to, give or take {@code -Dcorpus.tolerance}. {@link #run(Path, Function, int)} streams the files line by line,
+ * so only one state is ever in memory and latencies go into a fixed histogram: a corpus of millions of states needs
+ * no more memory than one of ten. It reports every move outside its state's safe set and the latency percentiles.
+ *
+ * Run with {@code java -cp ... io.battlesnake.starter.tests.RegressionCorpus check <dir>}, or {@code record <dir>
+ * <games> <seed> [every]} to add the handler's states from self-play games, or {@code baseline <dir>} to store the
+ * p95 of the current code as the new baseline.
+ */
+public class RegressionCorpus {
+    public static final String BASELINE = "baseline.json";
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    /** 1 us buckets up to 100 ms; slower moves share the last bucket */
+    private static final int BUCKETS = 100000;
+    private static final int MAX_FAILURES = 20;
+    /** the baseline is measured on one machine, so allow for a slower or busier one */
+    private static final String DEFAULT_TOLERANCE = "0.25";
+
+    /** What a pass over the corpus found. */
+    public static final class Result {
+        public int states;
+        public int unsafe;
+        /** the first unsafe decisions, with the file and line of their state */
+        public final List<String> failures = new ArrayList<>();
+        public double p50Micros;
+        public double p95Micros;
+        public double maxMicros;
+
+        @Override
+        public String toString() {
+            return String.format("%d states, %d unsafe, p50 %.0f us, p95 %.0f us, max %.0f us", states, unsafe,
+                    p50Micros, p95Micros, maxMicros);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionCorpus check|baseline <dir> | record <dir> <games> <seed> [every]");
+            System.exit(2);
+        }
+        Path directory = Paths.get(args[1]);
+        if (args[0].equals("record")) {
+            int states = record(directory, Integer.parseInt(args[2]), Long.parseLong(args[3]),
+                    args.length > 4 ? Integer.parseInt(args[4]) : 1);
+            System.out.println("Recorded " + states + " states");
+            return;
+        }
+        Snake.Handler handler = new Snake.Handler();
+        // one unmeasured pass so the measured one runs compiled code
+        run(directory, handler::move, Integer.MAX_VALUE);
+        Result result = run(directory, handler::move, 0);
+        System.out.println(result);
+        for (String failure : result.failures) {
+            System.out.println("  " + failure);
+        }
+        if (args[0].equals("baseline")) {
+            writeBaseline(directory, result.p95Micros);
+            System.out.println("Baseline p95 is now " + Math.round(result.p95Micros) + " us");
+            return;
+        }
+        double limit = p95LimitMicros(directory);
+        if (limit >= 0 && result.p95Micros > limit) {
+            System.out.println("p95 over the limit of " + Math.round(limit) + " us");
+        }
+        if (result.unsafe > 0 || limit >= 0 && result.p95Micros > limit) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays every state of the corpus through the mover. The first warmUpStates states are answered twice,
+     * the first time unmeasured, so the percentiles are those of compiled code.
+     */
+    public static Result run(Path directory, Function<JsonNode, Map<String, String>> mover, int warmUpStates)
+            throws IOException {
+        int[] histogram = new int[BUCKETS];
+        Result result = new Result();
+        long maxNanos = 0;
+        for (Path file : files(directory)) {
+            try (BufferedReader reader = open(file)) {
+                int lineNumber = 0;
+                for (String line; (line = reader.readLine()) != null; ) {
+                    lineNumber++;
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    JsonNode state = JSON_MAPPER.readTree(line);
+                    JsonNode request = state.get("request");
+                    if (result.states < warmUpStates) {
+                        mover.apply(request);
+                    }
+                    long started = System.nanoTime();
+                    Map<String, String> response = mover.apply(request);
+                    long nanos = System.nanoTime() - started;
+                    histogram[(int) Math.min(BUCKETS - 1, nanos / 1000)]++;
+                    maxNanos = Math.max(maxNanos, nanos);
+                    result.states++;
+
+                    String move = response == null ? null : response.get("move");
+                    if (!isSafe(state.get("safe"), move)) {
+                        result.unsafe++;
+                        if (result.failures.size() < MAX_FAILURES) {
+                            result.failures.add(file.getFileName() + ":" + lineNumber + " answered " + move
+                                    + ", safe " + state.get("safe"));
+                        }
+                    }
+                }
+            }
+        }
+        result.p50Micros = percentile(histogram, result.states, 0.5);
+        result.p95Micros = percentile(histogram, result.states, 0.95);
+        result.maxMicros = maxNanos / 1000.0;
+        return result;
+    }
+
+    /**
+     * @return the p95 latency the corpus is held to, its baseline plus the {@code corpus.tolerance} fraction of it
+     * (default {@value #DEFAULT_TOLERANCE}), or -1 when it has no baseline yet
+     */
+    public static double p95LimitMicros(Path directory) throws IOException {
+        Path file = directory.resolve(BASELINE);
+        if (!Files.isRegularFile(file)) {
+            return -1;
+        }
+        double tolerance = Double.parseDouble(System.getProperty("corpus.tolerance", DEFAULT_TOLERANCE));
+        return JSON_MAPPER.readTree(file.toFile()).get("p95Micros").doubleValue() * (1 + tolerance);
+    }
+
+    private static void writeBaseline(Path directory, double p95Micros) throws IOException {
+        ObjectNode baseline = JSON_MAPPER.createObjectNode();
+        baseline.put("p95Micros", Math.round(p95Micros));
+        Files.write(directory.resolve(BASELINE), JSON_MAPPER.writeValueAsBytes(baseline));
+    }
+
+    /**
+     * Plays self-play games of the handler against itself and two random movers, and writes every
+     * {@code every}-th state the handler answered to a new gzipped file in the directory. States the handler
+     * already answered outside the safe set are left out: the corpus holds decisions that must not regress.
+     *
+     * @return the number of states written
+     */
+    static int record(Path directory, int games, long seed, int every) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("selfplay-" + seed + "-" + games + ".jsonl.gz");
+        Snake.Handler handler = new Snake.Handler();
+        handler.setStallNanos(0);
+        Map<String, SelfPlay.Strategy> strategies = SelfPlay.strategies(handler);
+        String[] lineup = { "handler", "handler", "safe", "safe" };
+        int[] seen = new int[1];
+        int[] written = new int[1];
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8))) {
+            for (int g = 0; g < games; g++) {
+                SelfPlay.play(g, seed, lineup, strategies, (strategy, request, move) -> {
+                    if (!strategy.equals("handler") || seen[0]++ % every != 0) {
+                        return;
+                    }
+                    int safe = safeMoves(Board.fromJson(request));
+                    if (move < 0 || (safe & (1 << move)) == 0) {
+                        return;
+                    }
+                    ObjectNode state = JSON_MAPPER.createObjectNode();
+                    ArrayNode names = state.putArray("safe");
+                    for (int d = 0; d < Direction.COUNT; d++) {
+                        if ((safe & (1 << d)) != 0) {
+                            names.add(Direction.name(d));
+                        }
+                    }
+                    state.set("request", request);
+                    try {
+                        out.write(JSON_MAPPER.writeValueAsString(state));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    written[0]++;
+                });
+            }
+        }
+        return written[0];
+    }
+
+    /**
+     * @return the legal moves that do not step next to the head of an opponent at least as long, or all legal
+     * moves when each of them does
+     */
+    static int safeMoves(Board board) {
+        int legal = NeighborhoodTable.legalMoves(NeighborhoodTable.lookup(board, 0));
+        int uncontested = 0;
+        for (int d = 0; d < Direction.COUNT; d++) {
+            if ((legal & (1 << d)) == 0) {
+                continue;
+            }
+            int next = board.neighbor(board.head(0), d);
+            boolean contested = false;
+            for (int s = 1; s < board.snakeCount(); s++) {
+                if (board.isAlive(s) && board.length(s) >= board.length(0)) {
+                    int head = board.head(s);
+                    contested |= Math.abs(board.x(head) - board.x(next)) + Math.abs(board.y(head) - board.y(next)) == 1;
+                }
+            }
+            if (!contested) {
+                uncontested |= 1 << d;
+            }
+        }
+        return uncontested != 0 ? uncontested : legal;
+    }
+
+    private static boolean isSafe(JsonNode safe, String move) {
+        for (JsonNode name : safe) {
+            if (name.textValue().equals(move)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{jsonl,jsonl.gz}")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static BufferedReader open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static double percentile(int[] histogram, int count, double fraction) {
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            seen += histogram[bucket];
+            if (seen >= rank && seen > 0) {
+                return bucket;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,271 @@
+package io.battlesnake.starter.tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.battlesnake.starter.Snake;
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import io.battlesnake.starter.engine.NeighborhoodTable;
+import io.battlesnake.starter.engine.Rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless self-play, run with
+ * {@code java -cp ... io.battlesnake.starter.tests.SelfPlay [games] [seed] [lineup] [threads]}, for example
+ * {@code 2000 1 handler,safe,safe,safe}.
+ *
+ * Games run in process with no HTTP: each turn every snake gets the /move request it would see as "you", the
+ * strategies answer, and {@link Rules} advance the board. The strategies are {@code handler}, a
+ * {@link Snake.Handler} shared by every game, and {@code safe}, which picks a random legal move. Seats rotate from
+ * game to game so no strategy keeps the best corner.
+ *
+ * Every game is seeded from the run's seed and its number, food spawns come from the board's seeded generator and
+ * the handler answers the same board the same way, so a run replays exactly whatever the thread count. The only
+ * exception is a search hitting a time limit, which is why the stalling search runs without one here. The report
+ * gives each strategy's win rate with a 95% Wilson interval, the draws, and the handler's move latency; the
+ * checksum of all outcomes tells two runs apart.
+ */
+public class SelfPlay {
+    private static final int SIZE = 11;
+    private static final int MAX_TURNS = 1000;
+    private static final double Z = 1.96;
+
+    /** answers the /move request of one snake, given the game's own generator */
+    interface Strategy {
+        int move(JsonNode request, SplittableRandom random);
+    }
+
+    /** sees every request a strategy answered and its answer */
+    interface Recorder {
+        void record(String strategy, JsonNode request, int move);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        String[] lineup = (args.length > 2 ? args[2] : "handler,safe").split(",");
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Snake.Handler handler = new Snake.Handler();
+        handler.setStallNanos(0);
+        Map<String, Strategy> strategies = strategies(handler);
+        for (String name : lineup) {
+            if (!strategies.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown strategy " + name + ", expected one of "
+                        + strategies.keySet());
+            }
+        }
+
+        long started = System.nanoTime();
+        List<Game> results = run(games, seed, lineup, strategies, threads);
+        report(results, lineup, strategies.keySet(), System.nanoTime() - started, threads);
+    }
+
+    /** @return the games of the run with the given seed, in game order, played on that many threads */
+    static List<Game> run(int games, long seed, String[] lineup, Map<String, Strategy> strategies, int threads)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Game>> futures = new ArrayList<>();
+            for (int g = 0; g < games; g++) {
+                int number = g;
+                futures.add(pool.submit(() -> play(number, seed, lineup, strategies, null)));
+            }
+            List<Game> results = new ArrayList<>();
+            for (Future<Game> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** @return a checksum of the winner and length of every game, in order */
+    static long checksum(List<Game> games) {
+        long checksum = 1;
+        for (Game game : games) {
+            checksum = checksum * 31 + game.winner * 1009 + game.turns;
+        }
+        return checksum;
+    }
+
+    /** @return the strategies by name, with the handler playing as "handler" */
+    static Map<String, Strategy> strategies(Snake.Handler handler) {
+        Map<String, Strategy> strategies = new LinkedHashMap<>();
+        strategies.put("handler", (request, random) -> Direction.parse(handler.move(request).get("move")));
+        strategies.put("safe", SelfPlay::safeMove);
+        return strategies;
+    }
+
+    /**
+     * Plays game number {@code number} of the run with the given seed.
+     *
+     * @param recorder sees every move, or null
+     */
+    static Game play(int number, long seed, String[] lineup, Map<String, Strategy> strategies, Recorder recorder) {
+        long gameSeed = new SplittableRandom(seed).split().nextLong() ^ number * 0x9E3779B97F4A7C15L;
+        SplittableRandom random = new SplittableRandom(gameSeed);
+        String gameId = "selfplay-" + seed + "-" + number;
+        int snakes = lineup.length;
+        String[] seats = new String[snakes];
+        Board board = new Board(SIZE, SIZE);
+        int[][] starts = { { 1, 1 }, { 9, 9 }, { 1, 9 }, { 9, 1 }, { 5, 1 }, { 5, 9 }, { 1, 5 }, { 9, 5 } };
+        if (snakes > starts.length) {
+            throw new IllegalArgumentException("At most " + starts.length + " snakes");
+        }
+        for (int s = 0; s < snakes; s++) {
+            seats[s] = lineup[(s + number) % snakes];
+            int start = board.index(starts[s][0], starts[s][1]);
+            board.addSnake(seats[s] + "-" + s, Board.MAX_HEALTH);
+            for (int i = 0; i < 3; i++) {
+                board.appendSegment(s, start);
+            }
+            // one food diagonally towards the center from every snake
+            board.addFood(board.index(starts[s][0] + Integer.signum(5 - starts[s][0]),
+                    starts[s][1] + Integer.signum(5 - starts[s][1])));
+        }
+        board.addFood(board.index(SIZE / 2, SIZE / 2));
+        board.setSeed(gameSeed);
+
+        Rules rules = new Rules(1, 15, true);
+        int[] moves = new int[snakes];
+        long[] latencies = new long[MAX_TURNS * snakes];
+        int measured = 0;
+        int turn = 0;
+        while (board.aliveCount() > (snakes > 1 ? 1 : 0) && turn < MAX_TURNS) {
+            ObjectNode request = board.toJson(gameId);
+            for (int s = 0; s < snakes; s++) {
+                if (!board.isAlive(s)) {
+                    continue;
+                }
+                request.set("you", find(request, board.id(s)));
+                long before = System.nanoTime();
+                moves[s] = strategies.get(seats[s]).move(request, random);
+                if (seats[s].equals("handler")) {
+                    latencies[measured++] = System.nanoTime() - before;
+                }
+                if (recorder != null) {
+                    recorder.record(seats[s], request, moves[s]);
+                }
+                if (moves[s] < 0) {
+                    moves[s] = Direction.UP;
+                }
+            }
+            rules.makeMove(board, moves);
+            turn++;
+        }
+        int winner = -1;
+        for (int s = 0; s < snakes; s++) {
+            if (board.isAlive(s) && board.aliveCount() == 1) {
+                winner = s;
+            }
+        }
+        return new Game(seats, winner, turn, Arrays.copyOf(latencies, measured));
+    }
+
+    private static JsonNode find(ObjectNode request, String id) {
+        for (JsonNode snake : request.get("board").get("snakes")) {
+            if (snake.get("id").textValue().equals(id)) {
+                return snake;
+            }
+        }
+        throw new IllegalStateException("No snake " + id);
+    }
+
+    /** A random move that does not run into a wall or a body, if there is one. */
+    private static int safeMove(JsonNode request, SplittableRandom random) {
+        Board board = Board.fromJson(request);
+        int legal = NeighborhoodTable.legalMoves(NeighborhoodTable.lookup(board, 0));
+        if (legal == 0) {
+            return Direction.UP;
+        }
+        int pick = random.nextInt(Integer.bitCount(legal));
+        for (int d = 0; d < Direction.COUNT; d++) {
+            if ((legal & (1 << d)) != 0 && pick-- == 0) {
+                return d;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static void report(List<Game> games, String[] lineup, Iterable<String> names, long nanos, int threads) {
+        int draws = 0;
+        long turns = 0;
+        int handlerMoves = 0;
+        for (Game game : games) {
+            draws += game.winner < 0 ? 1 : 0;
+            turns += game.turns;
+            handlerMoves += game.latencies.length;
+        }
+        System.out.println(String.format("%d games of %s on %dx%d, %d threads, %.1f s, %.1f turns per game,"
+                        + " %d draws, checksum %016x", games.size(), String.join(",", lineup), SIZE, SIZE, threads,
+                nanos / 1e9, (double) turns / games.size(), draws, checksum(games)));
+        for (String name : names) {
+            int seatGames = 0;
+            int wins = 0;
+            for (Game game : games) {
+                for (int s = 0; s < game.seats.length; s++) {
+                    if (game.seats[s].equals(name)) {
+                        seatGames++;
+                        wins += game.winner == s ? 1 : 0;
+                    }
+                }
+            }
+            if (seatGames > 0) {
+                double[] interval = wilson(wins, seatGames);
+                System.out.println(String.format("%-8s won %5d of %5d seats  %5.1f%%  95%% CI [%5.1f%%, %5.1f%%]",
+                        name, wins, seatGames, 100.0 * wins / seatGames, 100 * interval[0], 100 * interval[1]));
+            }
+        }
+
+        if (handlerMoves > 0) {
+            long[] all = new long[handlerMoves];
+            int at = 0;
+            for (Game game : games) {
+                System.arraycopy(game.latencies, 0, all, at, game.latencies.length);
+                at += game.latencies.length;
+            }
+            Arrays.sort(all);
+            System.out.println(String.format("handler  %d moves  p50 %6.0f us  p90 %6.0f us  p99 %6.0f us"
+                            + "  p99.9 %6.0f us  max %7.0f us", all.length, percentile(all, 0.5),
+                    percentile(all, 0.9), percentile(all, 0.99), percentile(all, 0.999),
+                    all[all.length - 1] / 1000.0));
+        }
+    }
+
+    /** @return the lower and upper bound of the Wilson score interval of a win rate */
+    private static double[] wilson(int wins, int games) {
+        double p = (double) wins / games;
+        double denominator = 1 + Z * Z / games;
+        double center = (p + Z * Z / (2 * games)) / denominator;
+        double spread = Z * Math.sqrt(p * (1 - p) / games + Z * Z / (4.0 * games * games)) / denominator;
+        return new double[] { Math.max(0, center - spread), Math.min(1, center + spread) };
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1000.0;
+    }
+
+    static final class Game {
+        final String[] seats;
+        final int winner;
+        final int turns;
+        final long[] latencies;
+
+        Game(String[] seats, int winner, int turns, long[] latencies) {
+            this.seats = seats;
+            this.winner = winner;
+            this.turns = turns;
+            this.latencies = latencies;
+        }
+    }
+}
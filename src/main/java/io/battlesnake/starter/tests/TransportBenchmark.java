@@ -0,0 +1,141 @@
+package io.battlesnake.starter.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the two transports, run with
+ * {@code mvn compile exec:java -Dexec.mainClass=io.battlesnake.starter.tests.TransportBenchmark}.
+ *
+ * Each transport gets a fresh snake process on its own port, with warm-up and request logging off. The benchmark
+ * measures how long the process takes to answer its first /ping, then has {@link #CLIENTS} keep-alive clients
+ * post the fixture board to /move as fast as they can: first for {@link #WARMUP_SECONDS} unmeasured, then for
+ * {@link #SECONDS} measured. It reports the requests per second and the latency percentiles.
+ */
+public class TransportBenchmark {
+    private static final int CLIENTS = 8;
+    private static final int WARMUP_SECONDS = 10;
+    private static final int SECONDS = 20;
+    private static final int PORT = 18080;
+
+    public static void main(String[] args) throws Exception {
+        byte[] board = Files.readAllBytes(Paths.get("src/main/java/io/battlesnake/starter/tests/fixtures/move.json"));
+        run("spark", PORT, board);
+        run("jdk", PORT + 1, board);
+    }
+
+    private static void run(String transport, int port, byte[] board) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process snake = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-DPORT=" + port, "-DTRANSPORT=" + transport, "-DWARMUP_MILLIS=0",
+                "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn", "io.battlesnake.starter.Snake")
+                .inheritIO().start();
+        try {
+            long launched = System.nanoTime();
+            URL base = new URL("http://localhost:" + port);
+            while (!ping(base)) {
+                Thread.sleep(5);
+            }
+            long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launched);
+
+            load(new URL(base, "/move"), board, WARMUP_SECONDS);
+            long[] latencies = load(new URL(base, "/move"), board, SECONDS);
+            Arrays.sort(latencies);
+            System.out.println(String.format("%-6s startup %5d ms  %8.0f req/s  p50 %6.0f us  p99 %6.0f us"
+                            + "  p99.9 %6.0f us  max %7.0f us", transport, startupMillis,
+                    (double) latencies.length / SECONDS, percentile(latencies, 0.5), percentile(latencies, 0.99),
+                    percentile(latencies, 0.999), latencies[latencies.length - 1] / 1000.0));
+        } finally {
+            snake.destroy();
+            snake.waitFor();
+        }
+    }
+
+    private static boolean ping(URL base) {
+        try {
+            post(new URL(base, "/ping"), "{}".getBytes("UTF-8"));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the latency of every request in nanoseconds, from all clients
+     */
+    private static long[] load(URL url, byte[] board, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<long[]> results = new ArrayList<long[]>();
+        int[] counts = new int[CLIENTS];
+        List<Thread> clients = new ArrayList<Thread>();
+        for (int c = 0; c < CLIENTS; c++) {
+            long[] latencies = new long[1 << 20];
+            results.add(latencies);
+            int client = c;
+            Thread thread = new Thread(() -> {
+                int count = 0;
+                try {
+                    while (System.nanoTime() < deadline && count < latencies.length) {
+                        long started = System.nanoTime();
+                        post(url, board);
+                        latencies[count++] = System.nanoTime() - started;
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                counts[client] = count;
+            });
+            clients.add(thread);
+            thread.start();
+        }
+        int total = 0;
+        for (int c = 0; c < CLIENTS; c++) {
+            clients.get(c).join();
+            total += counts[c];
+        }
+        long[] all = new long[total];
+        int at = 0;
+        for (int c = 0; c < CLIENTS; c++) {
+            System.arraycopy(results.get(c), 0, all, at, counts[c]);
+            at += counts[c];
+        }
+        return all;
+    }
+
+    /** HttpURLConnection keeps the connection alive as long as every response is read to its end. */
+    private static void post(URL url, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        if (connection.getResponseCode() != 200) {
+            throw new IOException("HTTP " + connection.getResponseCode());
+        }
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            for (int read; (read = in.read(buffer)) >= 0; ) {
+                response.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1000.0;
+    }
+}
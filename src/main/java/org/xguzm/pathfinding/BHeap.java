@@ -118,7 +118,8 @@ public class BHeap<T extends BHeapNode> {
 
 			// The smallest of the three values is the parent.
 			//if (leftValue < rightValue ^ isMaxHeap) {
-			if (comparator.compare( (T)leftNode, (T)rightNode) < 0){
+			// a missing right child must not win: the comparators order null first
+			if (rightNode == null || comparator.compare( (T)leftNode, (T)rightNode) < 0){
 				//if (leftValue == value || (leftValue > value ^ isMaxHeap)) break;
 				if (leftNode == null || comparator.compare((T)leftNode, (T)node) > 0) break;
 				nodes[index] = leftNode;
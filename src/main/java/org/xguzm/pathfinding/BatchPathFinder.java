@@ -0,0 +1,20 @@
+package org.xguzm.pathfinding;
+
+import java.util.List;
+
+/**
+ * A {@link PathFinder} which can answer several queries against the same graph in one call, sharing the work
+ * between queries where it can.
+ *
+ * @param <T> the type implementing {@link NavigationNode}
+ */
+public interface BatchPathFinder<T extends NavigationNode> extends PathFinder<T> {
+	/**
+	 * Finds a path for every query. Unlike {@link #findPath(NavigationNode, NavigationNode, NavigationGraph)},
+	 * the returned paths are independent copies and stay valid after later searches.
+	 *
+	 * @return one entry per query, in the same order: the path from start(exclusive) to goal(inclusive), or null
+	 * if the goal cannot be reached
+	 */
+	List<List<T>> findPaths(List<PathQuery<T>> queries, NavigationGraph<T> graph);
+}
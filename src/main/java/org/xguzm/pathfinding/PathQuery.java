@@ -0,0 +1,16 @@
+package org.xguzm.pathfinding;
+
+/**
+ * A single (start, goal) pair for {@link BatchPathFinder#findPaths(java.util.List, NavigationGraph)}.
+ *
+ * @param <T> the type implementing {@link NavigationNode}
+ */
+public class PathQuery<T extends NavigationNode> {
+	public final T start;
+	public final T goal;
+
+	public PathQuery(T start, T goal) {
+		this.start = start;
+		this.goal = goal;
+	}
+}
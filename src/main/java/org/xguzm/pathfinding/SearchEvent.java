@@ -0,0 +1,46 @@
+package org.xguzm.pathfinding;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for one A* search, whether it was asked for the path, its first step or its cost.
+ *
+ * Extends {@link Event}, which JVMs without the flight recorder lack, so it is only touched once
+ * {@link Util#FLIGHT_RECORDER} says the API exists. An event is only created while a recording has it enabled.
+ */
+@Name("pathfinding.Search")
+@Label("Path Search")
+@Category({ "Battlesnake", "Pathfinding" })
+@Description("One A* search")
+@StackTrace(false)
+public final class SearchEvent extends Event {
+	private static final EventType TYPE = EventType.getEventType(SearchEvent.class);
+
+	@Label("Finder")
+	public String finder;
+
+	@Label("Width")
+	@Description("Width of the grid searched, 0 for a graph that is not a grid")
+	public int width;
+
+	@Label("Height")
+	public int height;
+
+	@Label("Nodes Expanded")
+	public int expandedNodes;
+
+	@Label("Path Length")
+	@Description("Steps from the start to the end node, -1 if the end node cannot be reached")
+	public int pathLength;
+
+	/** @return whether a running recording wants these events */
+	public static boolean enabled() {
+		return TYPE.isEnabled();
+	}
+}
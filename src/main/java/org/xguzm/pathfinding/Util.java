@@ -3,25 +3,55 @@ package org.xguzm.pathfinding;
 import org.xguzm.pathfinding.util.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Util {
 
+	/** whether this JVM has the flight recorder API, which {@link SearchEvent} needs */
+	public static final boolean FLIGHT_RECORDER = hasClass("jdk.jfr.Event");
+
 	private static final List<NavigationNode> path = new ArrayList<NavigationNode>(); 
 	
+	/**
+	 * Builds the path ending at node by following the parents back to the start node (exclusive). The nodes are
+	 * collected from the end and reversed once, so this is linear in the path length.
+	 * 
+	 * The returned list is shared and overwritten by the next call, copy it to keep it.
+	 */
 	@SuppressWarnings("unchecked")
 	public static <T extends NavigationNode> List<T> backtrace(T node){
 		path.clear();
-		path.add(node);
-		T node1 = node;
+		NavigationNode node1 = node;
 		while (node1.getParent() != null && node1 != node1.getParent()){
-			node1 = (T)node1.getParent();
-			path.add(0, node1);
+			path.add(node1);
+			node1 = node1.getParent();
 		}
-		path.remove(0);
+		Collections.reverse(path);
 		return (List<T>)path;
 	}
 
+	/**
+	 * @return the node right after start on the path that ends at node, or null if node is the start
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends NavigationNode> T firstStep(T start, T node){
+		NavigationNode node1 = node;
+		while (node1.getParent() != null && node1.getParent() != start && node1 != node1.getParent()){
+			node1 = node1.getParent();
+		}
+		return node1 == start || node1.getParent() == null ? null : (T)node1;
+	}
+
+	private static boolean hasClass(String name) {
+		try {
+			Class.forName(name, false, Util.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
 	public static void validateNotNull(NavigationNode node, String msg){
 		if (node == null){
 			throw new PathFindingException(msg, new NullPointerException());
@@ -1,16 +1,30 @@
 package org.xguzm.pathfinding.finders;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.xguzm.pathfinding.BHeap;
+import org.xguzm.pathfinding.BatchPathFinder;
 import org.xguzm.pathfinding.NavigationGraph;
 import org.xguzm.pathfinding.NavigationNode;
 import org.xguzm.pathfinding.PathFinder;
 import org.xguzm.pathfinding.PathFinderOptions;
+import org.xguzm.pathfinding.PathQuery;
+import org.xguzm.pathfinding.SearchEvent;
 import org.xguzm.pathfinding.Util;
+import org.xguzm.pathfinding.grid.GridHeuristic;
+import org.xguzm.pathfinding.grid.NavigationGridGraph;
+import org.xguzm.pathfinding.grid.NavigationGridGraphNode;
+import org.xguzm.pathfinding.grid.finders.GridFinderOptions;
+import org.xguzm.pathfinding.grid.heuristics.ChebyshevDistance;
+import org.xguzm.pathfinding.grid.heuristics.EuclideanDistance;
+import org.xguzm.pathfinding.grid.heuristics.HeuristicTable;
+import org.xguzm.pathfinding.grid.heuristics.ManhattanDistance;
 
 /**
  * A generic implementation of A* that works on any {@link NavigationGraph} instance.
@@ -19,11 +33,28 @@ import org.xguzm.pathfinding.Util;
  *
  * @param <T> a class implementing {@link NavigationNode}
  */
-public class AStarFinder<T extends NavigationNode> implements PathFinder<T>{
+public class AStarFinder<T extends NavigationNode> implements BatchPathFinder<T>{
 	
+	/* how the heuristic is evaluated, resolved once per search in resolveHeuristic */
+	private static final int GENERIC = 0, MANHATTAN = 1, EUCLIDEAN = 2, CHEBYSHEV = 3, GRID = 4, TABLE = 5;
+
 	private PathFinderOptions defaultOptions;
 	BHeap<T> openList;
 	public int jobId;
+	private int expandedNodes;
+
+	private int heuristicKind;
+	private GridHeuristic gridHeuristic;
+	private HeuristicTable heuristicTable;
+	private int goalX, goalY;
+
+	/* scratch for runBatch */
+	private boolean[] batchAnswered = new boolean[0];
+	private final List<T> batchGoals = new ArrayList<T>();
+	/* the goals of the start being answered: on grids the cell index holds the goal stamp, elsewhere a set */
+	private int[] goalMark = new int[0];
+	private int goalStamp;
+	private final Set<T> goalSet = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
 		
 	public AStarFinder(Class<T> clazz, PathFinderOptions opt) {
 	    this.defaultOptions = opt ;
@@ -45,6 +76,63 @@ public class AStarFinder<T extends NavigationNode> implements PathFinder<T>{
 	}
 	
 	public List<T> findPath(T startNode, T endNode, NavigationGraph<T> graph) {
+		return search(startNode, endNode, graph) ? Util.backtrace(endNode) : null;
+	}
+
+	/**
+	 * Finds only the first step of the path, which avoids building the path when the caller just needs to know
+	 * where to go next.
+	 * 
+	 * @return the node right after startNode on the path to endNode, or null if there is no path or both nodes
+	 * are the same
+	 */
+	public T findFirstStep(T startNode, T endNode, NavigationGraph<T> graph) {
+		return search(startNode, endNode, graph) ? Util.firstStep(startNode, endNode) : null;
+	}
+
+	/**
+	 * Finds only the cost of the cheapest path, for callers that compare alternatives rather than follow a path.
+	 * 
+	 * @return the summed movement cost from startNode to endNode, 0 if both are the same node, or
+	 * {@link Float#POSITIVE_INFINITY} if endNode cannot be reached
+	 */
+	public float findCost(T startNode, T endNode, NavigationGraph<T> graph) {
+		return search(startNode, endNode, graph) ? endNode.getG() : Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Runs A* from startNode to endNode. When it succeeds, the path is available by following the parents of
+	 * endNode back to startNode, until the next search. While a flight recording wants them, each search is
+	 * recorded as a {@link SearchEvent}.
+	 * 
+	 * @return true if endNode was reached
+	 */
+	protected boolean search(T startNode, T endNode, NavigationGraph<T> graph) {
+		if (!Util.FLIGHT_RECORDER || !SearchEvent.enabled())
+			return searchUnrecorded(startNode, endNode, graph);
+
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		boolean found = searchUnrecorded(startNode, endNode, graph);
+		event.end();
+		if (event.shouldCommit()) {
+			NavigationGridGraph<?> grid = neighborGrid(graph);
+			event.finder = getClass().getSimpleName();
+			event.width = grid == null ? 0 : grid.getWidth();
+			event.height = grid == null ? 0 : grid.getHeight();
+			event.expandedNodes = expandedNodes;
+			event.pathLength = -1;
+			if (found) {
+				event.pathLength = 0;
+				for (NavigationNode node = endNode; node != startNode && node.getParent() != null; node = node.getParent())
+					event.pathLength++;
+			}
+			event.commit();
+		}
+		return found;
+	}
+
+	private boolean searchUnrecorded(T startNode, T endNode, NavigationGraph<T> graph) {
 
 		Util.validateNotNull(startNode, "Start node cannot be null");
 		Util.validateNotNull(endNode, "End node cannot be null");
@@ -53,10 +141,11 @@ public class AStarFinder<T extends NavigationNode> implements PathFinder<T>{
 			jobId = 0;
 		int job = ++jobId;
 		
-	    T node, neighbor;
-        List<T> neighbors = new ArrayList<T>();
-        float ng;
+	    T node;
+	    NavigationGridGraph<?> grid = neighborGrid(graph);
 
+	    resolveHeuristic(endNode, graph);
+	    expandedNodes = 0;
 	    startNode.setG(0);
 	    startNode.setF(0);
 
@@ -71,48 +160,281 @@ public class AStarFinder<T extends NavigationNode> implements PathFinder<T>{
 	        // pop the position of node which has the minimum 'f' value.
 	        node = openList.pop();
 	        node.setClosedOnJob(job, this.getClass() );
+	        expandedNodes++;
 	        
 
 	        // if reached the end position, construct the path and return it
 	        if (node == endNode) {
-	            return Util.backtrace(endNode);
+	            return true;
 	        }
 
-	        // get neighbors of the current node
-	        neighbors.clear();
-	        neighbors.addAll( graph.getNeighbors(node, defaultOptions)) ;
-	        for (int i = 0, l = neighbors.size(); i < l; ++i) {
-	            neighbor = neighbors.get(i);
-
-	            if (neighbor.getClosedOnJob(this.getClass()) == job || !graph.isWalkable(neighbor)) {
-	                continue;
-	            }
-
-	            // get the distance between current node and the neighbor and calculate the next g score
-	            ng = node.getG() + graph.getMovementCost(node, neighbor, defaultOptions);
-
-	            // check if the neighbor has not been inspected yet, or can be reached with smaller cost from the current node
-	            if (neighbor.getOpenedOnJob(this.getClass()) != job || ng < neighbor.getG()) {
-	            	float prevf = neighbor.getF();
-	                neighbor.setG(ng);
-
-	                neighbor.setH(defaultOptions.heuristic.calculate(neighbor, endNode));
-	                neighbor.setF( neighbor.getG() + neighbor.getH());
-	                neighbor.setParent(node);
-
-	                if (neighbor.getOpenedOnJob(this.getClass()) != job) {
-	                    openList.add(neighbor);
-	                    neighbor.setOpenedOnJob(job, this.getClass());
-	                } else {
-	                    // the neighbor can be reached with smaller cost.
-	                    // Since its f value has been updated, we have to update its position in the open list
-	                    openList.updateNode(neighbor, neighbor.getF() - prevf);
-	                }
-	            }
-	        } 
+	        expand(node, endNode, job, graph, grid);
 	    } 
 
 	    // fail to find the path
-	    return null;
+	    return false;
+	}
+
+	/** @return the number of nodes closed by the last search */
+	public int getExpandedNodes() {
+		return expandedNodes;
+	}
+
+	/**
+	 * Picks the cheapest way to evaluate the configured heuristic for this search. Built-in grid heuristics on
+	 * grid nodes are computed inline from the coordinates, small grids can use a per-goal table, and anything
+	 * else goes through {@link org.xguzm.pathfinding.Heuristic#calculate(NavigationNode, NavigationNode)}.
+	 */
+	private void resolveHeuristic(T endNode, NavigationGraph<T> graph) {
+		heuristicKind = GENERIC;
+		if (!(endNode instanceof NavigationGridGraphNode) || !(defaultOptions.heuristic instanceof GridHeuristic))
+			return;
+
+		gridHeuristic = (GridHeuristic) defaultOptions.heuristic;
+		goalX = ((NavigationGridGraphNode) endNode).getX();
+		goalY = ((NavigationGridGraphNode) endNode).getY();
+
+		if (graph instanceof NavigationGridGraph && defaultOptions instanceof GridFinderOptions) {
+			NavigationGridGraph<?> grid = (NavigationGridGraph<?>) graph;
+			int cells = grid.getWidth() * grid.getHeight();
+			if (cells <= ((GridFinderOptions) defaultOptions).heuristicTableMaxCells) {
+				if (heuristicTable == null || heuristicTable.getHeuristic() != gridHeuristic)
+					heuristicTable = new HeuristicTable(gridHeuristic);
+				heuristicTable.setGoal(goalX, goalY, grid.getWidth(), grid.getHeight());
+				heuristicKind = TABLE;
+				return;
+			}
+		}
+
+		if (gridHeuristic instanceof ManhattanDistance)
+			heuristicKind = MANHATTAN;
+		else if (gridHeuristic instanceof EuclideanDistance)
+			heuristicKind = EUCLIDEAN;
+		else if (gridHeuristic instanceof ChebyshevDistance)
+			heuristicKind = CHEBYSHEV;
+		else
+			heuristicKind = GRID;
+	}
+
+	private float heuristic(T node, T endNode) {
+		if (heuristicKind == GENERIC)
+			return defaultOptions.heuristic.calculate(node, endNode);
+
+		NavigationGridGraphNode cell = (NavigationGridGraphNode) node;
+		switch (heuristicKind) {
+		case MANHATTAN:
+			return ManhattanDistance.distance(cell.getX(), cell.getY(), goalX, goalY);
+		case TABLE:
+			return heuristicTable.get(cell.getX(), cell.getY());
+		case EUCLIDEAN:
+			return EuclideanDistance.distance(cell.getX(), cell.getY(), goalX, goalY);
+		case CHEBYSHEV:
+			return ChebyshevDistance.distance(cell.getX(), cell.getY(), goalX, goalY);
+		default:
+			return gridHeuristic.calculate(cell.getX(), cell.getY(), goalX, goalY);
+		}
+	}
+
+	/**
+	 * Answers the queries grouped by start node. A start with a single goal is searched with plain A*. A start
+	 * with several goals is expanded once, as a uniform cost search that stops when every one of its goals has
+	 * been closed, and all of its paths are read from that one search tree.
+	 */
+	@Override
+	public List<List<T>> findPaths(List<PathQuery<T>> queries, NavigationGraph<T> graph) {
+		List<List<T>> paths = new ArrayList<List<T>>(queries.size());
+		for (int i = 0; i < queries.size(); i++)
+			paths.add(null);
+		runBatch(queries, graph, paths, null);
+		return paths;
+	}
+
+	/**
+	 * Same as {@link #findPaths(List, NavigationGraph)}, but only keeps the first step of every path, so no path
+	 * lists are built at all.
+	 * 
+	 * @param steps cleared and filled with one entry per query: the node right after the start, or null if the
+	 * goal cannot be reached or is the start itself
+	 */
+	public void findFirstSteps(List<PathQuery<T>> queries, NavigationGraph<T> graph, List<T> steps) {
+		steps.clear();
+		for (int i = 0; i < queries.size(); i++)
+			steps.add(null);
+		runBatch(queries, graph, null, steps);
+	}
+
+	private void runBatch(List<PathQuery<T>> queries, NavigationGraph<T> graph, List<List<T>> paths, List<T> steps) {
+		int count = queries.size();
+		if (batchAnswered.length < count)
+			batchAnswered = new boolean[count];
+		boolean[] answered = batchAnswered;
+		for (int i = 0; i < count; i++)
+			answered[i] = false;
+
+		List<T> goals = batchGoals;
+		NavigationGridGraph<?> cells = graph instanceof NavigationGridGraph ? (NavigationGridGraph<?>) graph : null;
+		if (cells != null && goalMark.length < cells.getWidth() * cells.getHeight())
+			goalMark = new int[cells.getWidth() * cells.getHeight()];
+		for (int i = 0; i < count; i++) {
+			if (answered[i])
+				continue;
+
+			T start = queries.get(i).start;
+			goals.clear();
+			clearGoals();
+			for (int j = i; j < count; j++) {
+				if (queries.get(j).start == start && markGoal(queries.get(j).goal, cells))
+					goals.add(queries.get(j).goal);
+			}
+
+			if (goals.size() == 1) {
+				boolean reached = search(start, goals.get(0), graph);
+				answer(queries, i, start, goals.get(0), reached, paths, steps);
+				continue;
+			}
+
+			expandFrom(start, goals, graph, cells);
+			for (int g = 0; g < goals.size(); g++) {
+				T goal = goals.get(g);
+				boolean reached = goal == start || goal.getClosedOnJob(this.getClass()) == jobId;
+				answer(queries, i, start, goal, reached, paths, steps);
+			}
+		}
+		goals.clear();
+		goalSet.clear();
+	}
+
+	private void clearGoals() {
+		goalSet.clear();
+		if (++goalStamp == Integer.MAX_VALUE) {
+			Arrays.fill(goalMark, 0);
+			goalStamp = 1;
+		}
+	}
+
+	/** @return false if the node already is a goal of the current start */
+	private boolean markGoal(T node, NavigationGridGraph<?> cells) {
+		if (cells == null)
+			return goalSet.add(node);
+		int cell = goalIndex(node, cells);
+		if (goalMark[cell] == goalStamp)
+			return false;
+		goalMark[cell] = goalStamp;
+		return true;
+	}
+
+	private boolean isGoal(T node, NavigationGridGraph<?> cells) {
+		return cells == null ? goalSet.contains(node) : goalMark[goalIndex(node, cells)] == goalStamp;
+	}
+
+	private static int goalIndex(NavigationNode node, NavigationGridGraph<?> cells) {
+		NavigationGridGraphNode cell = (NavigationGridGraphNode) node;
+		return cell.getY() * cells.getWidth() + cell.getX();
+	}
+
+	private void answer(List<PathQuery<T>> queries, int from, T start, T goal, boolean reached,
+			List<List<T>> paths, List<T> steps) {
+		List<T> path = reached && paths != null ? Util.backtrace(goal) : null;
+		T step = reached && steps != null ? Util.firstStep(start, goal) : null;
+		for (int j = from; j < queries.size(); j++) {
+			PathQuery<T> query = queries.get(j);
+			if (query.start == start && query.goal == goal) {
+				if (paths != null)
+					paths.set(j, path == null ? null : new ArrayList<T>(path));
+				if (steps != null)
+					steps.set(j, step);
+				batchAnswered[j] = true;
+			}
+		}
+	}
+
+	/** Uniform cost search from start until every goal is closed or the reachable graph is exhausted. */
+	private void expandFrom(T startNode, List<T> goals, NavigationGraph<T> graph, NavigationGridGraph<?> cells) {
+		Util.validateNotNull(startNode, "Start node cannot be null");
+
+		if (jobId == Integer.MAX_VALUE)
+			jobId = 0;
+		int job = ++jobId;
+
+		T node;
+		NavigationGridGraph<?> grid = neighborGrid(graph);
+		int remaining = goals.size();
+		expandedNodes = 0;
+
+		startNode.setG(0);
+		startNode.setF(0);
+		openList.clear();
+		openList.add(startNode);
+		startNode.setParent(null);
+		startNode.setOpenedOnJob(job, this.getClass());
+
+		while (openList.size > 0 && remaining > 0) {
+			node = openList.pop();
+			node.setClosedOnJob(job, this.getClass());
+			expandedNodes++;
+			if (isGoal(node, cells))
+				remaining--;
+
+			expand(node, null, job, graph, grid);
+		}
+	}
+
+	/** @return the graph as a grid when its neighbors can be read from {@link NavigationGridGraph#getNeighborMask}, else null */
+	private NavigationGridGraph<?> neighborGrid(NavigationGraph<T> graph) {
+		if (graph instanceof NavigationGridGraph && defaultOptions instanceof GridFinderOptions)
+			return (NavigationGridGraph<?>) graph;
+		return null;
+	}
+
+	/**
+	 * Relaxes every neighbor of node. On grids the neighbors come from the neighbor mask and are read straight from
+	 * the grid, otherwise from {@link NavigationGraph#getNeighbors(NavigationNode, PathFinderOptions)}.
+	 * 
+	 * @param endNode the goal of an A* search, or null for a uniform cost search
+	 */
+	@SuppressWarnings("unchecked")
+	private void expand(T node, T endNode, int job, NavigationGraph<T> graph, NavigationGridGraph<?> grid) {
+		if (grid != null) {
+			NavigationGridGraphNode cell = (NavigationGridGraphNode) node;
+			int x = cell.getX(), y = cell.getY();
+			int yDir = ((GridFinderOptions) defaultOptions).isYDown ? -1 : 1;
+			for (int mask = grid.getNeighborMask(x, y, defaultOptions); mask != 0; mask &= mask - 1) {
+				int k = Integer.numberOfTrailingZeros(mask);
+				T neighbor = (T) grid.getCell(x + NavigationGridGraph.NEIGHBOR_DX[k],
+						y + NavigationGridGraph.NEIGHBOR_DY[k] * yDir);
+				relax(node, neighbor, endNode, job, graph);
+			}
+			return;
+		}
+
+		List<T> neighbors = graph.getNeighbors(node, defaultOptions);
+		for (int i = 0, l = neighbors.size(); i < l; ++i)
+			relax(node, neighbors.get(i), endNode, job, graph);
+	}
+
+	private void relax(T node, T neighbor, T endNode, int job, NavigationGraph<T> graph) {
+		if (neighbor.getClosedOnJob(this.getClass()) == job || !graph.isWalkable(neighbor))
+			return;
+
+		// get the distance between current node and the neighbor and calculate the next g score
+		float ng = node.getG() + graph.getMovementCost(node, neighbor, defaultOptions);
+
+		// check if the neighbor has not been inspected yet, or can be reached with smaller cost from the current node
+		if (neighbor.getOpenedOnJob(this.getClass()) != job || ng < neighbor.getG()) {
+			float prevf = neighbor.getF();
+			neighbor.setG(ng);
+			neighbor.setH(endNode == null ? 0 : heuristic(neighbor, endNode));
+			neighbor.setF(neighbor.getG() + neighbor.getH());
+			neighbor.setParent(node);
+
+			if (neighbor.getOpenedOnJob(this.getClass()) != job) {
+				openList.add(neighbor);
+				neighbor.setOpenedOnJob(job, this.getClass());
+			} else {
+				// the neighbor can be reached with smaller cost.
+				// Since its f value has been updated, we have to update its position in the open list
+				openList.updateNode(neighbor, neighbor.getF() - prevf);
+			}
+		}
 	}
 }
@@ -1,6 +1,5 @@
 package org.xguzm.pathfinding.finders;
 
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 
@@ -57,7 +56,7 @@ public abstract class ThetaStarFinder<T extends NavigationNode> implements PathF
 		int job = ++jobId;
 		
 	    T node, neighbor;
-        List<T> neighbors = new ArrayList<T>();
+        List<T> neighbors;
         float ng;
 
 		Util.validateNotNull(startNode, "Start node cannot be null");
@@ -86,8 +85,7 @@ public abstract class ThetaStarFinder<T extends NavigationNode> implements PathF
 	        }
 
 	        // get neighbors of the current node
-	        neighbors.clear();
-	        neighbors.addAll( graph.getNeighbors(node, defaultOptions)) ;
+	        neighbors = graph.getNeighbors(node, defaultOptions);
 	        for (int i = 0, l = neighbors.size(); i < l; ++i) {
 	            neighbor = neighbors.get(i);
 
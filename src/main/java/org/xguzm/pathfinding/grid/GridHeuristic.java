@@ -0,0 +1,12 @@
+package org.xguzm.pathfinding.grid;
+
+import org.xguzm.pathfinding.Heuristic;
+
+/**
+ * A {@link Heuristic} that can also be evaluated straight from grid coordinates, without going through
+ * {@link org.xguzm.pathfinding.NavigationNode} objects.
+ */
+public interface GridHeuristic extends Heuristic {
+
+	float calculate(int fromX, int fromY, int toX, int toY);
+}
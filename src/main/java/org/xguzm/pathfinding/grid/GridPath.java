@@ -0,0 +1,74 @@
+package org.xguzm.pathfinding.grid;
+
+import org.xguzm.pathfinding.NavigationNode;
+
+/**
+ * A reusable, primitive path buffer for grids. Each step is stored as a packed cell index
+ * ({@code y * width + x}) in forward order, from the first step after the start to the goal.
+ * 
+ * The buffer only grows, so a caller that keeps one instance around fills it without allocating.
+ */
+public class GridPath {
+	private int[] cells;
+	private int length;
+	private int width;
+
+	public GridPath() {
+		this(64);
+	}
+
+	public GridPath(int capacity) {
+		cells = new int[Math.max(1, capacity)];
+	}
+
+	public int length() {
+		return length;
+	}
+
+	/** @return the packed index of step i */
+	public int get(int i) {
+		return cells[i];
+	}
+
+	public int getX(int i) {
+		return cells[i] % width;
+	}
+
+	public int getY(int i) {
+		return cells[i] / width;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public void clear(int width) {
+		this.width = width;
+		this.length = 0;
+	}
+
+	/**
+	 * Replaces the contents with the path ending at end, following the parents back to the start (exclusive).
+	 * Walks the chain twice, once to size the path and once to write it back to front.
+	 */
+	public void backtrace(NavigationGridGraphNode end, int width) {
+		int count = 0;
+		for (NavigationNode node = end; node.getParent() != null && node != node.getParent(); node = node.getParent())
+			count++;
+
+		if (cells.length < count) {
+			int capacity = cells.length;
+			while (capacity < count)
+				capacity <<= 1;
+			cells = new int[capacity];
+		}
+
+		this.width = width;
+		this.length = count;
+		NavigationGridGraphNode node = end;
+		for (int i = count - 1; i >= 0; i--) {
+			cells[i] = node.getY() * width + node.getX();
+			node = (NavigationGridGraphNode) node.getParent();
+		}
+	}
+}
@@ -23,6 +23,9 @@ public class NavigationGrid<T extends NavigationGridGraphNode> implements Naviga
 	
 	/** The nodes contained in the grid. They are stored as Grid[x][y] */
 	protected T[][] nodes;
+
+	/** Extra cost of entering each cell, indexed y * width + x, or null when every cell costs the same */
+	protected float[] costs;
 	
 
 	/**
@@ -142,41 +145,43 @@ public class NavigationGrid<T extends NavigationGridGraphNode> implements Naviga
 	 */
 	@Override
 	public List<T> getNeighbors(T node, PathFinderOptions opt) {
-		GridFinderOptions options = (GridFinderOptions) opt;
-		boolean allowDiagonal = options.allowDiagonal;
-		boolean dontCrossCorners = options.dontCrossCorners;
-		int yDir = options.isYDown ?  -1 : 1;
+		int yDir = ((GridFinderOptions) opt).isYDown ?  -1 : 1;
 	    int x = node.getX(), y = node.getY();
 	    neighbors.clear();
-        boolean s0 = false, d0 = false, s1 = false, d1 = false,
-        		s2 = false, d2 = false, s3 = false, d3 = false;
-
-	    // up
-	    if (isWalkable(x, y + yDir)) {
-	        neighbors.add(nodes[x][y  + yDir]);
-	        s0 = true;
+	    for (int mask = getNeighborMask(x, y, opt); mask != 0; mask &= mask - 1) {
+	        int k = Integer.numberOfTrailingZeros(mask);
+	        neighbors.add(nodes[x + NEIGHBOR_DX[k]][y + NEIGHBOR_DY[k] * yDir]);
 	    }
-	    // right
-	    if (isWalkable(x+1, y)) {
-	        neighbors.add(nodes[x + 1][y]);
-	        s1 = true;
-	    }
-	    // down
-	    if (isWalkable(x, y - yDir)) {
-	        neighbors.add(nodes[x][y - yDir]);
-	        s2 = true;
-	    }
-	    // left
-	    if (isWalkable(x - 1, y)) {
-	        neighbors.add(nodes[x - 1][y]);
-	        s3 = true;
-	    }
-	    
-	    if (!allowDiagonal) {
-	        return neighbors;
+	    return neighbors;
+	}
+
+	/**
+	 * Get the walkable neighbor slots of [x,y], numbered as in {@link #getNeighbors(NavigationGridGraphNode, PathFinderOptions)}.
+	 * It is computed from the cells on every call, so it stays correct when cells change walkability.
+	 */
+	@Override
+	public int getNeighborMask(int x, int y, PathFinderOptions opt) {
+		GridFinderOptions options = (GridFinderOptions) opt;
+		int yDir = options.isYDown ?  -1 : 1;
+		int mask = 0;
+
+	    // up, right, down, left
+	    if (isWalkable(x, y + yDir))
+	        mask |= 1;
+	    if (isWalkable(x + 1, y))
+	        mask |= 2;
+	    if (isWalkable(x, y - yDir))
+	        mask |= 4;
+	    if (isWalkable(x - 1, y))
+	        mask |= 8;
+
+	    if (!options.allowDiagonal) {
+	        return mask;
 	    }
 
-	    if (dontCrossCorners) {
+	    boolean s0 = (mask & 1) != 0, s1 = (mask & 2) != 0, s2 = (mask & 4) != 0, s3 = (mask & 8) != 0;
+	    boolean d0, d1, d2, d3;
+	    if (options.dontCrossCorners) {
 	        d0 = s3 && s0;
 	        d1 = s0 && s1;
 	        d2 = s1 && s2;
@@ -188,24 +193,17 @@ public class NavigationGrid<T extends NavigationGridGraphNode> implements Naviga
 	        d3 = s2 || s3;
 	    }
 
-	    // up left
-	    if (d0 && this.isWalkable(x - 1, y + yDir)) {
-	        neighbors.add(nodes[x-1][y + yDir]);
-	    }
-	    // up right
-	    if (d1 && this.isWalkable(x + 1, y + yDir)) {
-	        neighbors.add(nodes[x + 1][y + yDir]);
-	    }
-	    // down right
-	    if (d2 && this.isWalkable(x + 1, y - yDir)) {
-	        neighbors.add(nodes[x + 1][y - yDir]);
-	    }
-	    // down left
-	    if (d3 && this.isWalkable(x - 1, y - yDir)) {
-	        neighbors.add(nodes[x - 1][y - yDir]);
-	    }
+	    // up left, up right, down right, down left
+	    if (d0 && isWalkable(x - 1, y + yDir))
+	        mask |= 16;
+	    if (d1 && isWalkable(x + 1, y + yDir))
+	        mask |= 32;
+	    if (d2 && isWalkable(x + 1, y - yDir))
+	        mask |= 64;
+	    if (d3 && isWalkable(x - 1, y - yDir))
+	        mask |= 128;
 
-	    return neighbors;
+	    return mask;
 	}
 
 	@Override
@@ -216,8 +214,28 @@ public class NavigationGrid<T extends NavigationGridGraphNode> implements Naviga
 		
 		GridFinderOptions options = (GridFinderOptions)opt;
 		GridCell cell1 = (GridCell) node1, cell2 = (GridCell) node2;
-		return cell1.x == cell2.x || cell1.y == cell2.y  ? 
+		float cost = cell1.x == cell2.x || cell1.y == cell2.y  ? 
 				options.orthogonalMovementCost : options.diagonalMovementCost;
+		return costs == null ? cost : cost + costs[cell2.y * width + cell2.x];
+	}
+
+	/**
+	 * Sets a cost layer: the value of a cell is added to the movement cost of every step onto it. The array is
+	 * read directly, not copied, so it can be refilled in place between searches.
+	 * 
+	 * Costs must not be negative, or the built-in heuristics stop being admissible. Finders order their open
+	 * list by whole units of cost, so whole-number costs work best.
+	 * 
+	 * @param costs one value per cell, indexed y * width + x, or null to remove the layer
+	 */
+	public void setCosts(float[] costs) {
+		if (costs != null && costs.length < width * height)
+			throw new IllegalArgumentException("Cost layer has " + costs.length + " cells, the grid has " + width * height);
+		this.costs = costs;
+	}
+
+	public float[] getCosts() {
+		return costs;
 	}
 	
 	@Override
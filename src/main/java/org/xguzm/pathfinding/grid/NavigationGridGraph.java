@@ -1,6 +1,7 @@
 package org.xguzm.pathfinding.grid;
 
 import org.xguzm.pathfinding.NavigationGraph;
+import org.xguzm.pathfinding.PathFinderOptions;
 
 /**
  * A {@link NavigationGraph} which is represented as a grid or a table.
@@ -14,6 +15,11 @@ import org.xguzm.pathfinding.NavigationGraph;
  */
 public interface NavigationGridGraph<T extends NavigationGridGraphNode> extends NavigationGraph<T>{
 	
+	/** x offset of each neighbor slot of {@link #getNeighborMask(int, int, PathFinderOptions)} */
+	int[] NEIGHBOR_DX = { 0, 1, 0, -1, -1, 1, 1, -1 };
+	/** y offset of each neighbor slot, for isYDown == false; negate it when the y axis points down */
+	int[] NEIGHBOR_DY = { 1, 0, -1, 0, 1, 1, -1, -1 };
+
 	T getCell(int x, int y);
 	void setCell(int x, int y, T node);
 
@@ -45,6 +51,18 @@ public interface NavigationGridGraph<T extends NavigationGridGraphNode> extends
 	 * @return true if the node at [x,y] is walkable, false if it is not walkable (or if [x,y] is not within the grid's limit)
 	 */
 	boolean isWalkable(int x, int y);
+
+	/**
+	 * Same neighbors as {@link #getNeighbors}, as a bitmask instead of a list:
+	 * bit k is set when the cell at ({@link #NEIGHBOR_DX}[k], {@link #NEIGHBOR_DY}[k]) from [x,y] can be moved to.
+	 * Finders walk the set bits, so expanding a node allocates nothing.
+	 * 
+	 * @param x - The x / column coordinate of the node.
+	 * @param y - The y / row coordinate of the node.
+	 * @param opt - The {@link org.xguzm.pathfinding.grid.finders.GridFinderOptions} of the search.
+	 * @return the mask of walkable neighbor slots, 0 to 255
+	 */
+	int getNeighborMask(int x, int y, PathFinderOptions opt);
 	
 	
 	T[][] getNodes();
@@ -3,6 +3,7 @@ package org.xguzm.pathfinding.grid.finders;
 import java.util.List;
 
 import org.xguzm.pathfinding.finders.AStarFinder;
+import org.xguzm.pathfinding.grid.GridPath;
 import org.xguzm.pathfinding.grid.NavigationGridGraph;
 import org.xguzm.pathfinding.grid.NavigationGridGraphNode;
 
@@ -32,4 +33,19 @@ public class AStarGridFinder<T extends NavigationGridGraphNode> extends AStarFin
 		return findPath(grid.getCell(startX, startY), grid.getCell(endX, endY), grid); 	    
 	}
 
+	/**
+	 * Find the path and write it into a caller supplied buffer as packed cell indices, instead of building a list.
+	 * 
+	 * @param out receives the path from startNode(exclusive) to endNode(inclusive); emptied if there is no path
+	 * @return true if a path was found
+	 */
+	public boolean findPath(T startNode, T endNode, NavigationGridGraph<T> grid, GridPath out) {
+		if (!search(startNode, endNode, grid)) {
+			out.clear(grid.getWidth());
+			return false;
+		}
+		out.backtrace(endNode, grid.getWidth());
+		return true;
+	}
+
 }
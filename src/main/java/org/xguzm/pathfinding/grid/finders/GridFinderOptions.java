@@ -71,6 +71,14 @@ public class GridFinderOptions extends PathFinderOptions {
 	/** The cost of moving one cell over both the x and y axis  */
 	public float diagonalMovementCost;
 	
+	/** 
+	 * Grids with at most this many cells evaluate the heuristic through a per-goal
+	 * {@link org.xguzm.pathfinding.grid.heuristics.HeuristicTable} instead of computing it for every node.
+	 * <p>
+	 * Default value is 0 (never use a table)
+	 */
+	public int heuristicTableMaxCells;
+	
 	/**
 	 * Constructs a new GridFinderOptions with the default values:
 	 * <pre>
@@ -0,0 +1,529 @@
+package org.xguzm.pathfinding.grid.finders;
+
+import java.util.Arrays;
+
+import org.xguzm.pathfinding.grid.NavigationGrid;
+import org.xguzm.pathfinding.grid.NavigationGridGraph;
+import org.xguzm.pathfinding.grid.NavigationGridGraphNode;
+
+/**
+ * Hierarchical A* (HPA*) for large grids.
+ *
+ * The grid is split into square clusters. Where two neighboring clusters share a run of walkable cells on their
+ * border, the run gets one transition (two for long runs): a pair of abstract nodes, one on each side. Inside
+ * every cluster the cost between each pair of its abstract nodes is precomputed with a search that stays within
+ * the cluster. A query then only searches the small abstract graph, plus the clusters of its start and goal.
+ *
+ * {@link #update(NavigationGridGraph)} compares the grid with the state it was last built from and rebuilds only
+ * the clusters whose cells changed walkability or cost, so on a board where a few snakes move each turn most of
+ * the abstract graph is kept.
+ *
+ * Paths are near-optimal rather than optimal, as with any HPA*. Instances are not thread safe.
+ *
+ * @param <T> any class that inherits from {@link NavigationGridGraphNode}
+ */
+public class HierarchicalGridFinder<T extends NavigationGridGraphNode> {
+	private static final float INF = Float.POSITIVE_INFINITY;
+	/* runs of walkable border cells at least this long get a transition at each end */
+	private static final int LONG_ENTRANCE = 6;
+
+	private final GridFinderOptions options;
+	private final int clusterSize;
+
+	private int width, height, clustersX, clustersY;
+	private Cluster[] clusters = new Cluster[0];
+
+	/* the grid as of the last update */
+	private boolean[] walkable = new boolean[0];
+	private float[] costs = new float[0];
+	private boolean[] dirty = new boolean[0];
+	/* whether step costs can be computed from the snapshot, see LocalSearch.expandOrthogonal */
+	private boolean orthogonalLayer;
+	private int rebuiltClusters;
+
+	/* abstract graph, nodes numbered cluster by cluster */
+	private int nodeCount;
+	private int[] nodeCell = new int[0], nodeCluster = new int[0], nodePartner = new int[0];
+
+	/* scratch for the searches inside a cluster: forward from the start, backward from the goal */
+	private final LocalSearch forward = new LocalSearch(), backward = new LocalSearch(), build = new LocalSearch();
+
+	/* scratch for the abstract search, two extra ids for the start and the goal */
+	private float[] abstractG = new float[0];
+	private int[] abstractParent = new int[0], abstractSeen = new int[0], abstractClosed = new int[0];
+	private int abstractJob;
+	private final Heap abstractOpen = new Heap();
+
+	public HierarchicalGridFinder(GridFinderOptions options, int clusterSize) {
+		if (clusterSize < 2)
+			throw new IllegalArgumentException("Clusters must be at least 2 cells wide");
+		this.options = options;
+		this.clusterSize = clusterSize;
+	}
+
+	/**
+	 * Brings the abstract graph up to date with the grid. Clusters whose cells did not change since the last
+	 * update are kept as they are.
+	 *
+	 * @return the number of clusters that were rebuilt
+	 */
+	public int update(NavigationGridGraph<T> grid) {
+		if (grid.getWidth() != width || grid.getHeight() != height)
+			resize(grid.getWidth(), grid.getHeight());
+
+		float[] layer = grid instanceof NavigationGrid ? ((NavigationGrid<?>) grid).getCosts() : null;
+		orthogonalLayer = grid instanceof NavigationGrid && !options.allowDiagonal;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int cell = y * width + x;
+				boolean open = grid.isWalkable(x, y);
+				float cost = layer == null ? 0 : layer[cell];
+				if (open != walkable[cell] || cost != costs[cell]) {
+					walkable[cell] = open;
+					costs[cell] = cost;
+					markDirty(x, y);
+				}
+			}
+		}
+
+		rebuiltClusters = 0;
+		for (int c = 0; c < clusters.length; c++) {
+			if (dirty[c]) {
+				findTransitions(clusters[c]);
+				rebuiltClusters++;
+			}
+		}
+		for (int c = 0; c < clusters.length; c++) {
+			if (dirty[c]) {
+				computeDistances(clusters[c], grid);
+				dirty[c] = false;
+			}
+		}
+		if (rebuiltClusters > 0)
+			link();
+		return rebuiltClusters;
+	}
+
+	/** @return the number of clusters rebuilt by the last {@link #update(NavigationGridGraph)} */
+	public int getRebuiltClusters() {
+		return rebuiltClusters;
+	}
+
+	/** @return the number of nodes in the abstract graph */
+	public int getAbstractNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Finds the first step of a path from startNode to endNode. The abstract graph must be up to date, see
+	 * {@link #update(NavigationGridGraph)}. The start node itself does not have to be walkable.
+	 *
+	 * @return the node right after startNode, or null if endNode cannot be reached or is startNode
+	 */
+	public T findFirstStep(T startNode, T endNode, NavigationGridGraph<T> grid) {
+		int sx = startNode.getX(), sy = startNode.getY(), ex = endNode.getX(), ey = endNode.getY();
+		if ((sx == ex && sy == ey) || !grid.isWalkable(ex, ey))
+			return null;
+		int start = sy * width + sx, goal = ey * width + ex;
+		Cluster startCluster = clusters[clusterOf(sx, sy)], goalCluster = clusters[clusterOf(ex, ey)];
+
+		forward.run(start, startCluster, grid, false);
+		backward.run(goal, goalCluster, grid, true);
+
+		if (!abstractSearch(start, goal, startCluster, goalCluster, grid))
+			return null;
+
+		// the first hop of the abstract path that leaves the start cell
+		int startId = nodeCount, goalId = nodeCount + 1;
+		int hop = goalId;
+		for (int id = goalId; id != startId; id = abstractParent[id]) {
+			if ((id == goalId ? goal : nodeCell[id]) != start)
+				hop = id;
+		}
+		int cell = hop == goalId ? goal : nodeCell[hop];
+
+		// a hop inside the start cluster is refined with the local search, a hop across a border is one step
+		int step = clusterOf(cell % width, cell / width) == startCluster.index ? forward.firstStep(cell) : cell;
+		return step < 0 ? null : grid.getCell(step % width, step / width);
+	}
+
+	/**
+	 * Coordinate version of {@link #findFirstStep(NavigationGridGraphNode, NavigationGridGraphNode, NavigationGridGraph)}.
+	 */
+	public T findFirstStep(int startX, int startY, int endX, int endY, NavigationGridGraph<T> grid) {
+		return findFirstStep(grid.getCell(startX, startY), grid.getCell(endX, endY), grid);
+	}
+
+	/**
+	 * A* over the abstract nodes plus the start and the goal, which connect to the nodes of their clusters with
+	 * the costs of the local searches.
+	 *
+	 * @return true if the goal was reached
+	 */
+	private boolean abstractSearch(int start, int goal, Cluster startCluster, Cluster goalCluster,
+			NavigationGridGraph<T> grid) {
+		int startId = nodeCount, goalId = nodeCount + 1;
+		if (abstractG.length < nodeCount + 2) {
+			abstractG = new float[nodeCount + 2];
+			abstractParent = new int[nodeCount + 2];
+			abstractSeen = new int[nodeCount + 2];
+			abstractClosed = new int[nodeCount + 2];
+			abstractJob = 0;
+		}
+		int job = ++abstractJob;
+		int gx = goal % width, gy = goal / width;
+		abstractOpen.clear();
+
+		abstractG[startId] = 0;
+		abstractSeen[startId] = job;
+		abstractOpen.push(startId, 0);
+
+		while (abstractOpen.size > 0) {
+			int id = abstractOpen.pop();
+			if (id == goalId)
+				return true;
+			if (abstractClosed[id] == job)
+				continue;
+			abstractClosed[id] = job;
+			int cell = id == startId ? start : nodeCell[id];
+
+			float g = abstractG[id];
+			if (id == startId) {
+				for (int i = 0; i < startCluster.count; i++) {
+					int n = startCluster.offset + i;
+					relaxAbstract(id, n, g + forward.distance(nodeCell[n]), gx, gy, job);
+				}
+				if (startCluster == goalCluster)
+					relaxAbstract(id, goalId, g + forward.distance(goal), gx, gy, job);
+				continue;
+			}
+
+			Cluster cluster = clusters[nodeCluster[id]];
+			int local = id - cluster.offset;
+			for (int j = 0; j < cluster.count; j++) {
+				if (j != local)
+					relaxAbstract(id, cluster.offset + j, g + cluster.distance[local * cluster.count + j], gx, gy, job);
+			}
+			int partner = nodePartner[id];
+			if (partner >= 0) {
+				int pc = nodeCell[partner];
+				relaxAbstract(id, partner, g + grid.getMovementCost(grid.getCell(cell % width, cell / width),
+						grid.getCell(pc % width, pc / width), options), gx, gy, job);
+			}
+			if (cluster == goalCluster)
+				relaxAbstract(id, goalId, g + backward.distance(cell), gx, gy, job);
+		}
+		return false;
+	}
+
+	private void relaxAbstract(int from, int to, float g, int gx, int gy, int job) {
+		if (g == INF || abstractClosed[to] == job || (abstractSeen[to] == job && g >= abstractG[to]))
+			return;
+		abstractSeen[to] = job;
+		abstractG[to] = g;
+		abstractParent[to] = from;
+		int cell = to == nodeCount + 1 ? gy * width + gx : nodeCell[to];
+		abstractOpen.push(to, g + estimate(cell, gx, gy));
+	}
+
+	/* a lower bound of the cost between cell and the goal: every step costs at least the orthogonal cost */
+	private float estimate(int cell, int gx, int gy) {
+		int dx = Math.abs(cell % width - gx), dy = Math.abs(cell / width - gy);
+		int steps = options.allowDiagonal ? Math.max(dx, dy) : dx + dy;
+		return steps * Math.min(options.orthogonalMovementCost, options.diagonalMovementCost);
+	}
+
+	private void resize(int newWidth, int newHeight) {
+		width = newWidth;
+		height = newHeight;
+		clustersX = (width + clusterSize - 1) / clusterSize;
+		clustersY = (height + clusterSize - 1) / clusterSize;
+		clusters = new Cluster[clustersX * clustersY];
+		for (int cy = 0; cy < clustersY; cy++) {
+			for (int cx = 0; cx < clustersX; cx++) {
+				Cluster cluster = new Cluster();
+				cluster.index = cy * clustersX + cx;
+				cluster.x0 = cx * clusterSize;
+				cluster.y0 = cy * clusterSize;
+				cluster.x1 = Math.min(width, cluster.x0 + clusterSize);
+				cluster.y1 = Math.min(height, cluster.y0 + clusterSize);
+				clusters[cluster.index] = cluster;
+			}
+		}
+		walkable = new boolean[width * height];
+		costs = new float[width * height];
+		dirty = new boolean[clusters.length];
+		Arrays.fill(dirty, true);
+		nodeCount = 0;
+	}
+
+	private int clusterOf(int x, int y) {
+		return (y / clusterSize) * clustersX + x / clusterSize;
+	}
+
+	/* a cell change can move the transitions on the border it lies on, so the cluster across it is rebuilt too */
+	private void markDirty(int x, int y) {
+		dirty[clusterOf(x, y)] = true;
+		int rx = x % clusterSize, ry = y % clusterSize;
+		if (rx == 0 && x > 0)
+			dirty[clusterOf(x - 1, y)] = true;
+		if (rx == clusterSize - 1 && x + 1 < width)
+			dirty[clusterOf(x + 1, y)] = true;
+		if (ry == 0 && y > 0)
+			dirty[clusterOf(x, y - 1)] = true;
+		if (ry == clusterSize - 1 && y + 1 < height)
+			dirty[clusterOf(x, y + 1)] = true;
+	}
+
+	/** Collects the transitions on the four borders of the cluster. Both sides of a border find the same runs. */
+	private void findTransitions(Cluster cluster) {
+		cluster.count = 0;
+		if (cluster.x0 > 0)
+			scanBorder(cluster, cluster.x0, cluster.y0, 0, 1, cluster.y1 - cluster.y0, -1, 0);
+		if (cluster.x1 < width)
+			scanBorder(cluster, cluster.x1 - 1, cluster.y0, 0, 1, cluster.y1 - cluster.y0, 1, 0);
+		if (cluster.y0 > 0)
+			scanBorder(cluster, cluster.x0, cluster.y0, 1, 0, cluster.x1 - cluster.x0, 0, -1);
+		if (cluster.y1 < height)
+			scanBorder(cluster, cluster.x0, cluster.y1 - 1, 1, 0, cluster.x1 - cluster.x0, 0, 1);
+	}
+
+	/**
+	 * Walks length cells from (x, y) along (stepX, stepY), pairing each with the cell across the border at
+	 * (outX, outY), and adds a transition for every run where both are walkable.
+	 */
+	private void scanBorder(Cluster cluster, int x, int y, int stepX, int stepY, int length, int outX, int outY) {
+		int runStart = -1;
+		for (int i = 0; i <= length; i++) {
+			int cx = x + stepX * i, cy = y + stepY * i;
+			boolean open = i < length && walkable[cy * width + cx] && walkable[(cy + outY) * width + cx + outX];
+			if (open && runStart < 0) {
+				runStart = i;
+			} else if (!open && runStart >= 0) {
+				int runEnd = i - 1;
+				if (runEnd - runStart + 1 >= LONG_ENTRANCE) {
+					addTransition(cluster, x + stepX * runStart, y + stepY * runStart, outX, outY);
+					addTransition(cluster, x + stepX * runEnd, y + stepY * runEnd, outX, outY);
+				} else {
+					int mid = (runStart + runEnd) / 2;
+					addTransition(cluster, x + stepX * mid, y + stepY * mid, outX, outY);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	private void addTransition(Cluster cluster, int x, int y, int outX, int outY) {
+		if (cluster.count == cluster.cells.length) {
+			cluster.cells = Arrays.copyOf(cluster.cells, cluster.count * 2);
+			cluster.partners = Arrays.copyOf(cluster.partners, cluster.count * 2);
+		}
+		cluster.cells[cluster.count] = y * width + x;
+		cluster.partners[cluster.count] = (y + outY) * width + x + outX;
+		cluster.count++;
+	}
+
+	/** Fills the node to node costs of the cluster with one search inside the cluster per node. */
+	private void computeDistances(Cluster cluster, NavigationGridGraph<T> grid) {
+		int n = cluster.count;
+		if (cluster.distance.length < n * n)
+			cluster.distance = new float[n * n];
+		for (int i = 0; i < n; i++) {
+			build.run(cluster.cells[i], cluster, grid, false);
+			for (int j = 0; j < n; j++)
+				cluster.distance[i * n + j] = build.distance(cluster.cells[j]);
+		}
+	}
+
+	/** Numbers the nodes of all clusters and connects every transition to its partner across the border. */
+	private void link() {
+		nodeCount = 0;
+		for (Cluster cluster : clusters) {
+			cluster.offset = nodeCount;
+			nodeCount += cluster.count;
+		}
+		if (nodeCell.length < nodeCount) {
+			nodeCell = new int[nodeCount];
+			nodeCluster = new int[nodeCount];
+			nodePartner = new int[nodeCount];
+		}
+		for (Cluster cluster : clusters) {
+			for (int i = 0; i < cluster.count; i++) {
+				nodeCell[cluster.offset + i] = cluster.cells[i];
+				nodeCluster[cluster.offset + i] = cluster.index;
+			}
+		}
+		for (Cluster cluster : clusters) {
+			for (int i = 0; i < cluster.count; i++) {
+				int cell = cluster.cells[i], partnerCell = cluster.partners[i];
+				Cluster other = clusters[clusterOf(partnerCell % width, partnerCell / width)];
+				int partner = -1;
+				for (int j = 0; j < other.count && partner < 0; j++) {
+					if (other.cells[j] == partnerCell && other.partners[j] == cell)
+						partner = other.offset + j;
+				}
+				nodePartner[cluster.offset + i] = partner;
+			}
+		}
+	}
+
+	private static final class Cluster {
+		int index, x0, y0, x1, y1;
+		int[] cells = new int[8], partners = new int[8];
+		int count;
+		/* count x count costs between the nodes, INF when there is no path inside the cluster */
+		float[] distance = new float[0];
+		int offset;
+	}
+
+	/** Uniform cost search restricted to one cluster, over cell indices, reusing its arrays between runs. */
+	private final class LocalSearch {
+		private float[] g = new float[0];
+		private int[] parent = new int[0], seen = new int[0], closed = new int[0];
+		private int job;
+		private int origin;
+		private final Heap open = new Heap();
+
+		/**
+		 * Explores the whole cluster from originCell.
+		 * 
+		 * @param backward when true, costs are those of moving from each cell to origin instead of the reverse
+		 */
+		void run(int originCell, Cluster cluster, NavigationGridGraph<T> grid, boolean backward) {
+			if (g.length < width * height) {
+				g = new float[width * height];
+				parent = new int[width * height];
+				seen = new int[width * height];
+				closed = new int[width * height];
+				job = 0;
+			}
+			int run = ++job;
+			origin = originCell;
+			int yDir = options.isYDown ? -1 : 1;
+			open.clear();
+			g[originCell] = 0;
+			parent[originCell] = -1;
+			seen[originCell] = run;
+			open.push(originCell, 0);
+
+			while (open.size > 0) {
+				int cell = open.pop();
+				if (closed[cell] == run)
+					continue;
+				closed[cell] = run;
+
+				int x = cell % width, y = cell / width;
+				if (orthogonalLayer) {
+					expandOrthogonal(cell, x, y, cluster, backward, run);
+					continue;
+				}
+				T node = grid.getCell(x, y);
+				for (int mask = grid.getNeighborMask(x, y, options); mask != 0; mask &= mask - 1) {
+					int k = Integer.numberOfTrailingZeros(mask);
+					int nx = x + NavigationGridGraph.NEIGHBOR_DX[k], ny = y + NavigationGridGraph.NEIGHBOR_DY[k] * yDir;
+					if (nx < cluster.x0 || nx >= cluster.x1 || ny < cluster.y0 || ny >= cluster.y1)
+						continue;
+					int next = ny * width + nx;
+					if (closed[next] == run)
+						continue;
+					T neighbor = grid.getCell(nx, ny);
+					float cost = backward ? grid.getMovementCost(neighbor, node, options)
+							: grid.getMovementCost(node, neighbor, options);
+					float ng = g[cell] + cost;
+					if (seen[next] != run || ng < g[next]) {
+						seen[next] = run;
+						g[next] = ng;
+						parent[next] = cell;
+						open.push(next, ng);
+					}
+				}
+			}
+		}
+
+		/**
+		 * The common case of a {@link NavigationGrid} without diagonal moves, where the cost of a step is the
+		 * orthogonal cost plus the layer cost of the cell entered, read from the snapshot of the last update.
+		 */
+		private void expandOrthogonal(int cell, int x, int y, Cluster cluster, boolean backward, int run) {
+			for (int d = 0; d < 4; d++) {
+				int nx = x + NavigationGridGraph.NEIGHBOR_DX[d], ny = y + NavigationGridGraph.NEIGHBOR_DY[d];
+				if (nx < cluster.x0 || nx >= cluster.x1 || ny < cluster.y0 || ny >= cluster.y1)
+					continue;
+				int next = ny * width + nx;
+				if (closed[next] == run || !walkable[next])
+					continue;
+				float ng = g[cell] + options.orthogonalMovementCost + costs[backward ? cell : next];
+				if (seen[next] != run || ng < g[next]) {
+					seen[next] = run;
+					g[next] = ng;
+					parent[next] = cell;
+					open.push(next, ng);
+				}
+			}
+		}
+
+		float distance(int cell) {
+			return closed[cell] == job ? g[cell] : INF;
+		}
+
+		/** @return the cell after the origin on the way to cell, which must have been reached */
+		int firstStep(int cell) {
+			if (cell == origin)
+				return -1;
+			while (parent[cell] != origin)
+				cell = parent[cell];
+			return cell;
+		}
+	}
+
+	/** Binary min-heap of ids keyed by float, with lazy deletion left to the caller. */
+	private static final class Heap {
+		int[] ids = new int[64];
+		float[] keys = new float[64];
+		int size;
+
+		void clear() {
+			size = 0;
+		}
+
+		void push(int id, float key) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				keys = Arrays.copyOf(keys, size * 2);
+			}
+			int i = size++;
+			while (i > 0) {
+				int up = (i - 1) >> 1;
+				if (keys[up] <= key)
+					break;
+				ids[i] = ids[up];
+				keys[i] = keys[up];
+				i = up;
+			}
+			ids[i] = id;
+			keys[i] = key;
+		}
+
+		int pop() {
+			int top = ids[0];
+			int lastId = ids[--size];
+			float lastKey = keys[size];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size)
+					break;
+				if (child + 1 < size && keys[child + 1] < keys[child])
+					child++;
+				if (keys[child] >= lastKey)
+					break;
+				ids[i] = ids[child];
+				keys[i] = keys[child];
+				i = child;
+			}
+			ids[i] = lastId;
+			keys[i] = lastKey;
+			return top;
+		}
+	}
+}
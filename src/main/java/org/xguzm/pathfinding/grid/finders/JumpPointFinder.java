@@ -30,6 +30,8 @@ public class JumpPointFinder<T extends NavigationGridGraphNode> implements PathF
 	int jobId;
 
 	private Heuristic euclideanDist = new EuclideanDistance();
+	/* reused by getNeighbors, the list is consumed before the next node is expanded */
+	private final List<T> prunedNeighbors = new ArrayList<T>();
 
 	public JumpPointFinder(Class<T> clazz, GridFinderOptions options) {
 		this.options = options;
@@ -153,7 +155,8 @@ public class JumpPointFinder<T extends NavigationGridGraphNode> implements PathF
 			int dy = clamp(-1, 1, (y - py));
 			dy *= options.isYDown ? -1 : 1;
 
-			List<T> neighbors = new ArrayList<T>();
+			List<T> neighbors = prunedNeighbors;
+			neighbors.clear();
 			boolean allowDiagonal = allowedDiagonalMovement(node, dx, dy, grid);
 
 			// search diagonally
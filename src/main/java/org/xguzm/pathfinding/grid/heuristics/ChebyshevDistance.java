@@ -1,20 +1,30 @@
 package org.xguzm.pathfinding.grid.heuristics;
 
-import org.xguzm.pathfinding.Heuristic;
 import org.xguzm.pathfinding.NavigationNode;
-import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.GridHeuristic;
+import org.xguzm.pathfinding.grid.NavigationGridGraphNode;
 
-public class ChebyshevDistance implements Heuristic{
+public final class ChebyshevDistance implements GridHeuristic {
 
 	@Override
 	public float calculate(NavigationNode from, NavigationNode to) {
-		GridCell c1 = (GridCell)from, c2 = (GridCell) to;
+		NavigationGridGraphNode c1 = (NavigationGridGraphNode)from, c2 = (NavigationGridGraphNode) to;
 		
-		return calculate(Math.abs(c2.x - c1.x), Math.abs(c2.y - c1.y));
+		return distance(c1.getX(), c1.getY(), c2.getX(), c2.getY());
+	}
+	
+	@Override
+	public float calculate(int fromX, int fromY, int toX, int toY) {
+		return distance(fromX, fromY, toX, toY);
 	}
 	
 	public float calculate(int dx, int dy) {
 		return Math.max(dx, dy);
 	}
 
+	/** Static form of the heuristic, so finders can call it without any dispatch */
+	public static int distance(int fromX, int fromY, int toX, int toY) {
+		return Math.max(Math.abs(toX - fromX), Math.abs(toY - fromY));
+	}
+
 }
@@ -1,21 +1,31 @@
 package org.xguzm.pathfinding.grid.heuristics;
 
-import org.xguzm.pathfinding.Heuristic;
 import org.xguzm.pathfinding.NavigationNode;
-import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.GridHeuristic;
+import org.xguzm.pathfinding.grid.NavigationGridGraphNode;
 
-public class EuclideanDistance implements Heuristic {
+public final class EuclideanDistance implements GridHeuristic {
 
 	@Override
 	public float calculate(NavigationNode from, NavigationNode to) {
-		GridCell c1 = (GridCell)from, c2 = (GridCell) to;
+		NavigationGridGraphNode c1 = (NavigationGridGraphNode)from, c2 = (NavigationGridGraphNode) to;
 		
-		return calculate(c2.x - c1.x, c2.y - c1.y);
+		return distance(c1.getX(), c1.getY(), c2.getX(), c2.getY());
 	}
 	
+	@Override
+	public float calculate(int fromX, int fromY, int toX, int toY) {
+		return distance(fromX, fromY, toX, toY);
+	}
 	
 	public float calculate(float deltaX, float deltaY){
 		return (float) Math.sqrt(deltaX * deltaX + deltaY * deltaY);
 	}
 
+	/** Static form of the heuristic, so finders can call it without any dispatch */
+	public static float distance(int fromX, int fromY, int toX, int toY) {
+		int dx = toX - fromX, dy = toY - fromY;
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
 }
@@ -0,0 +1,43 @@
+package org.xguzm.pathfinding.grid.heuristics;
+
+import org.xguzm.pathfinding.grid.GridHeuristic;
+
+/**
+ * Caches a {@link GridHeuristic} for every cell of a small grid towards one goal, so that each evaluation during
+ * a search is a single array read. The table is rebuilt only when the goal or the grid size changes, which makes
+ * it worthwhile on tiny boards where many searches share a goal (e.g. the tail of the snake).
+ */
+public class HeuristicTable {
+	private final GridHeuristic heuristic;
+	private float[] values = new float[0];
+	private int width, height;
+	private int goalX = -1, goalY = -1;
+
+	public HeuristicTable(GridHeuristic heuristic) {
+		this.heuristic = heuristic;
+	}
+
+	/** Makes the table describe the distance to (goalX, goalY) on a grid of the given size */
+	public void setGoal(int goalX, int goalY, int width, int height) {
+		if (goalX == this.goalX && goalY == this.goalY && width == this.width && height == this.height)
+			return;
+		if (values.length < width * height)
+			values = new float[width * height];
+		this.goalX = goalX;
+		this.goalY = goalY;
+		this.width = width;
+		this.height = height;
+		for (int y = 0, i = 0; y < height; y++)
+			for (int x = 0; x < width; x++, i++)
+				values[i] = heuristic.calculate(x, y, goalX, goalY);
+	}
+
+	/** @return the heuristic from (x, y) to the current goal */
+	public float get(int x, int y) {
+		return values[y * width + x];
+	}
+
+	public GridHeuristic getHeuristic() {
+		return heuristic;
+	}
+}
@@ -0,0 +1,63 @@
+package io.battlesnake.starter;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Only {@link Recorded} uses {@code jdk.jfr}, so on a JVM without the flight recorder this class still loads and the
+ * test is skipped before any of the API is looked up.
+ */
+public class FlightEventsTest {
+
+    @Test
+    void movesAndTheirSearchesAreRecordedForTheFlightRecorder() throws IOException {
+        assumeTrue(FlightEvents.AVAILABLE);
+        Recorded.move(Files.readAllBytes(Paths.get("src/test/java/io/battlesnake/starter/fixtures/move.json")));
+    }
+
+    private static final class Recorded {
+        static void move(byte[] body) throws IOException {
+            Snake.Handler handler = new Snake.Handler();
+            Path file = Files.createTempFile("snake", ".jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("battlesnake.Request");
+                recording.enable("battlesnake.Move");
+                recording.enable("pathfinding.Search");
+                recording.start();
+                handler.process("/move", new ByteArrayInputStream(body));
+                recording.stop();
+                recording.dump(file);
+
+                Map<String, RecordedEvent> events = new HashMap<>();
+                for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                    events.put(event.getEventType().getName(), event);
+                }
+                RecordedEvent move = events.get("battlesnake.Move");
+                assertNotNull(move);
+                assertEquals(11, move.getInt("width"));
+                assertTrue(move.getInt("snakes") > 0);
+                assertNotNull(move.getString("decidedBy"));
+                assertTrue(move.getDuration().compareTo(move.getDuration("search")) >= 0);
+                assertNotNull(events.get("battlesnake.Request").getString("gameId"));
+                assertTrue(events.get("pathfinding.Search").getInt("expandedNodes") > 0);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
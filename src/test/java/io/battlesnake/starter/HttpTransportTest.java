@@ -0,0 +1,100 @@
+package io.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpTransportTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private Snake.Handler handler;
+    private Snake.Handler v2;
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        handler = new Snake.Handler();
+        v2 = new Snake.Handler("/v2");
+        server = HttpTransport.start(0, Arrays.asList(handler, v2), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /** @return the status code, and the body in {@code body[0]} */
+    private int request(String method, String path, byte[] payload, String[] body) throws IOException {
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (payload != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(payload);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[4096];
+                for (int n; (n = stream.read(buffer)) > 0; ) {
+                    read.write(buffer, 0, n);
+                }
+            }
+        }
+        body[0] = new String(read.toByteArray(), StandardCharsets.UTF_8);
+        return status;
+    }
+
+    @Test
+    void servesEveryHandlerUnderItsPrefix() throws IOException {
+        byte[] move = Files.readAllBytes(Paths.get("src/test/java/io/battlesnake/starter/fixtures/move.json"));
+        String[] body = new String[1];
+
+        for (String prefix : new String[] { "", "/v2" }) {
+            assertEquals(200, request("POST", prefix + "/start", move, body));
+            assertEquals("#ff00ff", OBJECT_MAPPER.readTree(body[0]).get("color").textValue());
+            assertEquals(200, request("POST", prefix + "/ping", "{}".getBytes(StandardCharsets.UTF_8), body));
+            assertEquals("{}", body[0]);
+            assertEquals(200, request("POST", prefix + "/move", move, body));
+            String answer = OBJECT_MAPPER.readTree(body[0]).get("move").textValue();
+            assertTrue(Arrays.asList("up", "down", "left", "right").contains(answer), answer);
+            assertEquals(200, request("POST", prefix + "/end", move, body));
+        }
+        assertEquals(405, request("GET", "/move", null, body));
+        assertEquals(500, request("POST", "/v2/move", "{".getBytes(StandardCharsets.UTF_8), body));
+        assertEquals(200, request("GET", "/", null, body));
+        assertEquals(Snake.DOCUMENTATION, body[0]);
+        assertEquals(404, request("POST", "/", "{}".getBytes(StandardCharsets.UTF_8), body));
+        assertEquals(404, request("GET", "/nowhere", null, body));
+        assertEquals(404, request("GET", "/v3/move", null, body));
+
+        assertEquals(200, request("GET", "/v2/metrics", null, body));
+        JsonNode metrics = OBJECT_MAPPER.readTree(body[0]);
+        assertEquals(1, metrics.get("move").intValue());
+        assertEquals(1, metrics.get("errors").intValue());
+        assertEquals(1L, handler.metrics().get("move"));
+        assertEquals(0L, handler.metrics().get("errors"));
+    }
+}
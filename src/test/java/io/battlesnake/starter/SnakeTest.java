@@ -3,16 +3,37 @@ package io.battlesnake.starter;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import io.battlesnake.starter.engine.NeighborhoodTable;
+import io.battlesnake.starter.engine.Rules;
+import io.battlesnake.starter.search.OpponentStore;
+import io.battlesnake.starter.tests.RegressionCorpus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class SnakeTest {
 
@@ -53,6 +74,293 @@ public class SnakeTest {
         assertTrue((move == "right" || move == "down" || move == "left" || move == "up"));
     }
 
+    @Test
+    void parallelEvaluationMatchesSequential() throws IOException {
+        JsonNode moveRequest = OBJECT_MAPPER.readTree(Paths.get("src/test/java/io/battlesnake/starter/fixtures/move.json").toFile());
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Snake.Handler parallel = new Snake.Handler();
+            parallel.setMovePool(pool);
+            for (int i = 0; i < 20; i++) {
+                assertEquals(handler.move(moveRequest).get("move"), parallel.move(moveRequest).get("move"));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void movesStayFastWhilePonderingIsSaturated() throws IOException {
+        JsonNode moveRequest = OBJECT_MAPPER.readTree(Paths.get("src/test/java/io/battlesnake/starter/fixtures/move.json").toFile());
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        AtomicInteger liveTasks = new AtomicInteger();
+        AtomicInteger ponderTasks = new AtomicInteger();
+        handler.setMovePool(task -> {
+            (Thread.currentThread().getName().equals("ponder") ? ponderTasks : liveTasks).incrementAndGet();
+            pool.execute(task);
+        });
+        ThreadPoolExecutor ponderExecutor = (ThreadPoolExecutor) Ponderer.newExecutor();
+        AtomicInteger pondered = new AtomicInteger();
+        Ponderer ponderer = new Ponderer(request -> {
+            pondered.incrementAndGet();
+            return handler.ponderMove(request);
+        }, 8, ponderExecutor);
+        try {
+            // a backlog of games to ponder, far more than the ponder thread gets through during the moves below
+            for (int game = 0; game < 500; game++) {
+                ObjectNode request = moveRequest.deepCopy();
+                ((ObjectNode) request.get("game")).put("id", "game-" + game);
+                ponderer.ponder(request, "up");
+            }
+            assertTrue(ponderExecutor.getQueue().size() > 0);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 50; i++) {
+                    assertNotNull(handler.move(moveRequest).get("move"));
+                }
+            });
+            assertTrue(ponderExecutor.getQueue().size() > 0, "pondering was not saturated");
+            assertTrue(pondered.get() > 0, "nothing was pondered");
+            assertEquals(0, ponderTasks.get(), "pondering used the move pool");
+            assertTrue(liveTasks.get() > 0);
+        } finally {
+            ponderer.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void prefixedHandlerRoutesAndCountsItsOwnRequests() throws IOException {
+        byte[] move = Files.readAllBytes(Paths.get("src/test/java/io/battlesnake/starter/fixtures/move.json"));
+        Snake.Handler v2 = new Snake.Handler("/v2");
+        v2.setColor("#00ff00");
+
+        assertEquals("#00ff00", v2.process("/v2/start", new ByteArrayInputStream(move)).get("color"));
+        assertEquals(0, v2.process("/v2/ping", new ByteArrayInputStream("{}".getBytes())).size());
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(v2.process("/v2/move", new ByteArrayInputStream(move)).get("move"));
+        }
+        assertEquals(0, v2.process("/v2/end", new ByteArrayInputStream(move)).size());
+        assertNull(v2.process("/v2/move", new ByteArrayInputStream("{".getBytes())));
+        assertNotNull(handler.process("/move", new ByteArrayInputStream(move)).get("move"));
+
+        Map<String, Object> metrics = v2.metrics();
+        assertEquals(1L, metrics.get("start"));
+        assertEquals(1L, metrics.get("ping"));
+        assertEquals(3L, metrics.get("move"));
+        assertEquals(1L, metrics.get("end"));
+        assertEquals(1L, metrics.get("errors"));
+        assertEquals(1L, handler.metrics().get("move"));
+        assertEquals(0L, handler.metrics().get("errors"));
+    }
+
+    @Test
+    void survivalModeOnCrowdedBoardsAvoidsContestedCellsAndKeepsTheTail() {
+        SplittableRandom random = new SplittableRandom(17);
+        int survivalMoves = 0;
+        for (int round = 0; round < 2000; round++) {
+            Board board = crowdedBoard(random);
+            if (board == null) {
+                continue;
+            }
+            int move = Direction.parse(handler.move(board.toJson("crowded-" + round)).get("move"));
+            if (BoardArena.forBoard(board.width(), board.height()).lastPhase != AllocationMeter.SURVIVAL) {
+                continue;
+            }
+            survivalMoves++;
+            int type = NeighborhoodTable.type(NeighborhoodTable.pattern(board, 0), move);
+            assertTrue(type == NeighborhoodTable.FREE || type == NeighborhoodTable.TAIL, "round " + round);
+            assertTrue(reachesTail(board, board.neighbor(board.head(0), move)), "round " + round);
+        }
+        assertTrue(survivalMoves > 0);
+    }
+
+    /** @return a 7x7 board with four snakes laid out as random walks over at least half of it, or null */
+    private static Board crowdedBoard(SplittableRandom random) {
+        Board board = new Board(7, 7);
+        for (int s = 0; s < 4; s++) {
+            int cell = random.nextInt(board.cellCount());
+            if (board.isOccupied(cell)) {
+                return null;
+            }
+            board.addSnake("snake-" + s, Board.MAX_HEALTH);
+            board.appendSegment(s, cell);
+            for (int length = 6 + random.nextInt(4); board.length(s) < length; ) {
+                int d = random.nextInt(Direction.COUNT);
+                int next = board.neighbor(cell, d);
+                int tries = 0;
+                while ((next < 0 || board.isOccupied(next)) && tries++ < Direction.COUNT) {
+                    d = (d + 1) % Direction.COUNT;
+                    next = board.neighbor(cell, d);
+                }
+                if (next < 0 || board.isOccupied(next)) {
+                    break;
+                }
+                board.appendSegment(s, next);
+                cell = next;
+            }
+        }
+        int occupied = 0;
+        for (int s = 0; s < board.snakeCount(); s++) {
+            occupied += board.length(s);
+        }
+        return occupied * 2 >= board.cellCount() && board.length(0) > 1 ? board : null;
+    }
+
+    /** @return whether our tail can be reached from the cell, over cells that are free by the time we get there */
+    private static boolean reachesTail(Board board, int from) {
+        boolean[] seen = new boolean[board.cellCount()];
+        int[] queue = new int[board.cellCount()];
+        int size = 0;
+        queue[size++] = from;
+        seen[from] = true;
+        for (int i = 0; i < size; i++) {
+            int cell = queue[i];
+            if (cell == board.tail(0)) {
+                return true;
+            }
+            for (int d = 0; d < Direction.COUNT; d++) {
+                int next = board.neighbor(cell, d);
+                if (next >= 0 && !seen[next] && board.turnsUntilFree(next) <= 1) {
+                    seen[next] = true;
+                    queue[size++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void opponentsEliminatedBeforeTheEndAreRemembered() throws IOException {
+        Path path = Files.createTempFile("opponents", ".bin");
+        Files.delete(path);
+        try (OpponentStore store = OpponentStore.open(path)) {
+            handler.setOpponentStore(store);
+            Board board = new Board(11, 11);
+            String[] ids = { "us", "early", "late" };
+            for (int s = 0; s < ids.length; s++) {
+                board.addSnake(ids[s], Board.MAX_HEALTH);
+                for (int x = 3; x > 0; x--) {
+                    board.appendSegment(s, board.index(x, 1 + 4 * s));
+                }
+            }
+            Rules rules = new Rules(0, 0, false);
+            int[] moves = { Direction.RIGHT, Direction.RIGHT, Direction.RIGHT };
+            handler.process("/start", request(board, 0, false));
+            for (int turn = 0; turn < 6; turn++) {
+                // "early" is eliminated after turn 3, so it is missing from the later boards and from /end
+                handler.process("/move", request(board, turn, turn > 3));
+                rules.makeMove(board, moves);
+            }
+            handler.process("/end", request(board, 6, true));
+
+            assertNotNull(store.load("Late Owl"));
+            assertNotNull(store.load("Early Bird"));
+            assertNull(store.load("early"));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /** @return the board as a request body, with display names that differ from the ids */
+    private static ByteArrayInputStream request(Board board, int turn, boolean withoutEarly) throws IOException {
+        ObjectNode request = board.toJson("names");
+        request.put("turn", turn);
+        ArrayNode snakes = (ArrayNode) request.get("board").get("snakes");
+        for (int i = snakes.size() - 1; i >= 0; i--) {
+            ObjectNode snake = (ObjectNode) snakes.get(i);
+            String id = snake.get("id").textValue();
+            if (withoutEarly && id.equals("early")) {
+                snakes.remove(i);
+            }
+            snake.put("name", id.equals("early") ? "Early Bird" : id.equals("late") ? "Late Owl" : "Us");
+        }
+        return new ByteArrayInputStream(OBJECT_MAPPER.writeValueAsBytes(request));
+    }
+
+    @Test
+    void bundledWarmUpCorpusReplaysWithoutTouchingTheHandler() throws IOException {
+        handler.setAllocationMeter(new AllocationMeter());
+        WarmUp.Result result = WarmUp.bundled(OBJECT_MAPPER).run(java.util.Collections.singletonList(handler), 500);
+        assertTrue(result.rounds > 0);
+        assertTrue(result.meanMicros > 0);
+        // the replayed boards went through a copy, so they count towards none of the handler's metrics
+        assertEquals(0L, handler.allocationMeter().snapshot().get("moves"));
+    }
+
+    @Test
+    void steadyStateMoveAllocatesAlmostNothing() throws IOException {
+        JsonNode moveRequest = OBJECT_MAPPER.readTree(Paths.get("src/test/java/io/battlesnake/starter/fixtures/move.json").toFile());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < 5000; i++) {
+            handler.move(moveRequest);
+        }
+
+        int moves = 1000;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < moves; i++) {
+            handler.move(moveRequest);
+        }
+        long perMove = (threads.getThreadAllocatedBytes(thread) - before) / moves;
+
+        System.out.println("Bytes allocated per move: " + perMove);
+        assertTrue(perMove < 256, perMove + " bytes allocated per move");
+    }
+
+    @Test
+    void movesStayWithinTheAllocationBudgetOfTheirBoardSize() throws IOException {
+        assumeTrue(AllocationMeter.supported());
+        JsonNode boards = OBJECT_MAPPER.readTree(getClass().getResourceAsStream(WarmUp.CORPUS));
+        for (int round = 0; round < 200; round++) {
+            for (JsonNode board : boards) {
+                handler.move(board);
+            }
+        }
+
+        AllocationMeter meter = new AllocationMeter();
+        handler.setAllocationMeter(meter);
+        for (int round = 0; round < 20; round++) {
+            for (JsonNode board : boards) {
+                handler.move(board);
+            }
+            // every game starts over, so the large boards rebuild their cluster graph
+            for (JsonNode board : boards) {
+                handler.end(board);
+            }
+        }
+
+        System.out.println("Allocation: " + meter.snapshot());
+        assertEquals(0, meter.overBudget(), "moves over budget, the worst allocated " + meter.maxMoveBytes());
+        assertEquals(meter.snapshot(), handler.metrics().get("allocation"));
+    }
+
+    @Test
+    void recordedCorpusStaysSafe() throws IOException {
+        Path corpus = Paths.get("src/test/java/io/battlesnake/starter/fixtures/corpus");
+        RegressionCorpus.Result result = RegressionCorpus.run(corpus, handler::move, 0);
+
+        assertTrue(result.states > 0);
+        assertEquals(0, result.unsafe, String.join("\n", result.failures));
+    }
+
+    /**
+     * The p95 baseline was measured on one machine, so this gate is only run when asked for, with
+     * {@code -Dcorpus.latency=true}, on a machine comparable to it.
+     */
+    @Test
+    void recordedCorpusStaysFast() throws IOException {
+        assumeTrue(Boolean.getBoolean("corpus.latency"));
+        Path corpus = Paths.get("src/test/java/io/battlesnake/starter/fixtures/corpus");
+        // one unmeasured pass so the gated one runs compiled code
+        RegressionCorpus.run(corpus, handler::move, Integer.MAX_VALUE);
+        RegressionCorpus.Result result = RegressionCorpus.run(corpus, handler::move, 0);
+        System.out.println("Corpus: " + result);
+
+        double limit = RegressionCorpus.p95LimitMicros(corpus);
+        assertTrue(result.p95Micros <= limit, "p95 " + result.p95Micros + " us over " + limit + " us");
+    }
+
     @Test
     void endTest() throws IOException {
         JsonNode endRequest = OBJECT_MAPPER.readTree("{}");
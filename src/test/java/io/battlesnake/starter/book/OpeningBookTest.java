@@ -0,0 +1,49 @@
+package io.battlesnake.starter.book;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpeningBookTest {
+
+    private static Board duel(int ourX, int ourY, int theirX, int theirY, int foodX, int foodY) {
+        Board board = new Board(11, 11);
+        int us = board.addSnake("you", Board.MAX_HEALTH);
+        int them = board.addSnake("them", Board.MAX_HEALTH);
+        for (int i = 0; i < 3; i++) {
+            board.appendSegment(us, board.index(ourX, ourY));
+            board.appendSegment(them, board.index(theirX, theirY));
+        }
+        board.addFood(board.index(foodX, foodY));
+        return board;
+    }
+
+    @Test
+    void mirroredPositionsShareEntries() throws IOException {
+        Board board = duel(1, 1, 9, 9, 5, 5);
+        Board mirrored = duel(9, 1, 1, 9, 5, 5);
+        PositionHash hash = new PositionHash().compute(board);
+        PositionHash mirroredHash = new PositionHash().compute(mirrored);
+        assertEquals(hash.hash(), mirroredHash.hash());
+
+        Path file = Files.createTempFile("book", ".bin");
+        file.toFile().deleteOnExit();
+        long[] hashes = { 7L, hash.hash(), -3L };
+        byte[] moves = { 0, (byte) hash.toCanonical(Direction.RIGHT), 1 };
+        OpeningBook.write(file, 11, 11, 0, hashes, moves, hashes.length);
+
+        OpeningBook book = OpeningBook.open(file);
+        assertEquals(3, book.size());
+        assertTrue(book.covers(11, 11, 0));
+        assertEquals(Direction.RIGHT, book.lookup(hash));
+        assertEquals(Direction.LEFT, book.lookup(mirroredHash));
+        assertEquals(-1, book.lookup(new PositionHash().compute(duel(1, 1, 9, 9, 4, 5))));
+    }
+}
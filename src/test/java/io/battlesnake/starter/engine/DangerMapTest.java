@@ -0,0 +1,64 @@
+package io.battlesnake.starter.engine;
+
+import org.junit.jupiter.api.Test;
+import org.xguzm.pathfinding.finders.AStarFinder;
+import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.NavigationGrid;
+import org.xguzm.pathfinding.grid.finders.GridFinderOptions;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DangerMapTest {
+
+    private static Board board() {
+        Board board = new Board(7, 7);
+        int us = board.addSnake("us", 90);
+        board.appendSegment(us, board.index(0, 3));
+        board.appendSegment(us, board.index(0, 4));
+        board.appendSegment(us, board.index(0, 5));
+        int them = board.addSnake("them", 90);
+        board.appendSegment(them, board.index(3, 2));
+        board.appendSegment(them, board.index(3, 1));
+        board.appendSegment(them, board.index(3, 0));
+        board.appendSegment(them, board.index(4, 0));
+        return board;
+    }
+
+    @Test
+    void costsHeadsHazardsAndDeadEnds() {
+        Board board = board();
+        board.addHazard(board.index(6, 6));
+        float[] costs = new DangerMap(7, 7).compute(board);
+
+        assertEquals(DangerMap.HEAD_COST, costs[board.index(3, 3)]);
+        assertEquals(DangerMap.HEAD_COST, costs[board.index(2, 2)]);
+        assertEquals(DangerMap.HAZARD_COST + DangerMap.CORRIDOR_COST, costs[board.index(6, 6)]);
+        assertEquals(0, costs[board.index(5, 5)]);
+        // (0, 6) is walled in by the corner and our tail
+        assertEquals(DangerMap.DEAD_END_COST, costs[board.index(0, 6)]);
+    }
+
+    @Test
+    void weightedSearchDetoursAroundLargerHead() {
+        Board board = board();
+        GridCell[][] cells = new GridCell[7][7];
+        for (int x = 0; x < 7; x++) {
+            for (int y = 0; y < 7; y++) {
+                cells[x][y] = new GridCell(x, y, !board.isOccupied(board.index(x, y)));
+            }
+        }
+        NavigationGrid<GridCell> grid = new NavigationGrid<GridCell>(cells, false);
+        grid.setCosts(new DangerMap(7, 7).compute(board));
+        GridFinderOptions opt = new GridFinderOptions();
+        opt.allowDiagonal = false;
+
+        List<GridCell> path = new AStarFinder<GridCell>(GridCell.class, opt).findPath(cells[1][3], cells[5][3], grid);
+
+        for (GridCell cell : path) {
+            assertTrue(Math.abs(cell.x - 3) + Math.abs(cell.y - 2) > 1, "path crosses " + cell.x + "," + cell.y);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package io.battlesnake.starter.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HamiltonianCycleTest {
+
+    @Test
+    void toursVisitEveryCellButTheOddCorner() {
+        int[][] sizes = { { 2, 2 }, { 7, 7 }, { 8, 5 }, { 5, 8 }, { 11, 11 }, { 19, 19 }, { 25, 24 } };
+        for (int[] size : sizes) {
+            Board board = new Board(size[0], size[1]);
+            HamiltonianCycle cycle = HamiltonianCycle.forBoard(size[0], size[1]);
+            boolean bothOdd = size[0] % 2 == 1 && size[1] % 2 == 1;
+            assertEquals(board.cellCount() - (bothOdd ? 1 : 0), cycle.length());
+            int cell = board.index(0, 0);
+            for (int i = 0; i < cycle.length(); i++) {
+                int next = cycle.next(cell);
+                int steps = Math.abs(board.x(next) - board.x(cell)) + Math.abs(board.y(next) - board.y(cell));
+                assertEquals(1, steps, "tour step " + i + " on " + size[0] + "x" + size[1]);
+                cell = next;
+            }
+            assertEquals(board.index(0, 0), cell);
+            if (bothOdd) {
+                assertEquals(-1, cycle.position(board.index(size[0] - 1, size[1] - 1)));
+            }
+        }
+        assertNull(HamiltonianCycle.forBoard(1, 11));
+    }
+
+    @Test
+    void soloSnakeFollowingTheTourFillsTheBoard() {
+        Board board = new Board(7, 7);
+        HamiltonianCycle cycle = HamiltonianCycle.forBoard(7, 7);
+        int us = board.addSnake("us", Board.MAX_HEALTH);
+        int head = board.index(3, 0);
+        board.appendSegment(us, head);
+        board.appendSegment(us, board.index(2, 0));
+        board.appendSegment(us, board.index(1, 0));
+        board.setSeed(7);
+        Rules rules = new Rules(1, 15, true);
+        int[] moves = new int[1];
+        // until the snake covers the whole tour, after which the only food left can be in the left-out corner
+        for (int turn = 0; turn < 2000 && board.length(us) < cycle.length(); turn++) {
+            int target = -1;
+            if (board.health(us) <= cycle.length()) {
+                for (int cell = 0; cell < board.cellCount(); cell++) {
+                    if (board.hasFood(cell)) {
+                        target = cell;
+                    }
+                }
+            }
+            moves[0] = cycle.move(board, us, NeighborhoodTable.legalMoves(NeighborhoodTable.lookup(board, us)), target);
+            assertTrue(moves[0] >= 0, "no move on turn " + turn);
+            rules.makeMove(board, moves);
+            assertTrue(board.isAlive(us), "died on turn " + turn);
+        }
+        assertEquals(cycle.length(), board.length(us));
+    }
+}
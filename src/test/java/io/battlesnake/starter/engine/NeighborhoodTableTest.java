@@ -0,0 +1,69 @@
+package io.battlesnake.starter.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NeighborhoodTableTest {
+
+    @Test
+    void legalMovesMatchTheBoard() {
+        Random random = new Random(42);
+        Rules rules = new Rules();
+        for (int game = 0; game < 50; game++) {
+            Board board = new Board(7, 7);
+            int a = board.addSnake("a", 50);
+            board.appendSegment(a, board.index(1, 3));
+            board.appendSegment(a, board.index(0, 3));
+            board.appendSegment(a, board.index(0, 2));
+            int b = board.addSnake("b", 50);
+            board.appendSegment(b, board.index(5, 3));
+            board.appendSegment(b, board.index(6, 3));
+            board.appendSegment(b, board.index(6, 4));
+            board.setSeed(game);
+            int[] moves = new int[2];
+            while (board.isAlive(0) && board.turn() < 40) {
+                int expected = 0;
+                for (int d = 0; d < Direction.COUNT; d++) {
+                    int next = board.neighbor(board.head(0), d);
+                    if (next >= 0 && board.turnsUntilFree(next) <= 1) {
+                        expected |= 1 << d;
+                    }
+                }
+                int entry = NeighborhoodTable.lookup(board, 0);
+                assertEquals(expected, NeighborhoodTable.legalMoves(entry), board.toString());
+                for (int d = 0; d < Direction.COUNT; d++) {
+                    assertTrue(NeighborhoodTable.score(entry, d) <= NeighborhoodTable.safety(entry));
+                }
+                moves[0] = random.nextInt(Direction.COUNT);
+                moves[1] = random.nextInt(Direction.COUNT);
+                rules.makeMove(board, moves);
+            }
+        }
+    }
+
+    @Test
+    void cellNextToALongerHeadScoresLow() {
+        Board board = new Board(7, 7);
+        int us = board.addSnake("us", 50);
+        board.appendSegment(us, board.index(3, 3));
+        board.appendSegment(us, board.index(3, 4));
+        board.appendSegment(us, board.index(3, 5));
+        int them = board.addSnake("them", 50);
+        board.appendSegment(them, board.index(5, 3));
+        board.appendSegment(them, board.index(6, 3));
+        board.appendSegment(them, board.index(6, 4));
+        board.appendSegment(them, board.index(6, 5));
+
+        int pattern = NeighborhoodTable.pattern(board, us);
+        assertEquals(NeighborhoodTable.CONTESTED, pattern >>> 2 * Direction.RIGHT & 3);
+        assertEquals(NeighborhoodTable.BLOCKED, pattern >>> 2 * Direction.DOWN & 3);
+
+        int entry = NeighborhoodTable.lookup(board, us);
+        assertEquals(NeighborhoodTable.score(entry, Direction.UP), NeighborhoodTable.safety(entry));
+        assertTrue(NeighborhoodTable.score(entry, Direction.RIGHT) < NeighborhoodTable.score(entry, Direction.LEFT));
+    }
+}
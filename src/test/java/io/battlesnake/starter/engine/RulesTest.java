@@ -0,0 +1,134 @@
+package io.battlesnake.starter.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RulesTest {
+
+    private static Board twoSnakes() {
+        Board board = new Board(7, 7);
+        int a = board.addSnake("a", 50);
+        board.appendSegment(a, board.index(1, 3));
+        board.appendSegment(a, board.index(0, 3));
+        board.appendSegment(a, board.index(0, 2));
+        int b = board.addSnake("b", 50);
+        board.appendSegment(b, board.index(5, 3));
+        board.appendSegment(b, board.index(6, 3));
+        board.appendSegment(b, board.index(6, 4));
+        return board;
+    }
+
+    @Test
+    void moveAndFeed() {
+        Board board = twoSnakes();
+        board.addFood(board.index(2, 3));
+        new Rules(0, 0, false).makeMove(board, new int[] { Direction.RIGHT, Direction.UP });
+
+        assertEquals(board.index(2, 3), board.head(0));
+        assertEquals(4, board.length(0));
+        assertEquals(Board.MAX_HEALTH, board.health(0));
+        assertEquals(board.tail(0), board.segment(0, 2));
+        assertEquals(49, board.health(1));
+        assertFalse(board.hasFood(board.index(2, 3)));
+        assertFalse(board.isOccupied(board.index(0, 2)));
+    }
+
+    @Test
+    void headToHeadEliminatesShorter() {
+        Board board = twoSnakes();
+        board.appendSegment(1, board.index(6, 5));
+        board.setSeed(1);
+        Rules rules = new Rules(0, 0, false);
+        rules.makeMove(board, new int[] { Direction.RIGHT, Direction.LEFT });
+        rules.makeMove(board, new int[] { Direction.RIGHT, Direction.LEFT });
+
+        assertFalse(board.isAlive(0));
+        assertTrue(board.isAlive(1));
+        assertFalse(board.isOccupied(board.index(1, 3)));
+    }
+
+    @Test
+    void wallAndSelfCollision() {
+        Board board = twoSnakes();
+        Rules rules = new Rules(0, 0, false);
+        rules.makeMove(board, new int[] { Direction.LEFT, Direction.RIGHT });
+
+        assertFalse(board.isAlive(0));
+        assertFalse(board.isAlive(1));
+        assertEquals(0, board.aliveCount());
+    }
+
+    @Test
+    void unmakeRestoresEveryState() {
+        Random random = new Random(42);
+        Rules rules = new Rules();
+        for (int game = 0; game < 50; game++) {
+            Board board = twoSnakes();
+            board.setSeed(game);
+            board.addFood(board.index(3, 3));
+            Board[] history = new Board[40];
+            int[] moves = new int[board.snakeCount()];
+            int plies = 0;
+            while (plies < history.length && board.aliveCount() > 0) {
+                history[plies++] = board.copy();
+                for (int s = 0; s < moves.length; s++) {
+                    moves[s] = random.nextInt(Direction.COUNT);
+                }
+                rules.makeMove(board, moves);
+            }
+            while (plies > 0) {
+                rules.unmakeMove(board);
+                assertTrue(board.sameState(history[--plies]), "ply " + plies + " of game " + game);
+            }
+        }
+    }
+
+    @Test
+    void occupancyIndexFollowsMovesAndUndo() {
+        Random random = new Random(40);
+        Rules rules = new Rules();
+        for (int game = 0; game < 50; game++) {
+            Board board = twoSnakes();
+            int c = board.addSnake("c", 50);
+            board.appendSegment(c, board.index(3, 6));
+            board.appendSegment(c, board.index(3, 6));
+            board.setSeed(game);
+            int[] moves = new int[board.snakeCount()];
+            int plies = 0;
+            while (plies < 40 && board.aliveCount() > 0) {
+                for (int s = 0; s < moves.length; s++) {
+                    moves[s] = random.nextInt(Direction.COUNT);
+                }
+                rules.makeMove(board, moves);
+                plies++;
+                assertIndexMatchesBodies(board);
+            }
+            while (plies-- > 0) {
+                rules.unmakeMove(board);
+                assertIndexMatchesBodies(board);
+            }
+        }
+    }
+
+    private static void assertIndexMatchesBodies(Board board) {
+        for (int cell = 0; cell < board.cellCount(); cell++) {
+            int owner = -1;
+            int turns = 0;
+            for (int s = 0; s < board.snakeCount(); s++) {
+                for (int i = 0; board.isAlive(s) && i < board.length(s); i++) {
+                    if (board.segment(s, i) == cell && board.length(s) - i > turns) {
+                        owner = s;
+                        turns = board.length(s) - i;
+                    }
+                }
+            }
+            assertEquals(owner, board.owner(cell), "owner of " + cell + " at depth " + board.depth());
+            assertEquals(turns, board.turnsUntilFree(cell), "turns of " + cell + " at depth " + board.depth());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.battlesnake.starter.search;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EndgameSolverTest {
+
+    /**
+     * A 7x5 board whose lower three rows are a long opponent, coiled so that none of its cells frees up before we
+     * run out of length. We are in the top two rows, with a dead end on one side of our head.
+     */
+    static Board pocket(boolean mirrored) {
+        return pocket(mirrored, Board.MAX_HEALTH);
+    }
+
+    private static Board pocket(boolean mirrored, int health) {
+        Board board = new Board(7, 5);
+        int us = board.addSnake("us", health);
+        int[][] ours = { { 5, 0 }, { 5, 1 }, { 4, 1 }, { 3, 1 }, { 2, 1 }, { 1, 1 } };
+        for (int[] segment : ours) {
+            board.appendSegment(us, cell(board, segment[0], segment[1], mirrored));
+        }
+        int them = board.addSnake("them", Board.MAX_HEALTH);
+        board.appendSegment(them, cell(board, 0, 3, mirrored));
+        for (int x = 0; x < 7; x++) {
+            board.appendSegment(them, cell(board, x, 2, mirrored));
+        }
+        for (int x = 6; x > 0; x--) {
+            board.appendSegment(them, cell(board, x, 3, mirrored));
+        }
+        return board;
+    }
+
+    private static int cell(Board board, int x, int y, boolean mirrored) {
+        return board.index(mirrored ? board.width() - 1 - x : x, y);
+    }
+
+    @Test
+    void avoidsTheDeadEndAndReusesTheMirroredSolution() {
+        EndgameSolver solver = new EndgameSolver(40, EndgameSolver.MAX_CELLS, 100000);
+        assertEquals(Direction.LEFT, solver.bestMove(pocket(false)));
+        assertEquals(6, solver.lastSurvival());
+
+        assertEquals(Direction.RIGHT, solver.bestMove(pocket(true)));
+        assertEquals(6, solver.lastSurvival());
+        assertTrue(solver.lastCached());
+    }
+
+    @Test
+    void declinesWhenFoodOrHungerWouldChangeTheAnswer() {
+        EndgameSolver solver = new EndgameSolver(40, EndgameSolver.MAX_CELLS, 100000);
+        Board fed = pocket(false);
+        fed.addFood(fed.index(0, 0));
+        assertEquals(-1, solver.bestMove(fed));
+        assertEquals(-1, solver.bestMove(pocket(false, 6)));
+        assertEquals(Direction.LEFT, solver.bestMove(pocket(false, 7)));
+    }
+
+    @Test
+    void givesUpOnRegionsThatAreTooLarge() {
+        assertEquals(-1, new EndgameSolver(8, EndgameSolver.MAX_CELLS, 100000).bestMove(pocket(false)));
+        Board open = new Board(11, 11);
+        int us = open.addSnake("us", Board.MAX_HEALTH);
+        open.appendSegment(us, open.index(5, 5));
+        open.appendSegment(us, open.index(5, 6));
+        open.appendSegment(us, open.index(5, 7));
+        EndgameSolver solver = new EndgameSolver(40, EndgameSolver.MAX_CELLS, 100000);
+        assertEquals(-1, solver.bestMove(open));
+        assertFalse(solver.lastCached());
+    }
+}
@@ -0,0 +1,33 @@
+package io.battlesnake.starter.search;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongestPathTest {
+
+    @Test
+    void fillsThePocketInsteadOfTheDeadEnd() {
+        Board board = EndgameSolverTest.pocket(false);
+        LongestPath solver = new LongestPath(board.cellCount(), 100000, 1000000000L);
+        assertEquals(Direction.LEFT, solver.bestMove(board));
+        // round the free cells, then after our own tail and into the opponent's as they free up
+        assertEquals(33, solver.lastLength());
+        assertFalse(solver.aborted());
+    }
+
+    @Test
+    void answersWithALegalStepWhenTheBudgetRunsOut() {
+        Board board = EndgameSolverTest.pocket(false);
+        LongestPath solver = new LongestPath(board.cellCount(), 2, 0);
+        int direction = solver.bestMove(board);
+        assertTrue(solver.aborted());
+        assertTrue(direction >= 0, "no move");
+        int next = board.neighbor(board.head(0), direction);
+        assertTrue(next >= 0 && board.turnsUntilFree(next) <= 1, Direction.name(direction) + " is not open");
+    }
+}
@@ -0,0 +1,76 @@
+package io.battlesnake.starter.search;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import io.battlesnake.starter.engine.Rules;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpponentModelTest {
+
+    /** Circles a 2x2 square in the middle of the board. */
+    private static int ourMove(Board board) {
+        int head = board.head(0);
+        int x = board.x(head);
+        int y = board.y(head);
+        return y == 4 ? (x == 4 ? Direction.RIGHT : Direction.DOWN) : (x == 5 ? Direction.LEFT : Direction.UP);
+    }
+
+    /** Follows the walls clockwise, never heading for the food in the middle. */
+    private static int wallMove(Board board) {
+        int head = board.head(1);
+        int x = board.x(head);
+        int y = board.y(head);
+        int last = board.width() - 1;
+        if (y == 0 && x < last) {
+            return Direction.RIGHT;
+        } else if (x == last && y < last) {
+            return Direction.DOWN;
+        } else if (y == last && x > 0) {
+            return Direction.LEFT;
+        }
+        return Direction.UP;
+    }
+
+    @Test
+    void learnsAWallHugger() {
+        Board board = new Board(11, 11);
+        int us = board.addSnake("us", Board.MAX_HEALTH);
+        board.appendSegment(us, board.index(4, 4));
+        board.appendSegment(us, board.index(4, 5));
+        board.appendSegment(us, board.index(5, 5));
+        int them = board.addSnake("them", Board.MAX_HEALTH);
+        board.appendSegment(them, board.index(3, 0));
+        board.appendSegment(them, board.index(2, 0));
+        board.appendSegment(them, board.index(1, 0));
+        board.addFood(board.index(7, 7));
+        Rules rules = new Rules(0, 0, false);
+
+        OpponentModel trained = new OpponentModel();
+        OpponentModel untrained = new OpponentModel();
+        int[] moves = new int[2];
+        int[] ranked = new int[Direction.COUNT];
+        float[] distribution = new float[Direction.COUNT];
+        int trainedHits = 0;
+        int untrainedHits = 0;
+        for (int turn = 0; turn < 90; turn++) {
+            trained.observe(board);
+            moves[0] = ourMove(board);
+            moves[1] = wallMove(board);
+            if (turn >= 60) {
+                trained.rank(board, 1, ranked, 0, distribution);
+                trainedHits += ranked[0] == moves[1] ? 1 : 0;
+                untrained.rank(board, 1, ranked, 0, distribution);
+                untrainedHits += ranked[0] == moves[1] ? 1 : 0;
+            }
+            rules.makeMove(board, moves);
+            assertEquals(3, board.aliveMask());
+        }
+
+        assertTrue(trained.observations("them") >= 59);
+        assertTrue(trainedHits >= 27, "trained model predicted " + trainedHits + " of 30");
+        assertTrue(trainedHits > untrainedHits);
+    }
+}
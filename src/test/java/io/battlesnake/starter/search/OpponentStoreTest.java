@@ -0,0 +1,43 @@
+package io.battlesnake.starter.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class OpponentStoreTest {
+
+    private static OpponentProfile profile(int game) {
+        OpponentProfile profile = new OpponentProfile();
+        profile.addGame(10 * game, new int[] { game, 2 * game, 3, 4 }, new int[] { 0, game, 1, 2 });
+        return profile;
+    }
+
+    @Test
+    void latestProfileSurvivesReopening() throws IOException {
+        Path path = Files.createTempFile("opponents", ".bin");
+        Files.delete(path);
+        try {
+            try (OpponentStore store = OpponentStore.open(path)) {
+                assertNull(store.load("wall-hugger"));
+                // enough records to grow the mapping past its initial size
+                for (int game = 1; game <= 1500; game++) {
+                    store.save(game % 2 == 0 ? "wall-hugger" : "food-chaser", profile(game));
+                }
+                assertEquals(2, store.size());
+            }
+            try (OpponentStore store = OpponentStore.open(path)) {
+                assertEquals(1500, store.records());
+                assertEquals(profile(1500), store.load("wall-hugger"));
+                assertEquals(profile(1499), store.load("food-chaser"));
+                assertNull(store.load("stranger"));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.battlesnake.starter.search;
+
+import io.battlesnake.starter.engine.Board;
+import io.battlesnake.starter.engine.Direction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchTest {
+
+    private static Board board() {
+        Board board = new Board(11, 11);
+        int[][][] snakes = {
+                { { 5, 5 }, { 5, 6 }, { 5, 7 } },
+                { { 2, 2 }, { 2, 1 }, { 2, 0 } },
+                { { 8, 3 }, { 9, 3 }, { 10, 3 } } };
+        for (int[][] body : snakes) {
+            int s = board.addSnake("snake" + board.snakeCount(), Board.MAX_HEALTH);
+            for (int[] segment : body) {
+                board.appendSegment(s, board.index(segment[0], segment[1]));
+            }
+        }
+        board.addFood(board.index(3, 5));
+        board.addFood(board.index(7, 7));
+        return board;
+    }
+
+    @Test
+    void modelPrunedSearchVisitsFewerNodesAndStillMovesSafely() {
+        Search full = new Search();
+        int fullMove = full.bestMove(board(), 3);
+
+        Search pruned = new Search();
+        pruned.setOpponentModel(new OpponentModel(), 1);
+        Board board = board();
+        int prunedMove = pruned.bestMove(board, 3);
+
+        assertTrue(pruned.nodes() < full.nodes(), pruned.nodes() + " nodes pruned, " + full.nodes() + " in full");
+        int[] safe = new int[Direction.COUNT];
+        int count = Search.candidates(board, 0, safe, 0);
+        for (int move : new int[] { fullMove, prunedMove }) {
+            boolean found = false;
+            for (int i = 0; i < count; i++) {
+                found |= safe[i] == move;
+            }
+            assertTrue(found, Direction.name(move) + " is not a safe move");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.battlesnake.starter.tests;
+
+import io.battlesnake.starter.Snake;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SelfPlayTest {
+    private static final String[] LINEUP = { "handler", "handler", "safe", "safe" };
+
+    /** @return a handler whose stalling search has no time limit, so it answers the same on a busy machine */
+    private static Snake.Handler untimed() {
+        Snake.Handler handler = new Snake.Handler();
+        handler.setStallNanos(0);
+        return handler;
+    }
+
+    @Test
+    void seededRunReplaysTheSameOnAnyThreadCount() throws Exception {
+        List<SelfPlay.Game> sequential = SelfPlay.run(8, 42, LINEUP, SelfPlay.strategies(untimed()), 1);
+        List<SelfPlay.Game> parallel = SelfPlay.run(8, 42, LINEUP, SelfPlay.strategies(untimed()), 4);
+
+        assertEquals(SelfPlay.checksum(sequential), SelfPlay.checksum(parallel));
+        for (int g = 0; g < sequential.size(); g++) {
+            assertEquals(sequential.get(g).winner, parallel.get(g).winner, "winner of game " + g);
+            assertEquals(sequential.get(g).turns, parallel.get(g).turns, "turns of game " + g);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.xguzm.pathfinding.finders;
+
+import org.junit.jupiter.api.Test;
+import org.xguzm.pathfinding.PathQuery;
+import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.NavigationGrid;
+import org.xguzm.pathfinding.grid.finders.GridFinderOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class AStarFinderTest {
+    private static final int SIZE = 15;
+
+    private static NavigationGrid<GridCell> randomGrid(Random random) {
+        GridCell[][] cells = new GridCell[SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                cells[x][y] = new GridCell(x, y, random.nextInt(3) != 0);
+            }
+        }
+        return new NavigationGrid<GridCell>(cells, false);
+    }
+
+    private static NavigationGrid<GridCell> copy(NavigationGrid<GridCell> grid) {
+        GridCell[][] cells = new GridCell[SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                cells[x][y] = new GridCell(x, y, grid.getCell(x, y).isWalkable());
+            }
+        }
+        return new NavigationGrid<GridCell>(cells, false);
+    }
+
+    private static AStarFinder<GridCell> finder() {
+        GridFinderOptions opt = new GridFinderOptions();
+        opt.allowDiagonal = false;
+        return new AStarFinder<GridCell>(GridCell.class, opt);
+    }
+
+    private static void assertValidPath(GridCell start, GridCell goal, List<GridCell> path) {
+        GridCell at = start;
+        for (GridCell next : path) {
+            assertEquals(1, Math.abs(next.x - at.x) + Math.abs(next.y - at.y));
+            assertEquals(true, next.isWalkable());
+            at = next;
+        }
+        assertSame(goal, at);
+    }
+
+    @Test
+    void batchedQueriesMatchIndependentSearches() {
+        Random random = new Random(11);
+        for (int round = 0; round < 30; round++) {
+            NavigationGrid<GridCell> grid = randomGrid(random);
+            List<PathQuery<GridCell>> queries = new ArrayList<>();
+            // few starts with many goals each, repeated goals and start == goal included
+            for (int s = 0; s < 3; s++) {
+                GridCell start = grid.getCell(random.nextInt(SIZE), random.nextInt(SIZE));
+                start.setWalkable(true);
+                queries.add(new PathQuery<GridCell>(start, start));
+                for (int g = 0; g < 1 + random.nextInt(12); g++) {
+                    GridCell goal = grid.getCell(random.nextInt(SIZE), random.nextInt(SIZE));
+                    queries.add(new PathQuery<GridCell>(start, goal));
+                    if (g % 4 == 0) {
+                        queries.add(new PathQuery<GridCell>(start, goal));
+                    }
+                }
+            }
+
+            AStarFinder<GridCell> batch = finder();
+            List<List<GridCell>> paths = batch.findPaths(queries, grid);
+            List<GridCell> steps = new ArrayList<>();
+            batch.findFirstSteps(queries, grid, steps);
+
+            // finders of one class keep their job stamps on the cells, so the independent searches get a copy
+            NavigationGrid<GridCell> copy = copy(grid);
+            AStarFinder<GridCell> single = finder();
+            for (int q = 0; q < queries.size(); q++) {
+                PathQuery<GridCell> query = queries.get(q);
+                List<GridCell> expected = single.findPath(copy.getCell(query.start.x, query.start.y),
+                        copy.getCell(query.goal.x, query.goal.y), copy);
+                String where = "round " + round + " query " + q;
+                if (expected == null) {
+                    assertNull(paths.get(q), where);
+                    assertNull(steps.get(q), where);
+                    continue;
+                }
+                // shortest paths may tie, so compare lengths and check the batched path on its own
+                assertNotNull(paths.get(q), where);
+                assertEquals(expected.size(), paths.get(q).size(), where);
+                assertValidPath(query.start, query.goal, paths.get(q));
+                assertEquals(paths.get(q).isEmpty() ? null : paths.get(q).get(0), steps.get(q), where);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.xguzm.pathfinding.grid.finders;
+
+import org.junit.jupiter.api.Test;
+import org.xguzm.pathfinding.Util;
+import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.GridPath;
+import org.xguzm.pathfinding.grid.NavigationGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AStarGridFinderTest {
+    private static final int SIZE = 15;
+
+    private static NavigationGrid<GridCell> grid(boolean[][] walkable) {
+        GridCell[][] cells = new GridCell[SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                cells[x][y] = new GridCell(x, y, walkable[x][y]);
+            }
+        }
+        return new NavigationGrid<GridCell>(cells, false);
+    }
+
+    private static AStarGridFinder<GridCell> finder() {
+        GridFinderOptions opt = new GridFinderOptions();
+        opt.allowDiagonal = false;
+        return new AStarGridFinder<GridCell>(GridCell.class, opt);
+    }
+
+    /** Checks the packed path and the first step of start to goal against the list path, cell by cell. */
+    private static void assertSameAsList(AStarGridFinder<GridCell> finder, NavigationGrid<GridCell> grid,
+            GridCell start, GridCell goal, String where) {
+        List<GridCell> list = finder.findPath(start, goal, grid);
+        List<GridCell> expected = list == null ? null : new ArrayList<GridCell>(list);
+
+        GridPath packed = new GridPath(1);
+        boolean found = finder.findPath(start, goal, grid, packed);
+        GridCell step = finder.findPath(start, goal, grid) == null ? null : Util.firstStep(start, goal);
+
+        if (expected == null) {
+            assertFalse(found, where);
+            assertEquals(0, packed.length(), where);
+            assertNull(step, where);
+            return;
+        }
+        assertTrue(found, where);
+        assertEquals(SIZE, packed.getWidth(), where);
+        assertEquals(expected.size(), packed.length(), where);
+        for (int i = 0; i < expected.size(); i++) {
+            GridCell cell = expected.get(i);
+            assertEquals(cell.y * SIZE + cell.x, packed.get(i), where + " step " + i);
+            assertEquals(cell.x, packed.getX(i), where + " step " + i);
+            assertEquals(cell.y, packed.getY(i), where + " step " + i);
+        }
+        assertSame(expected.isEmpty() ? null : expected.get(0), step, where);
+    }
+
+    @Test
+    void packedPathsMatchListPaths() {
+        Random random = new Random(5);
+        for (int round = 0; round < 20; round++) {
+            boolean[][] walkable = new boolean[SIZE][SIZE];
+            for (int x = 0; x < SIZE; x++) {
+                for (int y = 0; y < SIZE; y++) {
+                    walkable[x][y] = random.nextInt(3) != 0;
+                }
+            }
+            NavigationGrid<GridCell> grid = grid(walkable);
+            AStarGridFinder<GridCell> finder = finder();
+            for (int query = 0; query < 20; query++) {
+                GridCell start = grid.getCell(random.nextInt(SIZE), random.nextInt(SIZE));
+                GridCell goal = grid.getCell(random.nextInt(SIZE), random.nextInt(SIZE));
+                start.setWalkable(true);
+                assertSameAsList(finder, grid, start, goal, "round " + round + " query " + query);
+            }
+        }
+    }
+
+    @Test
+    void blockedUnreachableAndTrivialQueries() {
+        boolean[][] walkable = new boolean[SIZE][SIZE];
+        for (boolean[] column : walkable) {
+            Arrays.fill(column, true);
+        }
+        // (0,0) is walled in, and a wall across x = 7 cuts the grid in two
+        walkable[1][0] = false;
+        walkable[0][1] = false;
+        for (int y = 0; y < SIZE; y++) {
+            walkable[7][y] = false;
+        }
+        NavigationGrid<GridCell> grid = grid(walkable);
+        AStarGridFinder<GridCell> finder = finder();
+
+        assertSameAsList(finder, grid, grid.getCell(0, 0), grid.getCell(3, 3), "walled in");
+        assertSameAsList(finder, grid, grid.getCell(3, 3), grid.getCell(0, 0), "walled in goal");
+        assertSameAsList(finder, grid, grid.getCell(2, 5), grid.getCell(12, 5), "across the wall");
+        assertSameAsList(finder, grid, grid.getCell(2, 5), grid.getCell(7, 5), "blocked goal");
+        assertSameAsList(finder, grid, grid.getCell(2, 5), grid.getCell(2, 5), "start is goal");
+        assertSameAsList(finder, grid, grid.getCell(2, 5), grid.getCell(6, 14), "around the corner");
+
+        // a packed path that found nothing is emptied, even if it held a path before
+        GridPath packed = new GridPath();
+        assertTrue(finder.findPath(grid.getCell(2, 5), grid.getCell(6, 14), grid, packed));
+        assertFalse(finder.findPath(grid.getCell(2, 5), grid.getCell(12, 5), grid, packed));
+        assertEquals(0, packed.length());
+    }
+}
@@ -0,0 +1,83 @@
+package org.xguzm.pathfinding.grid.finders;
+
+import org.junit.jupiter.api.Test;
+import org.xguzm.pathfinding.finders.AStarFinder;
+import org.xguzm.pathfinding.grid.GridCell;
+import org.xguzm.pathfinding.grid.NavigationGrid;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HierarchicalGridFinderTest {
+    private static final int SIZE = 37;
+
+    private static NavigationGrid<GridCell> randomGrid(Random random) {
+        GridCell[][] cells = new GridCell[SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                cells[x][y] = new GridCell(x, y, random.nextInt(4) != 0);
+            }
+        }
+        return new NavigationGrid<GridCell>(cells, false);
+    }
+
+    private static GridFinderOptions options() {
+        GridFinderOptions opt = new GridFinderOptions();
+        opt.allowDiagonal = false;
+        return opt;
+    }
+
+    @Test
+    void followingFirstStepsReachesEveryReachableGoal() {
+        Random random = new Random(3);
+        for (int round = 0; round < 5; round++) {
+            NavigationGrid<GridCell> grid = randomGrid(random);
+            AStarFinder<GridCell> flat = new AStarFinder<GridCell>(GridCell.class, options());
+            HierarchicalGridFinder<GridCell> hierarchy = new HierarchicalGridFinder<GridCell>(options(), 8);
+            hierarchy.update(grid);
+
+            for (int query = 0; query < 40; query++) {
+                GridCell start = grid.getCell(random.nextInt(SIZE), random.nextInt(SIZE));
+                GridCell goal = grid.getCell(random.nextInt(SIZE), random.nextInt(SIZE));
+                if (!goal.isWalkable() || start == goal) {
+                    continue;
+                }
+                GridCell expected = flat.findFirstStep(start, goal, grid);
+                GridCell step = hierarchy.findFirstStep(start, goal, grid);
+                if (expected == null) {
+                    assertNull(step);
+                    continue;
+                }
+                assertNotNull(step, "no step from " + start.x + "," + start.y + " to " + goal.x + "," + goal.y);
+
+                GridCell at = start;
+                for (int moves = 0; at != goal; moves++) {
+                    GridCell next = hierarchy.findFirstStep(at, goal, grid);
+                    assertTrue(next.isWalkable());
+                    assertEquals(1, Math.abs(next.x - at.x) + Math.abs(next.y - at.y));
+                    assertTrue(moves < SIZE * SIZE, "walk does not reach the goal");
+                    at = next;
+                }
+            }
+        }
+    }
+
+    @Test
+    void updateRebuildsOnlyChangedClusters() {
+        NavigationGrid<GridCell> grid = randomGrid(new Random(5));
+        HierarchicalGridFinder<GridCell> hierarchy = new HierarchicalGridFinder<GridCell>(options(), 8);
+
+        assertEquals(25, hierarchy.update(grid));
+        assertEquals(0, hierarchy.update(grid));
+
+        // an inner cell of the middle cluster, then a cell on the border between two clusters
+        grid.setWalkable(19, 19, !grid.isWalkable(19, 19));
+        assertEquals(1, hierarchy.update(grid));
+        grid.setWalkable(23, 19, !grid.isWalkable(23, 19));
+        assertEquals(2, hierarchy.update(grid));
+    }
+}